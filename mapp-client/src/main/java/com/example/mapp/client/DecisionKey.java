@@ -0,0 +1,16 @@
+package com.example.mapp.client;
+
+import java.util.Locale;
+
+/**
+ * A cached decision - the security functions one role gets on a program, or on a form within it.  Names are
+ * uppercased (mapp's are), formName is null for the program level.
+ */
+record DecisionKey(String programName, String formName, String roleName) {
+
+    static DecisionKey of(String programName, String formName, String roleName) {
+        return new DecisionKey(programName.toUpperCase(Locale.ROOT),
+                formName == null ? null : formName.toUpperCase(Locale.ROOT),
+                roleName.toUpperCase(Locale.ROOT));
+    }
+}
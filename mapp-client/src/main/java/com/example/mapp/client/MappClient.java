@@ -0,0 +1,244 @@
+package com.example.mapp.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers mapp permission checks in-process from a near-cache of decisions (the security functions one role gets on
+ * a program or form), going to mapp's /permissions-for-program only on a miss.
+ * <p>
+ * The cache is kept current by pulling the mapping changes since its revision from /mapping-changes/since every
+ * syncInterval (or on {@link #sync()}) and dropping the decisions each could have changed - everything when mapp no
+ * longer has all the changes, or they couldn't be fetched.  So a check can be up to a syncInterval behind mapp, never
+ * more.
+ * <p>
+ * <pre>
+ * try (MappClient client = MappClient.builder().baseUrl(URI.create("http://mapp:8081")).build()) {
+ *     List&lt;String&gt; functions = client.securityFunctions(List.of("ADMIN"), "PRG123", "FORM1");
+ * }
+ * </pre>
+ */
+@Slf4j
+public class MappClient implements AutoCloseable {
+
+    private final URI baseUrl;
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final Cache<DecisionKey, List<String>> decisions;
+    private final ScheduledExecutorService syncer;
+
+    // the revision the cache is current as of - only moved by a sync, one at a time
+    private final Object syncLock = new Object();
+    private volatile long revision;
+
+    // moved by every sync before it drops anything - a decision loaded across one may be from before the change, so
+    // isn't kept
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Fetches the revision to start from - mapp has to be up
+     *
+     * @param baseUrl        where mapp is (required)
+     * @param httpClient     defaults to a new one
+     * @param syncInterval   how often to pull the changes, defaults to a second - zero to only sync when asked to
+     * @param maximumSize    decisions kept, defaults to 100,000
+     * @param requestTimeout defaults to 5 seconds
+     */
+    @Builder
+    private MappClient(URI baseUrl,
+                       HttpClient httpClient,
+                       Duration syncInterval,
+                       Long maximumSize,
+                       Duration requestTimeout) {
+        if (baseUrl == null) throw new IllegalArgumentException("baseUrl is required");
+
+        this.baseUrl = baseUrl;
+        this.httpClient = httpClient != null ? httpClient : HttpClient.newHttpClient();
+        this.requestTimeout = requestTimeout != null ? requestTimeout : Duration.ofSeconds(5);
+        this.decisions = Caffeine.newBuilder()
+                .maximumSize(maximumSize != null ? maximumSize : 100_000)
+                .recordStats()
+                .build();
+
+        this.revision = this.fetchChanges(null).revision();
+
+        long interval = (syncInterval != null ? syncInterval : Duration.ofSeconds(1)).toMillis();
+        if (interval > 0) {
+            this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "mapp-client-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.syncer.scheduleWithFixedDelay(this::syncOrForget, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.syncer = null;
+        }
+    }
+
+    /**
+     * The security functions the roles get on the program (or on the form within it if given) - the union of each
+     * role's, where a role with any grants on the form gets just those and otherwise falls back to its program
+     * grants.  Names are case-insensitive and the functions come back in no particular order.
+     *
+     * @throws MappNotFoundException when the program, form or any of the roles doesn't exist
+     */
+    public List<String> securityFunctions(List<String> roleNames, String programName, String formName) {
+        // nothing to cache - it's only a check that the program exists
+        if (roleNames.isEmpty()) return this.fetchDecision(roleNames, programName, formName);
+
+        Set<String> functions = new HashSet<>();
+        for (String roleName : roleNames) {
+            functions.addAll(this.decision(DecisionKey.of(programName, formName, roleName)));
+        }
+        return List.copyOf(functions);
+    }
+
+    /**
+     * Pulls the changes since the cache's revision and drops the decisions they affect
+     */
+    public void sync() {
+        synchronized (syncLock) {
+            MappingChange.Changes changes = this.fetchChanges(revision);
+
+            if (changes.reset()) {
+                generation.incrementAndGet();
+                decisions.invalidateAll();
+                log.info("mapp no longer has the changes since revision {}, dropped all cached decisions", revision);
+            } else if (!changes.changes().isEmpty()) {
+                generation.incrementAndGet();
+                decisions.asMap().keySet().removeIf(key -> changes.changes().stream().anyMatch(c -> c.affects(key)));
+            }
+            revision = changes.reset() ? changes.revision() : caughtUpTo(revision, changes);
+        }
+    }
+
+    /**
+     * The revision of mapp's mappings the cached decisions are current as of
+     */
+    public long revision() {
+        return revision;
+    }
+
+    public CacheStats stats() {
+        return decisions.stats();
+    }
+
+    @Override
+    public void close() {
+        if (syncer != null) syncer.shutdownNow();
+    }
+
+    private List<String> decision(DecisionKey key) {
+        List<String> functions = decisions.getIfPresent(key);
+        if (functions != null) return functions;
+
+        long loadedAt = generation.get();
+        functions = List.copyOf(this.fetchDecision(List.of(key.roleName()), key.programName(), key.formName()));
+        decisions.put(key, functions);
+
+        // a sync dropped what it affected while this was loading - this may have been one of them
+        if (generation.get() != loadedAt) decisions.invalidate(key);
+        return functions;
+    }
+
+    // what's cached can't be trusted to be current when the changes can't be had
+    private void syncOrForget() {
+        try {
+            this.sync();
+        } catch (RuntimeException e) {
+            log.warn("Couldn't sync with mapp, dropping all cached decisions: {}", e.toString());
+            generation.incrementAndGet();
+            decisions.invalidateAll();
+        }
+    }
+
+    /**
+     * How far the changes bring the cache up from the revision - revisions have no gaps, so a change missing from
+     * them hasn't been seen yet and the next sync asks from before it again (the ones after it are dropped again
+     * then, which does no harm)
+     */
+    private static long caughtUpTo(long revision, MappingChange.Changes changes) {
+        for (MappingChange change : changes.changes()) {
+            if (change.revision() != revision + 1) return revision;
+            revision = change.revision();
+        }
+        return Math.max(revision, changes.revision());
+    }
+
+    private List<String> fetchDecision(List<String> roleNames, String programName, String formName) {
+        String query = "programName=" + encode(programName) + (formName == null ? "" : "&formName=" + encode(formName));
+        JsonNode body = this.send(HttpRequest.newBuilder(baseUrl.resolve("/permissions-for-program?" + query))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(this.write(roleNames))));
+
+        return objectMapper.convertValue(body.get("securityFunctions"), new TypeReference<>() {
+        });
+    }
+
+    private MappingChange.Changes fetchChanges(Long since) {
+        String query = since == null ? "" : "?since=" + since;
+        return objectMapper.convertValue(this.send(HttpRequest.newBuilder(baseUrl.resolve("/mapping-changes/since" + query)).GET()),
+                MappingChange.Changes.class);
+    }
+
+    private JsonNode send(HttpRequest.Builder request) {
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(request.timeout(requestTimeout).header("Accept", "application/json").build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw new MappClientException("mapp couldn't be reached", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MappClientException("Interrupted waiting for mapp", e);
+        }
+
+        if (response.statusCode() == 404) throw new MappNotFoundException("Not found: " + response.uri());
+        if (response.statusCode() != 200) {
+            throw new MappClientException("mapp answered " + response.statusCode() + " to " + response.uri());
+        }
+        try {
+            return objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            throw new MappClientException("Unreadable answer from mapp to " + response.uri(), e);
+        }
+    }
+
+    private byte[] write(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new MappClientException("Couldn't write the request", e);
+        }
+    }
+
+    private static String encode(String name) {
+        return URLEncoder.encode(name, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.mapp.client;
+
+/**
+ * mapp couldn't be reached, or answered with something other than a decision
+ */
+public class MappClientException extends RuntimeException {
+
+    public MappClientException(String message) {
+        super(message);
+    }
+
+    public MappClientException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.mapp.client;
+
+/**
+ * The program, form or a role asked about doesn't exist - mapp's 404
+ */
+public class MappNotFoundException extends MappClientException {
+
+    public MappNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.mapp.client;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A committed mapping change, as mapp sends them - names are null when the change isn't scoped to them
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record MappingChange(long revision, String kind, String program, String form, String role) {
+
+    /**
+     * The changes after a revision (oldest first) and the revision they bring the caller up to - with reset set
+     * instead when they weren't all known any more
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Changes(long revision, boolean reset, List<MappingChange> changes) {
+    }
+
+    // creations can't change what a role resolves to (nothing could have resolved against what didn't exist) -
+    // anything else, including kinds newer than this client, is taken to
+    private static final Set<String> CREATIONS = Set.of("PROGRAM_CREATED", "FORM_ADDED", "SECURITY_FUNCTIONS_ADDED", "ROLE_CREATED");
+
+    /**
+     * True if the decision could be affected by this change, i.e. every name the change is scoped to matches - the
+     * same rule mapp applies to its own decision cache
+     */
+    boolean affects(DecisionKey key) {
+        return !CREATIONS.contains(kind)
+                && (program == null || program.equals(key.programName()))
+                && (form == null || form.equals(key.formName()))
+                && (role == null || role.equals(key.roleName()));
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.mapp.client.stub;
+
+import com.example.mapp.client.MappingChange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stand-in for mapp in tests of services embedding {@link com.example.mapp.client.MappClient} - serves
+ * /permissions-for-program and /mapping-changes/since from mappings set up in memory, with mapp's rules (names are
+ * uppercased, a role's grants on a form override its program grants, anything unknown is a 404).  Every change is
+ * numbered and kept, so clients can sync against it.
+ * <p>
+ * <pre>
+ * try (MappStubServer mapp = MappStubServer.start()) {
+ *     mapp.mapRoleToProgram("PRG123", "ADMIN", "READ", "UPDATE");
+ *     MappClient client = MappClient.builder().baseUrl(mapp.uri()).build();
+ *     ...
+ * }
+ * </pre>
+ */
+public class MappStubServer implements AutoCloseable {
+
+    private static class StubProgram {
+        final Set<String> forms = new HashSet<>();
+        // role -> functions, and the same per form (form -> role -> functions)
+        final Map<String, Set<String>> programGrants = new HashMap<>();
+        final Map<String, Map<String, Set<String>>> formGrants = new HashMap<>();
+    }
+
+    private final HttpServer server;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, StubProgram> programs = new HashMap<>();
+    private final Set<String> roles = new HashSet<>();
+    private final List<MappingChange> changes = new ArrayList<>();
+    // changes up to this revision are no longer kept - polls from before it are told to reset
+    private long forgottenUpTo;
+    // changes left out of polls for now, see withholdLastChange
+    private final Set<Long> withheld = new HashSet<>();
+
+    private final AtomicInteger permissionRequests = new AtomicInteger();
+
+    private MappStubServer(HttpServer server) {
+        this.server = server;
+        server.createContext("/permissions-for-program", this::permissionsForProgram);
+        server.createContext("/mapping-changes/since", this::changesSince);
+    }
+
+    /**
+     * Starts one on a free local port
+     */
+    public static MappStubServer start() {
+        try {
+            MappStubServer stub = new MappStubServer(HttpServer.create(new InetSocketAddress("localhost", 0), 0));
+            stub.server.start();
+            return stub;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public URI uri() {
+        return URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    /**
+     * How many permission checks have reached this server (rather than being answered from a client's cache)
+     */
+    public int permissionRequests() {
+        return permissionRequests.get();
+    }
+
+    public synchronized void createProgram(String programName) {
+        if (programs.putIfAbsent(upper(programName), new StubProgram()) == null) {
+            record("PROGRAM_CREATED", programName, null, null);
+        }
+    }
+
+    public synchronized void addForm(String programName, String formName) {
+        this.createProgram(programName);
+        if (programs.get(upper(programName)).forms.add(upper(formName))) {
+            record("FORM_ADDED", programName, formName, null);
+        }
+    }
+
+    public synchronized void createRole(String roleName) {
+        if (roles.add(upper(roleName))) record("ROLE_CREATED", null, null, roleName);
+    }
+
+    /**
+     * The role's program grants are now just these functions (creating whatever doesn't exist yet)
+     */
+    public synchronized void mapRoleToProgram(String programName, String roleName, String... functions) {
+        this.createProgram(programName);
+        this.createRole(roleName);
+        programs.get(upper(programName)).programGrants.put(upper(roleName), upperAll(functions));
+        record("ROLE_MAPPED_TO_PROGRAM", programName, null, roleName);
+    }
+
+    /**
+     * The role's grants on the form are now just these functions (creating whatever doesn't exist yet) - none means
+     * it falls back to its program grants
+     */
+    public synchronized void mapRoleToForm(String programName, String formName, String roleName, String... functions) {
+        this.addForm(programName, formName);
+        this.createRole(roleName);
+        Map<String, Set<String>> grants = programs.get(upper(programName)).formGrants
+                .computeIfAbsent(upper(formName), name -> new HashMap<>());
+        if (functions.length == 0) {
+            grants.remove(upper(roleName));
+        } else {
+            grants.put(upper(roleName), upperAll(functions));
+        }
+        record("ROLE_MAPPED_TO_FORM", programName, formName, roleName);
+    }
+
+    public synchronized void deleteProgram(String programName) {
+        if (programs.remove(upper(programName)) != null) record("PROGRAM_DELETED", programName, null, null);
+    }
+
+    /**
+     * Stops keeping the changes so far, like mapp's replay buffer overflowing - a client syncing from before now is
+     * told to reset
+     */
+    public synchronized void forgetChanges() {
+        forgottenUpTo = revision();
+        changes.clear();
+    }
+
+    /**
+     * Leaves the last change out of /mapping-changes/since until {@link #releaseWithheld()}, while the ones after it
+     * are still sent - the hole a mapp that sent changes as their transactions committed (rather than in revision
+     * order) could leave
+     */
+    public synchronized void withholdLastChange() {
+        withheld.add(revision());
+    }
+
+    public synchronized void releaseWithheld() {
+        withheld.clear();
+    }
+
+    public synchronized long revision() {
+        return changes.isEmpty() ? forgottenUpTo : changes.get(changes.size() - 1).revision();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void record(String kind, String programName, String formName, String roleName) {
+        changes.add(new MappingChange(revision() + 1, kind, upperOrNull(programName), upperOrNull(formName), upperOrNull(roleName)));
+    }
+
+    private void permissionsForProgram(HttpExchange exchange) throws IOException {
+        permissionRequests.incrementAndGet();
+        Map<String, String> query = query(exchange);
+        List<String> roleNames = Arrays.asList(objectMapper.readValue(exchange.getRequestBody(), String[].class));
+
+        Set<String> functions;
+        synchronized (this) {
+            functions = this.collate(roleNames, query.get("programName"), query.get("formName"));
+        }
+        if (functions == null) {
+            respond(exchange, 404, Map.of("message", "Not found"));
+        } else {
+            respond(exchange, 200, Map.of("securityFunctions", functions));
+        }
+    }
+
+    // null when the program, form or a role doesn't exist
+    private Set<String> collate(List<String> roleNames, String programName, String formName) {
+        StubProgram program = programName == null ? null : programs.get(upper(programName));
+        if (program == null) return null;
+        if (formName != null && !program.forms.contains(upper(formName))) return null;
+
+        Set<String> functions = new HashSet<>();
+        for (String roleName : roleNames) {
+            String role = upper(roleName);
+            if (!roles.contains(role)) return null;
+
+            Set<String> formGrants = formName == null
+                    ? null
+                    : program.formGrants.getOrDefault(upper(formName), Map.of()).get(role);
+            functions.addAll(formGrants != null ? formGrants : program.programGrants.getOrDefault(role, Set.of()));
+        }
+        return functions;
+    }
+
+    private void changesSince(HttpExchange exchange) throws IOException {
+        String since = query(exchange).get("since");
+        MappingChange.Changes body;
+        synchronized (this) {
+            long latest = revision();
+            if (since == null) {
+                body = new MappingChange.Changes(latest, false, List.of());
+            } else if (Long.parseLong(since) < forgottenUpTo || Long.parseLong(since) > latest) {
+                body = new MappingChange.Changes(latest, true, List.of());
+            } else {
+                long after = Long.parseLong(since);
+                List<MappingChange> missed = changes.stream()
+                        .filter(c -> c.revision() > after && !withheld.contains(c.revision()))
+                        .toList();
+                body = new MappingChange.Changes(missed.isEmpty() ? after : latest, false, missed);
+            }
+        }
+        respond(exchange, 200, body);
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (var out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return params;
+
+        for (String param : query.split("&")) {
+            String[] pair = param.split("=", 2);
+            params.put(URLDecoder.decode(pair[0], StandardCharsets.UTF_8),
+                    pair.length == 1 ? "" : URLDecoder.decode(pair[1], StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String upper(String name) {
+        return name.toUpperCase(Locale.ROOT);
+    }
+
+    private static String upperOrNull(String name) {
+        return name == null ? null : name.toUpperCase(Locale.ROOT);
+    }
+
+    private static Set<String> upperAll(String... names) {
+        Set<String> upper = new HashSet<>();
+        for (String name : names) upper.add(upper(name));
+        return upper;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.mapp.client;
+
+import com.example.mapp.client.stub.MappStubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappClientTests {
+
+    MappStubServer mapp;
+    MappClient client;
+
+    @BeforeEach
+    void setUp() {
+        mapp = MappStubServer.start();
+        mapp.mapRoleToProgram("PRG", "USER", "READ");
+        mapp.mapRoleToProgram("PRG", "ADMIN", "READ", "UPDATE");
+        mapp.mapRoleToForm("PRG", "FORM1", "USER", "CREATE");
+        mapp.addForm("PRG", "FORM2");
+
+        // only syncs when told to, so the tests decide when it happens
+        client = MappClient.builder().baseUrl(mapp.uri()).syncInterval(Duration.ZERO).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        mapp.close();
+    }
+
+    static List<String> sorted(List<String> functions) {
+        return functions.stream().sorted().toList();
+    }
+
+    @Test
+    void testDecisionsFollowMappsRules() {
+        assertEquals(List.of("READ", "UPDATE"), sorted(client.securityFunctions(List.of("admin", "user"), "prg", null)));
+        // form grants override, forms without any fall back to the program's
+        assertEquals(List.of("CREATE"), sorted(client.securityFunctions(List.of("USER"), "PRG", "FORM1")));
+        assertEquals(List.of("READ"), sorted(client.securityFunctions(List.of("USER"), "PRG", "FORM2")));
+        assertEquals(List.of("CREATE", "READ", "UPDATE"), sorted(client.securityFunctions(List.of("USER", "ADMIN"), "PRG", "FORM1")));
+
+        assertEquals(List.of(), client.securityFunctions(List.of(), "PRG", null));
+        assertThrows(MappNotFoundException.class, () -> client.securityFunctions(List.of(), "NOPE", null));
+        assertThrows(MappNotFoundException.class, () -> client.securityFunctions(List.of("USER"), "PRG", "NOPE"));
+        assertThrows(MappNotFoundException.class, () -> client.securityFunctions(List.of("USER", "NOBODY"), "PRG", null));
+    }
+
+    @Test
+    void testRepeatedChecksStayInProcess() {
+        for (int i = 0; i < 100; i++) {
+            client.securityFunctions(List.of("USER", "ADMIN"), "PRG", "FORM1");
+            client.securityFunctions(List.of("USER"), "PRG", null);
+        }
+
+        // one per role and program/form, the first time
+        assertEquals(3, mapp.permissionRequests());
+        assertEquals(3, client.stats().missCount());
+    }
+
+    @Test
+    void testSyncDropsJustWhatChanged() {
+        client.securityFunctions(List.of("USER", "ADMIN"), "PRG", "FORM1");
+        client.securityFunctions(List.of("USER", "ADMIN"), "PRG", "FORM2");
+        int before = mapp.permissionRequests();
+
+        // USER's form grants on FORM1 only affect USER on FORM1
+        mapp.mapRoleToForm("PRG", "FORM1", "USER", "DELETE");
+        assertEquals(List.of("CREATE"), client.securityFunctions(List.of("USER"), "PRG", "FORM1"));
+
+        client.sync();
+        assertEquals(mapp.revision(), client.revision());
+        assertEquals(List.of("DELETE"), client.securityFunctions(List.of("USER"), "PRG", "FORM1"));
+        client.securityFunctions(List.of("USER", "ADMIN"), "PRG", "FORM2");
+        client.securityFunctions(List.of("ADMIN"), "PRG", "FORM1");
+        assertEquals(before + 1, mapp.permissionRequests());
+
+        // ADMIN's program grants reach every form it has none of its own on
+        mapp.mapRoleToProgram("PRG", "ADMIN", "READ");
+        client.sync();
+        assertEquals(List.of("READ"), client.securityFunctions(List.of("ADMIN"), "PRG", "FORM2"));
+        assertEquals(List.of("READ"), client.securityFunctions(List.of("ADMIN"), "PRG", "FORM1"));
+        assertEquals(List.of("DELETE"), client.securityFunctions(List.of("USER"), "PRG", "FORM1"));
+        assertEquals(before + 3, mapp.permissionRequests());
+
+        // creations can't change a decision
+        mapp.createRole("AUDITOR");
+        mapp.addForm("PRG", "FORM3");
+        client.sync();
+        client.securityFunctions(List.of("USER", "ADMIN"), "PRG", "FORM1");
+        assertEquals(before + 3, mapp.permissionRequests());
+
+        mapp.deleteProgram("PRG");
+        client.sync();
+        assertThrows(MappNotFoundException.class, () -> client.securityFunctions(List.of("USER"), "PRG", "FORM1"));
+    }
+
+    @Test
+    void testSyncDoesNotSkipPastAMissingChange() {
+        client.securityFunctions(List.of("USER"), "PRG", "FORM1");
+        long start = client.revision();
+
+        // the first change isn't sent yet, the one after it is
+        mapp.mapRoleToForm("PRG", "FORM1", "USER", "DELETE");
+        mapp.withholdLastChange();
+        mapp.mapRoleToProgram("PRG", "ADMIN", "READ");
+
+        client.sync();
+        assertEquals(start, client.revision());
+        assertEquals(List.of("CREATE"), client.securityFunctions(List.of("USER"), "PRG", "FORM1"));
+
+        // once it's there the next sync picks it up
+        mapp.releaseWithheld();
+        client.sync();
+        assertEquals(mapp.revision(), client.revision());
+        assertEquals(List.of("DELETE"), client.securityFunctions(List.of("USER"), "PRG", "FORM1"));
+    }
+
+    @Test
+    void testResetDropsEverything() {
+        client.securityFunctions(List.of("USER", "ADMIN"), "PRG", null);
+        mapp.mapRoleToProgram("OTHER", "USER", "READ");
+        mapp.forgetChanges();
+
+        client.sync();
+        assertEquals(mapp.revision(), client.revision());
+        assertEquals(0, client.stats().hitCount());
+        client.securityFunctions(List.of("USER", "ADMIN"), "PRG", null);
+        assertEquals(0, client.stats().hitCount());
+        assertEquals(4, mapp.permissionRequests());
+    }
+
+    @Test
+    void testBackgroundSync() throws Exception {
+        try (MappClient syncing = MappClient.builder().baseUrl(mapp.uri()).syncInterval(Duration.ofMillis(20)).build()) {
+            assertEquals(List.of("READ"), syncing.securityFunctions(List.of("USER"), "PRG", null));
+            mapp.mapRoleToProgram("PRG", "USER", "READ", "UPDATE");
+
+            for (int attempt = 0; attempt < 100 && syncing.revision() != mapp.revision(); attempt++) Thread.sleep(20);
+            assertEquals(mapp.revision(), syncing.revision());
+            assertTrue(sorted(syncing.securityFunctions(List.of("USER"), "PRG", null)).contains("UPDATE"));
+        }
+    }
+}
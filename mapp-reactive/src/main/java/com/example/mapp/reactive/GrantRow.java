@@ -0,0 +1,8 @@
+package com.example.mapp.reactive;
+
+/**
+ * One security function granted to a role on a program - or on a form of it, when formId is set
+ */
+record GrantRow(Long roleId, String roleName, Long programId, String programName, Long formId, String formName,
+                String functionName) {
+}
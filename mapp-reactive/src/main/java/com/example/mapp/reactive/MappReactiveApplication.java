@@ -0,0 +1,12 @@
+package com.example.mapp.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class MappReactiveApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(MappReactiveApplication.class, args);
+    }
+}
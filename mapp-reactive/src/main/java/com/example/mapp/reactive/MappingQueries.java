@@ -0,0 +1,121 @@
+package com.example.mapp.reactive;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The reads behind the permission checks and role details, straight against mapp's tables.  Names are stored
+ * uppercased, so callers uppercase what they look up.
+ */
+@Repository
+class MappingQueries {
+
+    @Autowired
+    DatabaseClient databaseClient;
+
+    Mono<Long> findProgramId(String programName) {
+        return databaseClient.sql("select id from programs where name = :name")
+                .bind("name", programName)
+                .map(row -> row.get("id", Long.class))
+                .one();
+    }
+
+    Mono<Long> findFormId(Long programId, String formName) {
+        return databaseClient.sql("select id from forms where owner_id = :programId and name = :name")
+                .bind("programId", programId)
+                .bind("name", formName)
+                .map(row -> row.get("id", Long.class))
+                .one();
+    }
+
+    Flux<Long> findRoleIds(Collection<String> roleNames) {
+        return databaseClient.sql("select id from roles where name in (:names)")
+                .bind("names", roleNames)
+                .map(row -> row.get("id", Long.class))
+                .all();
+    }
+
+    Mono<Long> findRoleId(String roleName) {
+        return this.findRoleIds(List.of(roleName)).next();
+    }
+
+    /**
+     * The roles' rows of the effective permissions read model (form level override already applied) - function ids,
+     * comma separated.  Form id 0 is the program level
+     */
+    Flux<String> findEffectiveFunctionIds(Long programId, Long formId, Collection<Long> roleIds) {
+        return databaseClient.sql("select function_ids from effective_permissions " +
+                        "where program_id = :programId and form_id = :formId and role_id in (:roleIds)")
+                .bind("programId", programId)
+                .bind("formId", formId)
+                .bind("roleIds", roleIds)
+                .map(row -> row.get("function_ids", String.class))
+                .all();
+    }
+
+    Flux<String> findFunctionNames(Collection<Long> functionIds) {
+        return databaseClient.sql("select name from security_functions where id in (:ids)")
+                .bind("ids", functionIds)
+                .map(row -> row.get("name", String.class))
+                .all();
+    }
+
+    /**
+     * Up to limit roles after the given id, in id order
+     */
+    Flux<Role> findRolesAfter(long after, int limit) {
+        return databaseClient.sql("select id, name from roles where id > :after order by id limit :limit")
+                .bind("after", after)
+                .bind("limit", limit)
+                .map(row -> new Role(row.get("id", Long.class), row.get("name", String.class)))
+                .all();
+    }
+
+    /**
+     * The roles' program level then form level grants, each in role, program (then form) and function order
+     */
+    Flux<GrantRow> findGrantRows(Collection<Long> roleIds) {
+        Flux<GrantRow> programGrants = databaseClient.sql("select r.id as role_id, r.name as role_name, p.id as program_id, " +
+                        "p.name as program_name, sf.name as function_name " +
+                        "from role_function_mappings m " +
+                        "join roles r on r.id = m.role_id " +
+                        "join programs p on p.id = m.program_id " +
+                        "join security_functions sf on sf.id = m.security_function_id " +
+                        "where m.role_id in (:roleIds) order by r.id, p.id, sf.id")
+                .bind("roleIds", roleIds)
+                .map(row -> grantRow(row, false))
+                .all();
+        Flux<GrantRow> formGrants = databaseClient.sql("select r.id as role_id, r.name as role_name, p.id as program_id, " +
+                        "p.name as program_name, f.id as form_id, f.name as form_name, sf.name as function_name " +
+                        "from role_function_form_mappings m " +
+                        "join roles r on r.id = m.role_id " +
+                        "join programs p on p.id = m.program_id " +
+                        "join forms f on f.id = m.form_id " +
+                        "join security_functions sf on sf.id = m.security_function_id " +
+                        "where m.role_id in (:roleIds) order by r.id, p.id, f.id, sf.id")
+                .bind("roleIds", roleIds)
+                .map(row -> grantRow(row, true))
+                .all();
+        return Flux.concat(programGrants, formGrants);
+    }
+
+    private static GrantRow grantRow(Readable row, boolean form) {
+        return new GrantRow(row.get("role_id", Long.class),
+                row.get("role_name", String.class),
+                row.get("program_id", Long.class),
+                row.get("program_name", String.class),
+                form ? row.get("form_id", Long.class) : null,
+                form ? row.get("form_name", String.class) : null,
+                row.get("function_name", String.class));
+    }
+
+    record Role(Long id, String name) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.mapp.reactive;
+
+import com.example.mapp.reactive.dto.RoleWithProgramsDto;
+import com.example.mapp.reactive.dto.RoleWithProgramsListDto;
+import com.example.mapp.reactive.dto.SecurityFunctionList;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * mapp's read endpoints for the gateway - same paths, parameters and answers as RoleMappingController's
+ */
+@RestController
+public class ReactiveRoleMappingController {
+
+    @Autowired
+    ReactiveRoleMappingService roleMappingService;
+
+    @Operation(summary = "Gets all roles with their associated programs/functions, or just the given role",
+            description = "Keyset paged when no roleName is given - pass the returned nextCursor as 'after' to get the next page")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = RoleWithProgramsListDto.class)))})
+    @GetMapping("/rolesDetails")
+    public Mono<RoleWithProgramsListDto> getRoleDetails(@RequestParam(required = false) String roleName,
+                                                        @RequestParam(required = false) Long after,
+                                                        @RequestParam(required = false) Integer size) {
+        if (roleName == null) return roleMappingService.mapRolesAndProgramsPageToDto(after, size);
+
+        return roleMappingService.mapRoleAndProgramsToDto(roleName)
+                .map(role -> RoleWithProgramsListDto.builder().roles(List.of(role)).build());
+    }
+
+    @Operation(summary = "Streams all roles with their associated programs/functions, one JSON document per line",
+            description = "Opt-in with Accept: application/x-ndjson - read a page of roles at a time, as fast as the client takes them")
+    @GetMapping(value = "/rolesDetails", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<RoleWithProgramsDto> streamRoleDetails() {
+        return roleMappingService.streamAllRolesAndProgramsToDto();
+    }
+
+    @Operation(summary = "Gets a list of strings representing the security functions for a program",
+            description = "Gets a list of collated permissions for a given program (and form if given).  Request body is a list of 0 or more roles for which to collate")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = SecurityFunctionList.class)))})
+    @PostMapping("/permissions-for-program")
+    public Mono<SecurityFunctionList> getSecurityFunctionsForResource(@RequestParam String programName,
+                                                                      @RequestParam(required = false) String formName,
+                                                                      @RequestBody List<String> roleNames) {
+        return roleMappingService.collateRolesToProgramAndForm(roleNames, programName, formName)
+                .map(functions -> SecurityFunctionList.builder().securityFunctions(functions).build());
+    }
+}
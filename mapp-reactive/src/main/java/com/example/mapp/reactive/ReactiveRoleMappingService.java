@@ -0,0 +1,120 @@
+package com.example.mapp.reactive;
+
+import com.example.mapp.reactive.dto.RoleWithProgramsDto;
+import com.example.mapp.reactive.dto.RoleWithProgramsListDto;
+import com.example.mapp.reactive.exception.NotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * mapp's permission checks and role details without blocking - every query is a publisher, so a request waiting on
+ * the database holds no thread and a handful of event loop threads serve every request in flight
+ */
+@Service
+public class ReactiveRoleMappingService {
+
+    @Autowired
+    MappingQueries mappingQueries;
+
+    @Value("${mapp.paging.default-size:100}")
+    int defaultPageSize;
+
+    @Value("${mapp.paging.max-size:1000}")
+    int maxPageSize;
+
+    /**
+     * Same semantics as mapp's collateRolesToProgramAndForm - a role's form level grant (if it has one) overrides
+     * its program level grant, and the result is the union over all roles.  Read from the effective permissions
+     * read model, which has the override already applied.
+     */
+    public Mono<List<String>> collateRolesToProgramAndForm(List<String> roleNames, String programName, String formName) {
+        Mono<Long> program = mappingQueries.findProgramId(programName.toUpperCase(Locale.ROOT))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Pgm Name not found")));
+        if (roleNames.isEmpty()) return program.thenReturn(List.of());
+
+        Set<String> names = new HashSet<>(roleNames.stream().map(name -> name.toUpperCase(Locale.ROOT)).toList());
+        return program.flatMap(programId -> mappingQueries.findRoleIds(names)
+                .collectList()
+                .filter(roleIds -> roleIds.size() == names.size())
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Role not found")))
+                .flatMap(roleIds -> this.formId(programId, formName)
+                        .flatMap(formId -> this.functionNames(programId, formId, roleIds))));
+    }
+
+    /**
+     * Same as mapp's mapRoleAndProgramsToDto
+     */
+    public Mono<RoleWithProgramsDto> mapRoleAndProgramsToDto(String roleName) {
+        return mappingQueries.findRoleId(roleName.toUpperCase(Locale.ROOT))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Role not found")))
+                .flatMap(roleId -> this.assemble(List.of(new MappingQueries.Role(roleId, roleName.toUpperCase(Locale.ROOT)))))
+                .map(roles -> roles.get(0));
+    }
+
+    /**
+     * A keyset page of role details - the same as mapp's mapRolesAndProgramsPageToDto
+     */
+    public Mono<RoleWithProgramsListDto> mapRolesAndProgramsPageToDto(Long after, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+
+        return mappingQueries.findRolesAfter(after == null ? 0L : after, pageSize + 1)
+                .collectList()
+                .flatMap(roles -> {
+                    List<MappingQueries.Role> page = roles.size() <= pageSize ? roles : roles.subList(0, pageSize);
+                    Long nextCursor = roles.size() <= pageSize ? null : page.get(pageSize - 1).id();
+                    return this.assemble(page).map(dtos -> RoleWithProgramsListDto.builder()
+                            .roles(dtos)
+                            .nextCursor(nextCursor)
+                            .build());
+                });
+    }
+
+    /**
+     * Every role's details, in id order, a page of roles at a time - the next page isn't read until the subscriber
+     * has asked for what's left of the last one, so however many roles there are, a slow reader holds no more
+     * than a page of them (and no connection in between pages)
+     */
+    public Flux<RoleWithProgramsDto> streamAllRolesAndProgramsToDto() {
+        return this.mapRolesAndProgramsPageToDto(null, defaultPageSize)
+                .expand(page -> page.getNextCursor() == null
+                        ? Mono.empty()
+                        : this.mapRolesAndProgramsPageToDto(page.getNextCursor(), defaultPageSize))
+                .concatMapIterable(RoleWithProgramsListDto::getRoles, 1);
+    }
+
+    private Mono<Long> formId(Long programId, String formName) {
+        if (formName == null) return Mono.just(0L);
+
+        return mappingQueries.findFormId(programId, formName.toUpperCase(Locale.ROOT))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Form not found")));
+    }
+
+    private Mono<List<String>> functionNames(Long programId, Long formId, List<Long> roleIds) {
+        return mappingQueries.findEffectiveFunctionIds(programId, formId, roleIds)
+                .flatMapIterable(ids -> Arrays.stream(ids.split(",")).map(Long::valueOf).toList())
+                .collect(HashSet<Long>::new, Set::add)
+                .flatMap(functionIds -> functionIds.isEmpty()
+                        ? Mono.just(List.of())
+                        : mappingQueries.findFunctionNames(functionIds).collectList());
+    }
+
+    // one query per mapping level for the whole page, grouped into programs/forms in memory
+    private Mono<List<RoleWithProgramsDto>> assemble(List<MappingQueries.Role> roles) {
+        RoleDetailsAssembler assembler = new RoleDetailsAssembler();
+        roles.forEach(r -> assembler.addRole(r.name()));
+        if (roles.isEmpty()) return Mono.just(assembler.build());
+
+        return mappingQueries.findGrantRows(roles.stream().map(MappingQueries.Role::id).toList())
+                .reduce(assembler, RoleDetailsAssembler::addGrant)
+                .map(RoleDetailsAssembler::build);
+    }
+}
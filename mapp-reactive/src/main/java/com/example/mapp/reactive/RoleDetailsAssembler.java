@@ -0,0 +1,88 @@
+package com.example.mapp.reactive;
+
+import com.example.mapp.reactive.dto.FormDto;
+import com.example.mapp.reactive.dto.ProgramDto;
+import com.example.mapp.reactive.dto.RoleWithProgramsDto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Groups grant rows into role details DTOs the way mapp does - each role gets just the programs (and forms under
+ * them) it has functions mapped on, with only its own mappings in them
+ */
+class RoleDetailsAssembler {
+
+    private final Map<String, Map<Long, ProgramEntry>> roles = new LinkedHashMap<>();
+
+    /**
+     * Makes sure the role is in the output, even if no grant rows end up added for it
+     */
+    RoleDetailsAssembler addRole(String roleName) {
+        roles.computeIfAbsent(roleName, r -> new TreeMap<>());
+        return this;
+    }
+
+    RoleDetailsAssembler addGrant(GrantRow row) {
+        ProgramEntry program = roles.computeIfAbsent(row.roleName(), r -> new TreeMap<>())
+                .computeIfAbsent(row.programId(), id -> new ProgramEntry(row.programId(), row.programName()));
+        if (row.formId() == null) {
+            program.addFunction(row.roleName(), row.functionName());
+        } else {
+            program.forms
+                    .computeIfAbsent(row.formId(), id -> new FormEntry(row.formId(), row.formName()))
+                    .addFunction(row.roleName(), row.functionName());
+        }
+        return this;
+    }
+
+    List<RoleWithProgramsDto> build() {
+        List<RoleWithProgramsDto> dtos = new ArrayList<>(roles.size());
+        roles.forEach((roleName, programs) -> dtos.add(RoleWithProgramsDto.builder()
+                .roleName(roleName)
+                .programs(programs.values().stream().map(ProgramEntry::toProgramDto).toList())
+                .build()));
+        return dtos;
+    }
+
+    private static class FormEntry {
+        final Long id;
+        final String name;
+        final Map<String, List<String>> roleMappings = new HashMap<>();
+
+        FormEntry(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        void addFunction(String roleName, String functionName) {
+            roleMappings.computeIfAbsent(roleName, r -> new ArrayList<>()).add(functionName);
+        }
+
+        FormDto toFormDto() {
+            return FormDto.builder().id(id).name(name).roleMappings(roleMappings).build();
+        }
+    }
+
+    private static class ProgramEntry extends FormEntry {
+        final Map<Long, FormEntry> forms = new TreeMap<>();
+
+        ProgramEntry(Long id, String name) {
+            super(id, name);
+        }
+
+        ProgramDto toProgramDto() {
+            return ProgramDto.builder()
+                    .id(id)
+                    .name(name)
+                    .forms(forms.values().stream().map(FormEntry::toFormDto).toList())
+                    .roleMappings(roleMappings)
+                    .securityFunctions(List.of())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.mapp.reactive.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+
+import java.util.List;
+import java.util.Map;
+
+@Jacksonized
+@Builder
+@Data
+public class FormDto {
+
+    // ignore for now
+    @JsonIgnore
+    Long id;
+
+    String name;
+    Map<String, List<String>> roleMappings;
+}
@@ -0,0 +1,24 @@
+package com.example.mapp.reactive.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+
+import java.util.List;
+import java.util.Map;
+
+@Jacksonized
+@Builder
+@Data
+public class ProgramDto {
+
+    // ignore for now
+    @JsonIgnore
+    Long id;
+
+    String name;
+    List<FormDto> forms;
+    Map<String, List<String>> roleMappings;
+    List<String> securityFunctions;
+}
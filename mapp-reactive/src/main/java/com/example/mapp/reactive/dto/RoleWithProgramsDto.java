@@ -0,0 +1,17 @@
+package com.example.mapp.reactive.dto;
+
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+
+import java.util.List;
+
+@Jacksonized
+@Builder
+@Data
+public class RoleWithProgramsDto {
+
+    String roleName;
+    List<ProgramDto> programs;
+}
@@ -0,0 +1,15 @@
+package com.example.mapp.reactive.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+
+import java.util.List;
+
+@Jacksonized
+@Builder
+@Data
+public class SecurityFunctionList {
+
+    List<String> securityFunctions;
+}
@@ -0,0 +1,201 @@
+package com.example.mapp.reactive;
+
+import com.example.mapp.reactive.dto.RoleWithProgramsDto;
+import com.example.mapp.reactive.dto.RoleWithProgramsListDto;
+import com.example.mapp.reactive.dto.SecurityFunctionList;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MappReactiveApplicationTests {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    ReactiveRoleMappingService roleMappingService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @LocalServerPort
+    int port;
+
+    WebTestClient.ResponseSpec permissions(String query, List<String> roles) {
+        return webTestClient.post()
+                .uri("/permissions-for-program?" + query)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(roles)
+                .exchange();
+    }
+
+    List<String> functions(String query, List<String> roles) {
+        return permissions(query, roles)
+                .expectStatus().isOk()
+                .expectBody(SecurityFunctionList.class)
+                .returnResult()
+                .getResponseBody()
+                .getSecurityFunctions()
+                .stream()
+                .sorted()
+                .toList();
+    }
+
+    @Test
+    void testPermissionsFollowMappsRules() {
+        assertEquals(List.of("READ", "UPDATE"), functions("programName=prg1", List.of("admin", "user")));
+        // form grants override, forms without any fall back to the program's
+        assertEquals(List.of("CREATE"), functions("programName=PRG1&formName=FORM1", List.of("USER")));
+        assertEquals(List.of("READ"), functions("programName=PRG1&formName=FORM2", List.of("USER")));
+        assertEquals(List.of("CREATE", "READ", "UPDATE"), functions("programName=PRG1&formName=form1", List.of("USER", "ADMIN")));
+        assertEquals(List.of(), functions("programName=PRG1", List.of("AUDITOR")));
+        assertEquals(List.of(), functions("programName=PRG2", List.of()));
+
+        permissions("programName=NOPE", List.of()).expectStatus().isNotFound();
+        permissions("programName=NOPE", List.of("USER")).expectStatus().isNotFound();
+        permissions("programName=PRG1&formName=NOPE", List.of("USER")).expectStatus().isNotFound();
+        permissions("programName=PRG1", List.of("USER", "NOBODY")).expectStatus().isNotFound();
+    }
+
+    @Test
+    void testRoleDetails() {
+        RoleWithProgramsDto user = webTestClient.get()
+                .uri("/rolesDetails?roleName=user")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RoleWithProgramsListDto.class)
+                .returnResult()
+                .getResponseBody()
+                .getRoles()
+                .get(0);
+        assertEquals("USER", user.getRoleName());
+        assertEquals(1, user.getPrograms().size());
+        assertEquals("PRG1", user.getPrograms().get(0).getName());
+        assertEquals(Map.of("USER", List.of("READ")), user.getPrograms().get(0).getRoleMappings());
+        assertEquals(1, user.getPrograms().get(0).getForms().size());
+        assertEquals(Map.of("USER", List.of("CREATE")), user.getPrograms().get(0).getForms().get(0).getRoleMappings());
+
+        webTestClient.get().uri("/rolesDetails?roleName=nobody").exchange().expectStatus().isNotFound();
+
+        // keyset paged in id order, roles without mappings included
+        RoleWithProgramsListDto first = webTestClient.get()
+                .uri("/rolesDetails?size=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RoleWithProgramsListDto.class)
+                .returnResult()
+                .getResponseBody();
+        assertEquals(List.of("USER", "ADMIN"), first.getRoles().stream().map(RoleWithProgramsDto::getRoleName).toList());
+        assertEquals(22L, first.getNextCursor());
+
+        RoleWithProgramsListDto last = webTestClient.get()
+                .uri("/rolesDetails?size=2&after=" + first.getNextCursor())
+                .exchange()
+                .expectBody(RoleWithProgramsListDto.class)
+                .returnResult()
+                .getResponseBody();
+        assertEquals(List.of("AUDITOR"), last.getRoles().stream().map(RoleWithProgramsDto::getRoleName).toList());
+        assertEquals(List.of(), last.getRoles().get(0).getPrograms());
+        assertNull(last.getNextCursor());
+    }
+
+    /**
+     * The same bodies mapp's RoleDetailsParityIntegrationTests expects from mapp for the same mappings - the
+     * assembler and DTOs here are copies of mapp's, this is what keeps them the same
+     */
+    @Test
+    void testRoleDetailsMatchMapps() throws Exception {
+        JsonNode expected = objectMapper.readTree(new ClassPathResource("parity/role-details.json").getInputStream());
+
+        for (Iterator<Map.Entry<String, JsonNode>> it = expected.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> request = it.next();
+            String body = webTestClient.get()
+                    .uri(request.getKey())
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(String.class)
+                    .returnResult()
+                    .getResponseBody();
+
+            // the functions in a mapping come in no particular order
+            JSONAssert.assertEquals(request.getKey(), request.getValue().toString(), body, JSONCompareMode.NON_EXTENSIBLE);
+        }
+    }
+
+    @Test
+    void testRoleDetailsStream() {
+        webTestClient.get()
+                .uri("/rolesDetails")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(RoleWithProgramsDto.class)
+                .getResponseBody()
+                .map(RoleWithProgramsDto::getRoleName)
+                .as(StepVerifier::create)
+                .expectNext("USER", "ADMIN", "AUDITOR")
+                .verifyComplete();
+
+        // pages are only read as the subscriber asks for more - nothing is read ahead of demand
+        roleMappingService.defaultPageSize = 1;
+        try {
+            StepVerifier.create(roleMappingService.streamAllRolesAndProgramsToDto().map(RoleWithProgramsDto::getRoleName), 0)
+                    .expectSubscription()
+                    .expectNoEvent(Duration.ofMillis(50))
+                    .thenRequest(1)
+                    .expectNext("USER")
+                    .thenRequest(2)
+                    .expectNext("ADMIN", "AUDITOR")
+                    .verifyComplete();
+        } finally {
+            roleMappingService.defaultPageSize = 100;
+        }
+    }
+
+    @Test
+    void testManyChecksInFlight() {
+        int checks = 1000;
+        // a connection per check, so they're all in flight at once
+        WebClient client = WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(
+                        HttpClient.create(ConnectionProvider.builder("checks").maxConnections(checks).pendingAcquireMaxCount(-1).build())))
+                .build();
+
+        Long ok = Flux.range(0, checks)
+                .flatMap(i -> client.post()
+                        .uri("/permissions-for-program?programName=PRG1&formName=FORM" + (1 + i % 2))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(List.of(i % 3 == 0 ? "ADMIN" : "USER"))
+                        .retrieve()
+                        .bodyToMono(SecurityFunctionList.class), checks)
+                .filter(result -> !result.getSecurityFunctions().isEmpty())
+                .count()
+                .block(Duration.ofSeconds(60));
+
+        assertEquals(checks, ok);
+    }
+}
@@ -1,14 +1,17 @@
 package com.example.mapp;
 
+import com.example.mapp.repository.NaturalIdJpaRepository;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 import javax.sql.DataSource;
 
 @SpringBootApplication
+@EnableJpaRepositories(repositoryBaseClass = NaturalIdJpaRepository.class)
 public class MappApplication {
 
     public static void main(String[] args) {
@@ -35,7 +38,8 @@ public class MappApplication {
     public DataSource dataSourcePg() {
         return DataSourceBuilder.create()
                 .driverClassName("org.postgresql.Driver")
-                .url("jdbc:postgresql://localhost:5432/testmapp")
+                // lets the driver send a batch of inserts as multi-row inserts
+                .url("jdbc:postgresql://localhost:5432/testmapp?reWriteBatchedInserts=true")
                 .username("postgres")
                 .password("postgres")
                 .build();
@@ -0,0 +1,121 @@
+package com.example.mapp.cache;
+
+import com.example.mapp.event.MappingChangeEvent;
+import com.example.mapp.model.util.NormalizedName;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * In-process cache of resolved permission decisions - the security functions a single role gets
+ * on a program (or on a form within it, after the form-overrides-program rule is applied).
+ * <p>
+ * Bounded by weight (one per entry plus one per cached function name) and invalidated precisely by
+ * the {@link MappingChangeEvent}s the service publishes once its changes are committed.
+ * Hit/miss/eviction and size meters are published under the "permission-decisions" cache name.
+ */
+@Component
+public class PermissionDecisionCache implements MeterBinder {
+
+    public static final String CACHE_NAME = "permission-decisions";
+
+    /**
+     * Cache key - uppercased names, formName is null for a program level decision
+     */
+    public record DecisionKey(String programName, String formName, String roleName) {
+
+        public static DecisionKey of(String programName, String formName, String roleName) {
+            return new DecisionKey(NormalizedName.normalize(programName),
+                    NormalizedName.normalize(formName),
+                    NormalizedName.normalize(roleName));
+        }
+    }
+
+    private final Cache<DecisionKey, List<String>> cache;
+
+    // loads hold the read side so an invalidation can't interleave with (and be undone by) a load
+    // that read the state from before the change - hits never touch the lock
+    private final ReadWriteLock loadLock = new ReentrantReadWriteLock();
+
+    public PermissionDecisionCache(@Value("${mapp.decision-cache.max-weight:100000}") long maxWeight) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((DecisionKey key, List<String> functions) -> 1 + functions.size())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Gets the cached decision for the key, resolving (and caching) it with the loader on a miss.
+     * Exceptions thrown by the loader (e.g. an unknown program) propagate and nothing is cached.
+     */
+    public List<String> get(DecisionKey key, Function<DecisionKey, List<String>> loader) {
+        List<String> functions = cache.getIfPresent(key);
+        if (functions != null) return functions;
+
+        loadLock.readLock().lock();
+        try {
+            functions = List.copyOf(loader.apply(key));
+            cache.put(key, functions);
+            return functions;
+        } finally {
+            loadLock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMappingChange(MappingChangeEvent event) {
+        if (!event.kind().changesGrants()) return;
+
+        loadLock.writeLock().lock();
+        try {
+            cache.asMap()
+                    .keySet()
+                    .removeIf(key -> event.affects(key.programName(), key.formName(), key.roleName()));
+        } finally {
+            loadLock.writeLock().unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        loadLock.writeLock().lock();
+        try {
+            cache.invalidateAll();
+        } finally {
+            loadLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+        Gauge.builder("cache.weighted.size", this, PermissionDecisionCache::weightedSize)
+                .tag("cache", CACHE_NAME)
+                .description("The sum of the weights of the entries in the cache")
+                .register(registry);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    public long weightedSize() {
+        return cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L);
+    }
+}
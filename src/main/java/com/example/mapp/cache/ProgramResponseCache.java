@@ -0,0 +1,179 @@
+package com.example.mapp.cache;
+
+import com.example.mapp.dto.ProgramDto;
+import com.example.mapp.event.MappingChangeEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * GET /programs/{id} responses as they're sent - the encoded body and the program revision it was built at (its
+ * ETag) - per program, encoding and functionOrdinals.  A hit is answered from here without loading the program or
+ * encoding anything.
+ * <p>
+ * Bounded by the size of the bodies (mapp.program-response-cache.max-size) and invalidated by the
+ * {@link MappingChangeEvent}s the service publishes once its changes are committed: a change to a program drops its
+ * responses, a change not scoped to one (a role deleted, an import) drops them all.  Hit/miss/eviction and size
+ * meters are published under the "program-responses" cache name.
+ */
+@Component
+public class ProgramResponseCache implements MeterBinder {
+
+    public static final String CACHE_NAME = "program-responses";
+
+    // roughly what an entry costs besides its body - the key, the entry and the array header
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /**
+     * Cache key - encoding is the negotiated content type
+     */
+    public record ResponseKey(long programId, MediaType encoding, boolean functionOrdinals) {
+    }
+
+    /**
+     * An encoded response - programName is what its invalidations are matched against
+     */
+    public record CachedResponse(String programName, long revision, MediaType contentType, byte[] body) {
+    }
+
+    private final Cache<ResponseKey, CachedResponse> cache;
+
+    // the encodings offered, in order of preference when the client accepts more than one equally
+    private final Map<MediaType, ObjectMapper> encodings = new LinkedHashMap<>();
+
+    // moved by every invalidation - a response built from what was read before it may be out of date, so isn't kept.
+    // Puts hold the read side so an invalidation can't interleave between checking it and putting
+    private final AtomicLong generation = new AtomicLong();
+    private final ReadWriteLock putLock = new ReentrantReadWriteLock();
+
+    public ProgramResponseCache(@Value("${mapp.program-response-cache.max-size:32MB}") DataSize maxSize,
+                                MappingJackson2HttpMessageConverter json,
+                                MappingJackson2CborHttpMessageConverter cbor,
+                                MappingJackson2SmileHttpMessageConverter smile) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((ResponseKey key, CachedResponse response) -> ENTRY_OVERHEAD + response.body().length)
+                .recordStats()
+                .build();
+        encodings.put(MediaType.APPLICATION_JSON, json.getObjectMapper());
+        encodings.put(MediaType.APPLICATION_CBOR, cbor.getObjectMapper());
+        encodings.put(smile.getSupportedMediaTypes().get(0), smile.getObjectMapper());
+    }
+
+    /**
+     * The encoding to answer with - the first of the accepted types (most preferred first) that one is offered in
+     *
+     * @throws HttpMediaTypeNotAcceptableException when none of them is
+     */
+    public MediaType negotiate(List<MediaType> accepted) throws HttpMediaTypeNotAcceptableException {
+        for (MediaType type : accepted) {
+            for (MediaType encoding : encodings.keySet()) {
+                if (type.includes(encoding)) return encoding;
+            }
+        }
+        throw new HttpMediaTypeNotAcceptableException(List.copyOf(encodings.keySet()));
+    }
+
+    public Optional<CachedResponse> getIfPresent(ResponseKey key) {
+        return Optional.ofNullable(cache.getIfPresent(key));
+    }
+
+    /**
+     * To be read before anything the response is built from - see {@link #put}
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * The response for the key - the program in its encoding
+     */
+    public CachedResponse encode(ResponseKey key, String programName, long revision, ProgramDto program) {
+        try {
+            return new CachedResponse(programName, revision, key.encoding(), encodings.get(key.encoding()).writeValueAsBytes(program));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Caches the response, unless there's been an invalidation since the generation (read before the program was) -
+     * whatever it was built from may have changed since
+     */
+    public void put(ResponseKey key, long generation, CachedResponse response) {
+        putLock.readLock().lock();
+        try {
+            if (this.generation.get() == generation) cache.put(key, response);
+        } finally {
+            putLock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMappingChange(MappingChangeEvent event) {
+        if (event.kind() == MappingChangeEvent.Kind.PROGRAM_CREATED || event.kind() == MappingChangeEvent.Kind.ROLE_CREATED) return;
+
+        putLock.writeLock().lock();
+        try {
+            generation.incrementAndGet();
+            if (event.programName() == null) {
+                cache.invalidateAll();
+            } else {
+                cache.asMap().values().removeIf(response -> response.programName().equals(event.programName()));
+            }
+        } finally {
+            putLock.writeLock().unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        putLock.writeLock().lock();
+        try {
+            generation.incrementAndGet();
+            cache.invalidateAll();
+        } finally {
+            putLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+        Gauge.builder("cache.weighted.size", this, ProgramResponseCache::weightedSize)
+                .tag("cache", CACHE_NAME)
+                .description("The sum of the weights of the entries in the cache")
+                .register(registry);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long weightedSize() {
+        return cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L);
+    }
+}
@@ -1,20 +1,42 @@
 package com.example.mapp.controller;
 
+import com.example.mapp.cache.ProgramResponseCache;
+import com.example.mapp.cache.ProgramResponseCache.CachedResponse;
+import com.example.mapp.cache.ProgramResponseCache.ResponseKey;
 import com.example.mapp.dto.*;
+import com.example.mapp.encoding.FunctionOrdinals;
+import com.example.mapp.event.MappingChangePublisher;
+import com.example.mapp.event.MappingChangeStream;
+import com.example.mapp.model.Program;
 import com.example.mapp.model.Role;
+import com.example.mapp.querybudget.QueryBudget;
 import com.example.mapp.service.RoleMappingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @RestController
 public class RoleMappingController {
@@ -22,60 +44,189 @@ public class RoleMappingController {
     @Autowired
     RoleMappingService roleMappingService;
 
-    @Operation(summary = "Gets all role names")
-    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = RoleListDto.class)))})
+    @Autowired
+    MappingChangeStream mappingChangeStream;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ProgramResponseCache programResponseCache;
+
+    @Autowired
+    MappingChangePublisher mappingChangePublisher;
+
+    @Autowired
+    ContentNegotiationManager contentNegotiationManager;
+
+    @Operation(summary = "Gets a page of role names",
+            description = "Keyset paged - pass the returned nextCursor as 'after' to get the next page.  Conditional on the global mapping revision (ETag)")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = RoleListDto.class))),
+            @ApiResponse(responseCode = "304", description = "Nothing has changed since the revision given in If-None-Match")})
     @GetMapping("/roleNames")
-    public ResponseEntity<RoleListDto> getRoles() {
-        return new ResponseEntity<>(RoleListDto.builder().roles(roleMappingService.getRoles()).build(), HttpStatus.OK);
+    @QueryBudget(2)
+    public ResponseEntity<RoleListDto> getRoles(@RequestParam(required = false) Long after,
+                                                @RequestParam(required = false) Integer size,
+                                                WebRequest request) {
+        return conditional(request, roleMappingService.getMappingRevision(), () -> roleMappingService.getRolesPage(after, size));
     }
 
-    @Operation(summary = "Gets all roles with their associated programs/functions")
-    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = RoleWithProgramsListDto.class)))})
+    @Operation(summary = "Gets a page of roles with their associated programs/functions (or just the given role)",
+            description = "Keyset paged when no roleName is given - pass the returned nextCursor as 'after' to get the next page.  Conditional on the global mapping revision (ETag)")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = RoleWithProgramsListDto.class))),
+            @ApiResponse(responseCode = "304", description = "Nothing has changed since the revision given in If-None-Match")})
     @GetMapping("/rolesDetails")
-    public ResponseEntity<RoleWithProgramsListDto> getRoleDetails(@RequestParam(required = false) String roleName) {
-        List<RoleWithProgramsDto> retVal = new ArrayList<>();
-        if (roleName == null) {
-            List<Role> allRoles = roleMappingService.getRoles();
-            retVal.addAll(allRoles.stream().map(r -> roleMappingService.mapRoleAndProgramsToDto(r.getName())).toList());
-        } else {
-            retVal.add(roleMappingService.mapRoleAndProgramsToDto(roleName));
-        }
+    @QueryBudget(4)
+    public ResponseEntity<RoleWithProgramsListDto> getRoleDetails(@RequestParam(required = false) String roleName,
+                                                                  @RequestParam(required = false) Long after,
+                                                                  @RequestParam(required = false) Integer size,
+                                                                  WebRequest request) {
+        return conditional(request, roleMappingService.getMappingRevision(), () -> {
+            if (roleName == null) return roleMappingService.mapRolesAndProgramsPageToDto(after, size);
+
+            return RoleWithProgramsListDto.builder()
+                    .roles(List.of(roleMappingService.mapRoleAndProgramsToDto(roleName)))
+                    .build();
+        });
+    }
 
-        return new ResponseEntity<>(RoleWithProgramsListDto.builder().roles(retVal).build(), HttpStatus.OK);
+    @Operation(summary = "Streams all roles with their associated programs/functions, one JSON document per line",
+            description = "Opt-in with Accept: application/x-ndjson - memory use stays flat regardless of the number of roles/programs")
+    @GetMapping(value = "/rolesDetails", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRoleDetails() {
+        return ndjson(roleMappingService::streamAllRolesAndProgramsToDto);
     }
 
-    @Operation(summary = "Gets all programs")
-    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = ProgramListDto.class)))})
+    @Operation(summary = "Gets a page of programs",
+            description = "Keyset paged - pass the returned nextCursor as 'after' to get the next page.  Conditional on the global mapping revision (ETag).  With functionOrdinals, role mappings are sent as indexes into each program's securityFunctions")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = ProgramListDto.class))),
+            @ApiResponse(responseCode = "304", description = "Nothing has changed since the revision given in If-None-Match")})
     @GetMapping("/programs")
-    public ResponseEntity<ProgramListDto> getPrograms() {
-        roleMappingService.mapRoleAndProgramsToDto("ROLE1");
-        return new ResponseEntity<>(ProgramListDto.builder()
-                .programs(roleMappingService.getPrograms()
-                        .stream()
-                        .map(f -> roleMappingService.mapProgramToDto(f))
-                        .toList())
-                .build(), HttpStatus.OK);
+    // the page's children are batch fetched, so this holds for pages up to 100 (mapp.paging.default-size)
+    @QueryBudget(13)
+    public ResponseEntity<ProgramListDto> getPrograms(@RequestParam(required = false) Long after,
+                                                      @RequestParam(required = false) Integer size,
+                                                      @RequestParam(defaultValue = "false") boolean functionOrdinals,
+                                                      WebRequest request) {
+        return conditional(request, roleMappingService.getMappingRevision(), () -> {
+            ProgramListDto page = roleMappingService.mapProgramsPageToDto(after, size);
+            if (!functionOrdinals) return page;
+
+            return ProgramListDto.builder()
+                    .programs(page.getPrograms().stream().map(FunctionOrdinals::encode).toList())
+                    .nextCursor(page.getNextCursor())
+                    .build();
+        });
     }
 
-    @Operation(summary = "Gets a program by its ID")
-    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = ProgramDto.class)))})
+    @Operation(summary = "Streams all programs, one JSON document per line",
+            description = "Opt-in with Accept: application/x-ndjson - memory use stays flat regardless of the number of programs")
+    @GetMapping(value = "/programs", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPrograms() {
+        return ndjson(roleMappingService::streamProgramsToDto);
+    }
+
+    @Operation(summary = "Gets a program by its ID",
+            description = "Conditional on the program's revision (ETag).  With functionOrdinals, role mappings are sent as indexes into its securityFunctions.  Sent from the encoded responses cached until the program next changes")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = ProgramDto.class))),
+            @ApiResponse(responseCode = "304", description = "The program hasn't changed since the revision given in If-None-Match")})
     @GetMapping("/programs/{id}")
-    public ResponseEntity<ProgramDto> getProgram(@PathVariable Long id) {
-        return new ResponseEntity<>(roleMappingService.mapProgramToDto(roleMappingService.getProgramById(id)),
-                HttpStatus.OK);
+    @QueryBudget(8)
+    public ResponseEntity<byte[]> getProgram(@PathVariable Long id,
+                                             @RequestParam(defaultValue = "false") boolean functionOrdinals,
+                                             NativeWebRequest request) throws HttpMediaTypeNotAcceptableException {
+        MediaType encoding = programResponseCache.negotiate(contentNegotiationManager.resolveMediaTypes(request));
+        ResponseKey key = new ResponseKey(id, encoding, functionOrdinals);
+
+        // this transaction's own uncommitted changes aren't in any cached response (and mustn't get into one)
+        boolean cacheable = !mappingChangePublisher.hasPendingChanges();
+        Optional<CachedResponse> cached = cacheable ? programResponseCache.getIfPresent(key) : Optional.empty();
+        if (cached.isEmpty()) {
+            long generation = programResponseCache.generation();
+            Program program = roleMappingService.getProgramById(id);
+            if (request.checkNotModified(etag(program.getRevision()))) return null;
+
+            ProgramDto dto = roleMappingService.mapProgramToDto(program);
+            CachedResponse response = programResponseCache.encode(key,
+                    program.getName(),
+                    program.getRevision(),
+                    functionOrdinals ? FunctionOrdinals.encode(dto) : dto);
+            if (cacheable) programResponseCache.put(key, generation, response);
+            cached = Optional.of(response);
+        } else if (request.checkNotModified(etag(cached.get().revision()))) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag(cached.get().revision()))
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(cached.get().contentType())
+                .body(cached.get().body());
     }
 
     @Operation(summary = "Gets a list of strings representing the security functions for a program",
-            description = "Gets a list of collated permissions for a given program (and form if given).  Request body is a list of 0 or more roles for which to collate")
+            description = "Gets a list of collated permissions for a given program (and form if given).  Request body is a list of 0 or more roles for which to collate.  With functionOrdinals, they're sent as indexes into the program's securityFunctions, along with the program revision (its ETag) those are as of")
     @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = SecurityFunctionList.class)))})
     @PostMapping("/permissions-for-program")
+    @QueryBudget(5)
     public ResponseEntity<SecurityFunctionList> getSecurityFunctionsForResource(@RequestParam String programName,
                                                                                 @RequestParam(required = false) String formName,
+                                                                                @RequestParam(defaultValue = "false") boolean functionOrdinals,
                                                                                 @RequestBody List<String> roleNames) {
 
-        return new ResponseEntity<>(SecurityFunctionList.builder()
-                .securityFunctions(roleMappingService.collateRolesToProgramAndForm(roleNames, programName, formName))
-                .build(), HttpStatus.OK);
+        if (functionOrdinals) {
+            return new ResponseEntity<>(roleMappingService.collateRoleOrdinalsToProgramAndForm(roleNames, programName, formName), HttpStatus.OK);
+        }
+
+        List<String> functions = roleMappingService.collateRolesToProgramAndForm(roleNames, programName, formName);
+        return new ResponseEntity<>(SecurityFunctionList.builder().securityFunctions(functions).build(), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Gets the security functions for many programs/forms at once for the same list of roles",
+            description = "Roles are resolved once for the whole batch.  A target whose program or form isn't found gets an error in its result instead of failing the batch.  With functionOrdinals, the functions are sent as indexes into each program's securityFunctions, along with the program revision (its ETag) those are as of")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = PermissionBatchResultDto.class)))})
+    @PostMapping("/permissions-for-programs")
+    @QueryBudget(5)
+    public ResponseEntity<PermissionBatchResultDto> getSecurityFunctionsForResources(@RequestBody PermissionBatchRequestDto request,
+                                                                                     @RequestParam(defaultValue = "false") boolean functionOrdinals) {
+        List<PermissionTargetResultDto> results = functionOrdinals
+                ? roleMappingService.collateRoleOrdinalsToTargets(request.getRoleNames(), request.getTargets())
+                : roleMappingService.collateRolesToTargets(request.getRoleNames(), request.getTargets());
+        return new ResponseEntity<>(PermissionBatchResultDto.builder().results(results).build(), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Gets hit/miss/eviction statistics of the permission decision cache backing /permissions-for-program")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = DecisionCacheStatsDto.class)))})
+    @GetMapping("/permissions-cache/stats")
+    public ResponseEntity<DecisionCacheStatsDto> getDecisionCacheStats() {
+        return new ResponseEntity<>(roleMappingService.getDecisionCacheStats(), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Streams committed mapping changes as server-sent events",
+            description = "Each 'mapping-change' event is a MappingChangeDto with its revision as the event id.  Reconnecting with Last-Event-ID (or 'since' on a first connection) replays the changes after it while they're still buffered - otherwise a 'reset' event (the latest revision) says to drop anything cached")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE, schema = @Schema(implementation = MappingChangeDto.class)))})
+    @GetMapping(value = "/mapping-changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMappingChanges(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+                                           @RequestParam(required = false) Long since) {
+        return mappingChangeStream.subscribe(lastEventId != null ? lastEventId : since);
+    }
+
+    @Operation(summary = "Gets the committed mapping changes after a revision",
+            description = "For clients polling rather than keeping /mapping-changes open.  Without 'since' it's just the latest revision, to start from.  When the changes after 'since' aren't all known any more, reset is set instead")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = MappingChangesDto.class)))})
+    @GetMapping("/mapping-changes/since")
+    public ResponseEntity<MappingChangesDto> getMappingChanges(@RequestParam(required = false) Long since) {
+        return new ResponseEntity<>(mappingChangeStream.changesSince(since), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Writes the compiled permission snapshot to mapp.snapshot.path",
+            description = "The file a restarting node loads its snapshot from (caught up with the changes since) instead of compiling every program.  It's also written on shutdown")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = PermissionSnapshotExportDto.class))),
+            @ApiResponse(responseCode = "400", description = "mapp.snapshot.path isn't set"),
+            @ApiResponse(responseCode = "409", description = "The snapshot isn't compiled yet")})
+    @PostMapping("/permission-snapshot/export")
+    public ResponseEntity<PermissionSnapshotExportDto> exportPermissionSnapshot() {
+        return new ResponseEntity<>(roleMappingService.exportPermissionSnapshot(), HttpStatus.OK);
     }
 
     @Operation(summary = "Add a new program")
@@ -179,6 +330,30 @@ public class RoleMappingController {
                 roleName)), HttpStatus.OK);
     }
 
+    @Operation(summary = "Imports roles with their programs/forms/functions in bulk, in one transaction",
+            description = "Takes the same document /rolesDetails returns.  Only adds - what's already there is left as it is, so importing the same document again inserts nothing")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = MappingImportResultDto.class)))})
+    @PostMapping("/import-mappings")
+    public ResponseEntity<MappingImportResultDto> importMappings(@RequestBody RoleWithProgramsListDto document) {
+        return new ResponseEntity<>(roleMappingService.importMappings(document), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Checks the effective permissions read model against the mappings",
+            description = "Counts the rows that are missing, shouldn't be there or have the wrong security functions - nothing is changed")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = EffectivePermissionsReportDto.class)))})
+    @GetMapping("/effective-permissions/verify")
+    public ResponseEntity<EffectivePermissionsReportDto> verifyEffectivePermissions() {
+        return new ResponseEntity<>(roleMappingService.verifyEffectivePermissions(), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Rebuilds the effective permissions read model from the mappings",
+            description = "Same checks as /effective-permissions/verify, but the rows found wrong are put right")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = EffectivePermissionsReportDto.class)))})
+    @PostMapping("/effective-permissions/rebuild")
+    public ResponseEntity<EffectivePermissionsReportDto> rebuildEffectivePermissions() {
+        return new ResponseEntity<>(roleMappingService.rebuildEffectivePermissions(), HttpStatus.OK);
+    }
+
     @Operation(summary = "Hard deletes a program (and all its forms/security functions)")
     @ApiResponses(value = {@ApiResponse(responseCode = "204")})
     @DeleteMapping("/delete-program")
@@ -194,4 +369,36 @@ public class RoleMappingController {
         roleMappingService.deleteRole(roleName);
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
+
+    /**
+     * Answers 304 (with no body) when the client's If-None-Match already has the revision, otherwise builds the body
+     * and tags it with the revision.  The revision is read before the body is built, so a change in between can only
+     * make the ETag older than the body - never newer.  The same revision is sent in JSON, CBOR or Smile, so caches
+     * are told to keep them apart by Accept.
+     */
+    private <T> ResponseEntity<T> conditional(WebRequest request, long revision, Supplier<T> body) {
+        String etag = etag(revision);
+        if (request.checkNotModified(etag)) return null;
+
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(body.get());
+    }
+
+    private static String etag(long revision) {
+        return "\"" + revision + "\"";
+    }
+
+    /**
+     * Writes each record the producer hands its sink as its own line of JSON, as it's produced
+     */
+    private <T> ResponseEntity<StreamingResponseBody> ndjson(Consumer<Consumer<T>> producer) {
+        StreamingResponseBody body = (OutputStream out) -> producer.accept(record -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(record));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
 }
@@ -0,0 +1,17 @@
+package com.example.mapp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Builder
+@Data
+public class DecisionCacheStatsDto {
+
+    long hitCount;
+    long missCount;
+    double hitRate;
+    long evictionCount;
+    long evictionWeight;
+    long estimatedSize;
+    long weightedSize;
+}
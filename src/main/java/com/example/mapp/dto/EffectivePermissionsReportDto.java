@@ -0,0 +1,22 @@
+package com.example.mapp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Builder
+@Data
+public class EffectivePermissionsReportDto {
+
+    // rows the effective permissions should have, going by the mappings
+    long rows;
+
+    // rows that were missing, shouldn't have been there, or had the wrong functions
+    long missing;
+    long extra;
+    long stale;
+
+    // whether those were put right (a rebuild) or only counted (a verify)
+    boolean repaired;
+
+    long elapsedMillis;
+}
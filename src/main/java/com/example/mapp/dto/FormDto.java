@@ -1,12 +1,15 @@
 package com.example.mapp.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
 
 import java.util.List;
 import java.util.Map;
 
+@Jacksonized
 @Builder
 @Data
 public class FormDto {
@@ -16,5 +19,10 @@ public class FormDto {
     Long id;
 
     String name;
+
+    // one or the other - roleMappingOrdinals (indexes into the program's securityFunctions) when asked for functionOrdinals
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     Map<String, List<String>> roleMappings;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Map<String, List<Integer>> roleMappingOrdinals;
 }
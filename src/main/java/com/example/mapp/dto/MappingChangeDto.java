@@ -0,0 +1,21 @@
+package com.example.mapp.dto;
+
+import com.example.mapp.event.MappingChangeEvent;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A committed mapping change as sent on /mapping-changes - names are null when the change isn't scoped to them
+ */
+@Builder
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MappingChangeDto {
+
+    long revision;
+    MappingChangeEvent.Kind kind;
+    String program;
+    String form;
+    String role;
+}
@@ -0,0 +1,19 @@
+package com.example.mapp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The mapping changes after a revision, oldest first.  When reset is set they weren't all known any more (and
+ * aren't listed) - anything cached as of the old revision has to go.  Either way the caller is now at revision.
+ */
+@Builder
+@Data
+public class MappingChangesDto {
+
+    long revision;
+    boolean reset;
+    List<MappingChangeDto> changes;
+}
@@ -0,0 +1,23 @@
+package com.example.mapp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Builder
+@Data
+public class MappingImportResultDto {
+
+    int rolesCreated;
+    int programsCreated;
+    int formsCreated;
+    int securityFunctionsCreated;
+    int programGrantsCreated;
+    int formGrantsCreated;
+
+    // grants in the document that were already there (left as they are)
+    int grantsAlreadyPresent;
+
+    long rowsInserted;
+    long elapsedMillis;
+    double rowsPerSecond;
+}
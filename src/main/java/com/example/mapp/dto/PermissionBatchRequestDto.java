@@ -0,0 +1,16 @@
+package com.example.mapp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+
+import java.util.List;
+
+@Jacksonized
+@Builder
+@Data
+public class PermissionBatchRequestDto {
+
+    List<String> roleNames;
+    List<PermissionTargetDto> targets;
+}
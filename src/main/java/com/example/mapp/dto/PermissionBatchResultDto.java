@@ -0,0 +1,13 @@
+package com.example.mapp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Builder
+@Data
+public class PermissionBatchResultDto {
+
+    List<PermissionTargetResultDto> results;
+}
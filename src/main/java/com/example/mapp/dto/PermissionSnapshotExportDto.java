@@ -0,0 +1,16 @@
+package com.example.mapp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Builder
+@Data
+public class PermissionSnapshotExportDto {
+
+    String path;
+    long revision;
+    int programs;
+    int roles;
+    long bytes;
+    long elapsedMillis;
+}
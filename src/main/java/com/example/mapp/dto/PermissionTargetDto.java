@@ -0,0 +1,16 @@
+package com.example.mapp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+
+@Jacksonized
+@Builder
+@Data
+public class PermissionTargetDto {
+
+    String programName;
+
+    // optional - program level permissions if not given
+    String formName;
+}
@@ -0,0 +1,26 @@
+package com.example.mapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Builder
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PermissionTargetResultDto {
+
+    String programName;
+    String formName;
+    List<String> securityFunctions;
+
+    // set instead of securityFunctions when asked for functionOrdinals - indexes into the program's securityFunctions
+    List<Integer> securityFunctionOrdinals;
+
+    // sent with securityFunctionOrdinals - the program revision (GET /programs/{id} ETag) of the securityFunctions they index
+    Long programRevision;
+
+    // set instead of securityFunctions when this target couldn't be resolved (e.g. unknown program or form)
+    String error;
+}
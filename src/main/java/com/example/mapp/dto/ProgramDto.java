@@ -1,12 +1,15 @@
 package com.example.mapp.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
 
 import java.util.List;
 import java.util.Map;
 
+@Jacksonized
 @Builder
 @Data
 public class ProgramDto {
@@ -17,6 +20,12 @@ public class ProgramDto {
 
     String name;
     List<FormDto> forms;
+
+    // one or the other - roleMappingOrdinals (indexes into securityFunctions) when asked for functionOrdinals
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     Map<String, List<String>> roleMappings;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Map<String, List<Integer>> roleMappingOrdinals;
+
     List<String> securityFunctions;
 }
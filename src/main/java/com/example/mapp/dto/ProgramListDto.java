@@ -9,4 +9,7 @@ import java.util.List;
 @Data
 public class ProgramListDto {
     List<ProgramDto> programs;
+
+    // id to pass as 'after' for the next page, null when this is the last page
+    Long nextCursor;
 }
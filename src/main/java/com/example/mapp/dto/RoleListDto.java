@@ -11,4 +11,7 @@ import java.util.List;
 public class RoleListDto {
 
     List<Role> roles;
+
+    // id to pass as 'after' for the next page, null when this is the last page
+    Long nextCursor;
 }
@@ -3,9 +3,11 @@ package com.example.mapp.dto;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
 
 import java.util.List;
 
+@Jacksonized
 @Builder
 @Data
 public class RoleWithProgramsDto {
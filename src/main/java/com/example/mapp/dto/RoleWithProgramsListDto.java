@@ -2,12 +2,17 @@ package com.example.mapp.dto;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
 
 import java.util.List;
 
+@Jacksonized
 @Builder
 @Data
 public class RoleWithProgramsListDto {
 
     List<RoleWithProgramsDto> roles;
+
+    // id to pass as 'after' for the next page, null when this is the last page
+    Long nextCursor;
 }
@@ -1,5 +1,6 @@
 package com.example.mapp.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 
@@ -7,7 +8,14 @@ import java.util.List;
 
 @Builder
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class SecurityFunctionList {
 
     List<String> securityFunctions;
+
+    // set instead of securityFunctions when asked for functionOrdinals - indexes into the program's securityFunctions
+    List<Integer> securityFunctionOrdinals;
+
+    // sent with securityFunctionOrdinals - the program revision (GET /programs/{id} ETag) of the securityFunctions they index
+    Long programRevision;
 }
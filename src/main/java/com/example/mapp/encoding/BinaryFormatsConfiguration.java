@@ -0,0 +1,50 @@
+package com.example.mapp.encoding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * CBOR (application/cbor) and Smile (application/x-jackson-smile) as well as JSON, for clients asking for them with
+ * Accept - the same documents, just without the text.  Both are set up to write a repeated string once and refer
+ * back to it after that, which is most of what a role details or program listing is made of (role names as
+ * roleMappings keys, function names).  Replaces the converters Spring MVC would otherwise register for them, so
+ * they're also configured like the app's JSON mapper.
+ */
+@Configuration
+public class BinaryFormatsConfiguration {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder,
+                                                                            @Value("${mapp.encoding.cbor.string-refs:true}") boolean stringRefs) {
+        return new MappingJackson2CborHttpMessageConverter(cborMapper(builder, stringRefs));
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(smileMapper(builder));
+    }
+
+    /**
+     * With stringRefs, repeated strings are written as references (the CBOR stringref extension, tag 256) - not
+     * every CBOR decoder understands them
+     */
+    public static ObjectMapper cborMapper(Jackson2ObjectMapperBuilder builder, boolean stringRefs) {
+        return builder.factory(CBORFactory.builder().configure(CBORGenerator.Feature.STRINGREF, stringRefs).build()).build();
+    }
+
+    /**
+     * Shares repeated names (on by default) and short repeated string values - any Smile decoder handles both
+     */
+    public static ObjectMapper smileMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.factory(SmileFactory.builder().enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES).build()).build();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.mapp.encoding;
+
+import com.example.mapp.dto.FormDto;
+import com.example.mapp.dto.ProgramDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The functionOrdinals encoding - security functions sent as their index in the program's function table (its
+ * securityFunctions in the order they were added, as GET /programs/{id} lists them) rather than by name.  An index
+ * only changes when a function before it is removed from the program, which moves the program's revision (ETag)
+ * too - so a client keeping the table by program revision can always turn them back into names.  Permission checks
+ * answer with ordinals straight from the compiled program (see
+ * {@link com.example.mapp.engine.PermissionSnapshot#collateOrdinals}), which sends its revision along with them.
+ */
+public final class FunctionOrdinals {
+
+    private FunctionOrdinals() {
+    }
+
+    /**
+     * The program with its own and its forms' roleMappings as roleMappingOrdinals - its securityFunctions are the table
+     */
+    public static ProgramDto encode(ProgramDto program) {
+        Map<String, Integer> ordinals = ordinals(program.getSecurityFunctions());
+        return ProgramDto.builder()
+                .id(program.getId())
+                .name(program.getName())
+                .forms(program.getForms().stream().map(f -> encode(f, ordinals)).toList())
+                .roleMappingOrdinals(encode(program.getRoleMappings(), ordinals))
+                .securityFunctions(program.getSecurityFunctions())
+                .build();
+    }
+
+    private static FormDto encode(FormDto form, Map<String, Integer> ordinals) {
+        return FormDto.builder()
+                .id(form.getId())
+                .name(form.getName())
+                .roleMappingOrdinals(encode(form.getRoleMappings(), ordinals))
+                .build();
+    }
+
+    private static Map<String, List<Integer>> encode(Map<String, List<String>> roleMappings, Map<String, Integer> ordinals) {
+        Map<String, List<Integer>> encoded = new LinkedHashMap<>();
+        roleMappings.forEach((role, functions) -> encoded.put(role, encode(ordinals, functions)));
+        return encoded;
+    }
+
+    private static List<Integer> encode(Map<String, Integer> ordinals, Collection<String> functionNames) {
+        List<Integer> encoded = new ArrayList<>(functionNames.size());
+        for (String function : functionNames) {
+            Integer ordinal = ordinals.get(function);
+            if (ordinal != null) encoded.add(ordinal);
+        }
+        return encoded;
+    }
+
+    private static Map<String, Integer> ordinals(List<String> functionTable) {
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < functionTable.size(); i++) ordinals.put(functionTable.get(i), i);
+        return ordinals;
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.mapp.engine;
+
+import java.util.List;
+
+/**
+ * Roles' security functions on a program (or a form within it) as ordinals, with the program revision they index
+ * the function table of - both read from the same {@link CompiledProgram}, so they always agree
+ */
+public record CollatedOrdinals(long programRevision, List<Integer> ordinals) {
+}
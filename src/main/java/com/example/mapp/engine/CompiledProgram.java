@@ -0,0 +1,198 @@
+package com.example.mapp.engine;
+
+import com.example.mapp.exception.NotFoundException;
+import com.example.mapp.model.Form;
+import com.example.mapp.model.Program;
+import com.example.mapp.model.RoleFunctionFormMapping;
+import com.example.mapp.model.RoleFunctionMapping;
+import com.example.mapp.model.SecurityFunction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, compiled form of a single Program's grants.
+ * <p>
+ * The program's security functions get dense ordinals (in id order) and every role's grant - at program level or
+ * at form level - is a bitmap over those ordinals, so collating roles is just OR-ing bitmaps together.  The ordinals
+ * are only good for the program revision it was compiled at - removing a function moves the ones after it.
+ */
+public final class CompiledProgram {
+
+    private static final long[] NO_GRANT = new long[0];
+
+    private final String name;
+    private final long revision;
+    private final String[] functionNames;
+    private final Map<String, long[]> programGrants;
+    private final Map<String, Map<String, long[]>> formGrants;
+
+    CompiledProgram(String name,
+                    long revision,
+                    String[] functionNames,
+                    Map<String, long[]> programGrants,
+                    Map<String, Map<String, long[]>> formGrants) {
+        this.name = name;
+        this.revision = revision;
+        this.functionNames = functionNames;
+        this.programGrants = programGrants;
+        this.formGrants = formGrants;
+    }
+
+    /**
+     * Compiles a program - its forms, security functions and both levels of role mappings need to be loadable
+     */
+    public static CompiledProgram of(Program program) {
+        List<SecurityFunction> functions = program.getSecurityFunctions()
+                .values()
+                .stream()
+                .sorted(Comparator.comparing(SecurityFunction::getId))
+                .toList();
+
+        String[] functionNames = new String[functions.size()];
+        Map<Long, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < functionNames.length; i++) {
+            functionNames[i] = functions.get(i).getName();
+            ordinals.put(functions.get(i).getId(), i);
+        }
+
+        int words = words(functionNames.length);
+        Map<String, long[]> programGrants = new HashMap<>();
+        for (RoleFunctionMapping m : program.getRoleFunctionMappings()) {
+            set(programGrants.computeIfAbsent(m.getRole().getName(), r -> new long[words]),
+                    ordinals.get(m.getSecurityFunction().getId()));
+        }
+
+        Map<String, Map<String, long[]>> formGrants = new HashMap<>();
+        for (Form f : program.getForms().values()) {
+            Map<String, long[]> grants = new HashMap<>();
+            for (RoleFunctionFormMapping m : f.getRoleFunctionFormMappings()) {
+                set(grants.computeIfAbsent(m.getRole().getName(), r -> new long[words]),
+                        ordinals.get(m.getSecurityFunction().getId()));
+            }
+            formGrants.put(f.getName(), grants);
+        }
+
+        return new CompiledProgram(program.getName(), program.getRevision(), functionNames, programGrants, formGrants);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The program's revision as of compiling it - what its ordinals are good for
+     */
+    public long revision() {
+        return revision;
+    }
+
+    /**
+     * Number of longs a bitmap over this program's security functions takes
+     */
+    public int words() {
+        return words(functionNames.length);
+    }
+
+    public boolean hasForm(String formName) {
+        return formGrants.containsKey(formName);
+    }
+
+    /**
+     * ORs the functions the (uppercased) role gets on this program - or on the form if given - into the bitmap.
+     * A role's form level grant, when it has one, is used INSTEAD of its program level grant.
+     */
+    public void grant(String roleName, String formName, long[] into) {
+        long[] bits = null;
+        if (formName != null) {
+            Map<String, long[]> grants = formGrants.get(formName);
+            if (grants == null) throw new NotFoundException("Form not found");
+            bits = grants.get(roleName);
+        }
+        if (bits == null) bits = programGrants.getOrDefault(roleName, NO_GRANT);
+
+        for (int i = 0; i < bits.length; i++) {
+            into[i] |= bits[i];
+        }
+    }
+
+    /**
+     * Maps a bitmap back to the security function names it has set
+     */
+    public List<String> functionNames(long[] bits) {
+        List<String> names = new ArrayList<>();
+        for (int w = 0; w < bits.length; w++) {
+            for (long word = bits[w]; word != 0; word &= word - 1) {
+                names.add(functionNames[(w << 6) + Long.numberOfTrailingZeros(word)]);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * The ordinals a bitmap has set, in ascending order
+     */
+    public List<Integer> ordinals(long[] bits) {
+        List<Integer> ordinals = new ArrayList<>();
+        for (int w = 0; w < bits.length; w++) {
+            for (long word = bits[w]; word != 0; word &= word - 1) {
+                ordinals.add((w << 6) + Long.numberOfTrailingZeros(word));
+            }
+        }
+        return ordinals;
+    }
+
+    /**
+     * The program's security functions in ordinal order (the order they were added)
+     */
+    public List<String> functionTable() {
+        return List.of(functionNames);
+    }
+
+    /**
+     * Copy of this program with a role's grants taken out
+     */
+    CompiledProgram withoutRole(String roleName) {
+        Map<String, long[]> programGrants = new HashMap<>(this.programGrants);
+        programGrants.remove(roleName);
+
+        Map<String, Map<String, long[]>> formGrants = new HashMap<>();
+        this.formGrants.forEach((form, grants) -> {
+            Map<String, long[]> copy = new HashMap<>(grants);
+            copy.remove(roleName);
+            formGrants.put(form, copy);
+        });
+
+        return new CompiledProgram(name, revision, functionNames, programGrants, formGrants);
+    }
+
+    boolean hasRole(String roleName) {
+        return programGrants.containsKey(roleName)
+                || formGrants.values().stream().anyMatch(grants -> grants.containsKey(roleName));
+    }
+
+    // the compiled form as is, for writing it out - see PermissionSnapshotFile
+
+    String[] functionNames() {
+        return functionNames;
+    }
+
+    Map<String, long[]> programGrants() {
+        return programGrants;
+    }
+
+    Map<String, Map<String, long[]>> formGrants() {
+        return formGrants;
+    }
+
+    static int words(int functions) {
+        return (functions + 63) >>> 6;
+    }
+
+    private static void set(long[] bits, int ordinal) {
+        bits[ordinal >>> 6] |= 1L << ordinal;
+    }
+}
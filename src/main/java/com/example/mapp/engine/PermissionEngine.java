@@ -0,0 +1,217 @@
+package com.example.mapp.engine;
+
+import com.example.mapp.dto.PermissionSnapshotExportDto;
+import com.example.mapp.event.MappingChangeEvent;
+import com.example.mapp.event.MappingRevisionEvent;
+import com.example.mapp.exception.BadRequestException;
+import com.example.mapp.exception.ConflictException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds the current {@link PermissionSnapshot} and keeps it in step with committed mapping changes.
+ * <p>
+ * Readers just dereference the snapshot (no locking), writers recompile what changed off to the side and swap
+ * the new snapshot in.  Runs ahead of other change listeners so caches that load from the snapshot reload
+ * against the new one.
+ * <p>
+ * With mapp.snapshot.path set the snapshot is also written to that file (see {@link PermissionSnapshotFile}) on
+ * shutdown and on export, and on startup it's read back from there and caught up with the programs changed since
+ * its revision - instead of every program being compiled from the database.  The file is stamped with the latest
+ * revision every change up to which is in the snapshot: changes are applied after their transactions commit, so
+ * the revisions handed out to transactions not yet finished are tracked until they are.
+ */
+@Slf4j
+@Component
+public class PermissionEngine {
+
+    private final AtomicReference<PermissionSnapshot> snapshot = new AtomicReference<>();
+
+    // serializes writers - a lock rather than synchronized, which would pin a virtual thread to its carrier for the
+    // whole of a compile's JDBC work
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    @Autowired
+    PermissionSnapshotCompiler compiler;
+
+    @Value("${mapp.snapshot.path:}")
+    String snapshotPath;
+
+    // revisions of changes whose transactions haven't finished (so may not be applied yet), and the latest one that has
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+    private final AtomicLong settled = new AtomicLong();
+
+    /**
+     * The current snapshot, empty until the first compile has finished
+     */
+    public Optional<PermissionSnapshot> current() {
+        return Optional.ofNullable(snapshot.get());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        writeLock.lock();
+        try {
+            long start = System.nanoTime();
+            Optional<PermissionSnapshot> saved = this.readSnapshotFile();
+            if (saved.isEmpty()) {
+                this.rebuild();
+                return;
+            }
+
+            PermissionSnapshot current = compiler.catchUp(saved.get());
+            snapshot.set(current);
+            log.info("Loaded permission snapshot of {} programs at revision {} (caught up to {}) in {} ms",
+                    current.programCount(),
+                    saved.get().revision(),
+                    current.revision(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void rebuild() {
+        writeLock.lock();
+        try {
+            long start = System.nanoTime();
+            PermissionSnapshot compiled = compiler.compileAll();
+            snapshot.set(compiled);
+            log.info("Compiled permission snapshot of {} programs in {} ms",
+                    compiled.programCount(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the current snapshot to mapp.snapshot.path
+     */
+    public PermissionSnapshotExportDto export() {
+        Path path = this.snapshotFile().orElseThrow(() -> new BadRequestException("mapp.snapshot.path isn't set"));
+        // the revision first - a change it takes in has already been applied to the snapshot read after it
+        long revision = this.appliedRevision();
+        PermissionSnapshot current = this.current().orElseThrow(() -> new ConflictException("The permission snapshot isn't compiled yet"));
+        if (revision > current.revision()) current = current.withRevision(revision);
+
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            long bytes = PermissionSnapshotFile.write(current, path);
+            return PermissionSnapshotExportDto.builder()
+                    .path(path.toString())
+                    .revision(current.revision())
+                    .programs(current.programCount())
+                    .roles(current.roleCount())
+                    .bytes(bytes)
+                    .elapsedMillis((System.nanoTime() - start) / 1_000_000)
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // so the next start is a warm one
+    @PreDestroy
+    void saveOnShutdown() {
+        if (this.snapshotFile().isEmpty() || this.current().isEmpty()) return;
+
+        try {
+            log.info("Saved permission snapshot: {}", this.export());
+        } catch (RuntimeException e) {
+            log.warn("Couldn't save the permission snapshot", e);
+        }
+    }
+
+    /**
+     * Revisions are handed out in commit order, so every change before the oldest one still in flight is applied
+     */
+    private long appliedRevision() {
+        long applied = settled.get();
+        Long oldest = inFlight.isEmpty() ? null : inFlight.ceiling(Long.MIN_VALUE);
+        return oldest == null ? applied : oldest - 1;
+    }
+
+    // anything wrong with the file just means compiling from the database
+    private Optional<PermissionSnapshot> readSnapshotFile() {
+        Optional<Path> path = this.snapshotFile().filter(Files::isRegularFile);
+        if (path.isEmpty()) return Optional.empty();
+
+        try {
+            return Optional.of(PermissionSnapshotFile.read(path.get()));
+        } catch (IOException e) {
+            log.warn("Couldn't read the permission snapshot, compiling it instead", e);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<Path> snapshotFile() {
+        return snapshotPath == null || snapshotPath.isBlank() ? Optional.empty() : Optional.of(Path.of(snapshotPath));
+    }
+
+    /**
+     * A change has been given its revision, in the transaction making it - it's applied (by onMappingChange) once
+     * that commits, which is before the transaction's completion is seen here
+     */
+    @EventListener
+    public void onMappingRevision(MappingRevisionEvent event) {
+        long revision = event.revision();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            settled.accumulateAndGet(revision, Math::max);
+            return;
+        }
+
+        inFlight.add(revision);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                settled.accumulateAndGet(revision, Math::max);
+                inFlight.remove(revision);
+            }
+        });
+    }
+
+    // writers are serialized so an older recompile can never overwrite a newer one
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMappingChange(MappingChangeEvent event) {
+        writeLock.lock();
+        try {
+            PermissionSnapshot current = snapshot.get();
+            if (current == null) return;
+
+            snapshot.set(switch (event.kind()) {
+                case ROLE_CREATED -> current.withRole(event.roleName());
+                case ROLE_DELETED -> current.withoutRole(event.roleName());
+                case PROGRAM_DELETED -> current.withoutProgram(event.programName());
+                case MAPPINGS_IMPORTED -> compiler.compileAll();
+                default -> compiler.compileProgram(event.programName())
+                        .map(current::withProgram)
+                        .orElseGet(() -> current.withoutProgram(event.programName()));
+            });
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.mapp.engine;
+
+import com.example.mapp.exception.NotFoundException;
+import com.example.mapp.model.util.NormalizedName;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, point-in-time compiled model of every program's grants plus the set of known role names.
+ * Never modified - changes produce a new snapshot (copy-on-write) that the {@link PermissionEngine} publishes.
+ * <p>
+ * Stamped with the mapping revision it was compiled as of - it has every change up to it (and, once changes have been
+ * applied to it, some after it too).
+ */
+public final class PermissionSnapshot {
+
+    private final Map<String, CompiledProgram> programs;
+    private final Set<String> roles;
+    private final long revision;
+
+    PermissionSnapshot(Map<String, CompiledProgram> programs, Set<String> roles, long revision) {
+        this.programs = programs;
+        this.roles = roles;
+        this.revision = revision;
+    }
+
+    public CompiledProgram program(String programName) {
+        CompiledProgram p = programs.get(NormalizedName.normalize(programName));
+        if (p == null) throw new NotFoundException("Pgm Name not found");
+        return p;
+    }
+
+    /**
+     * Same semantics as collating the roles against the database - a role's form level grant (if it has one)
+     * overrides its program level grant, and the result is the union over all roles
+     */
+    public List<String> collate(Collection<String> roleNames, String programName, String formName) {
+        CompiledProgram p = program(programName);
+        return p.functionNames(grant(p, roleNames, formName));
+    }
+
+    /**
+     * {@link #collate} as ordinals into the program's function table, along with the program revision that table is
+     * as of
+     */
+    public CollatedOrdinals collateOrdinals(Collection<String> roleNames, String programName, String formName) {
+        CompiledProgram p = program(programName);
+        return new CollatedOrdinals(p.revision(), p.ordinals(grant(p, roleNames, formName)));
+    }
+
+    private long[] grant(CompiledProgram p, Collection<String> roleNames, String formName) {
+        String form = NormalizedName.normalize(formName);
+
+        long[] bits = new long[p.words()];
+        for (String roleName : roleNames) {
+            String role = NormalizedName.normalize(roleName);
+            if (!roles.contains(role)) throw new NotFoundException("Role not found");
+            p.grant(role, form, bits);
+        }
+        return bits;
+    }
+
+    public boolean hasRole(String roleName) {
+        return roles.contains(NormalizedName.normalize(roleName));
+    }
+
+    public int programCount() {
+        return programs.size();
+    }
+
+    public int roleCount() {
+        return roles.size();
+    }
+
+    public long revision() {
+        return revision;
+    }
+
+    Map<String, CompiledProgram> programs() {
+        return programs;
+    }
+
+    Set<String> roles() {
+        return roles;
+    }
+
+    PermissionSnapshot withRevision(long revision) {
+        return new PermissionSnapshot(programs, roles, revision);
+    }
+
+    PermissionSnapshot withProgram(CompiledProgram program) {
+        Map<String, CompiledProgram> copy = new HashMap<>(programs);
+        copy.put(program.getName(), program);
+        return new PermissionSnapshot(copy, roles, revision);
+    }
+
+    PermissionSnapshot withoutProgram(String programName) {
+        Map<String, CompiledProgram> copy = new HashMap<>(programs);
+        copy.remove(programName);
+        return new PermissionSnapshot(copy, roles, revision);
+    }
+
+    PermissionSnapshot withRole(String roleName) {
+        Set<String> copy = new HashSet<>(roles);
+        copy.add(roleName);
+        return new PermissionSnapshot(programs, copy, revision);
+    }
+
+    PermissionSnapshot withoutRole(String roleName) {
+        Set<String> rolesCopy = new HashSet<>(roles);
+        rolesCopy.remove(roleName);
+
+        Map<String, CompiledProgram> programsCopy = new HashMap<>(programs);
+        programsCopy.replaceAll((name, p) -> p.hasRole(roleName) ? p.withoutRole(roleName) : p);
+        return new PermissionSnapshot(programsCopy, rolesCopy, revision);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.mapp.engine;
+
+import com.example.mapp.model.Role;
+import com.example.mapp.repository.MappingRevisionRepository;
+import com.example.mapp.repository.ProgramRepository;
+import com.example.mapp.repository.RoleRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Reads programs (and roles) from the database and compiles them for the {@link PermissionEngine}.
+ * Runs in its own transaction since it's invoked after the writing transaction has committed - except
+ * {@link #compileCurrent}, which is for answering from what the calling transaction sees.
+ * <p>
+ * The mapping revision is read before anything else - every change up to it has committed, so is in what's read
+ * after it, while changes committing meanwhile have later revisions and are picked up by the next catch up.
+ */
+@Component
+public class PermissionSnapshotCompiler {
+
+    @Autowired
+    ProgramRepository programRepository;
+
+    @Autowired
+    RoleRepository roleRepository;
+
+    @Autowired
+    MappingRevisionRepository mappingRevisionRepository;
+
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public PermissionSnapshot compileAll() {
+        long revision = mappingRevisionRepository.current();
+
+        Map<String, CompiledProgram> programs = new HashMap<>();
+        programRepository.findAll().forEach(p -> programs.put(p.getName(), CompiledProgram.of(p)));
+
+        Set<String> roles = roleRepository.findAll().stream().map(Role::getName).collect(Collectors.toSet());
+        return new PermissionSnapshot(programs, roles, revision);
+    }
+
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public Optional<CompiledProgram> compileProgram(String programName) {
+        return programRepository.findByName(programName).map(CompiledProgram::of);
+    }
+
+    /**
+     * Compiles just the named programs and roles (those that exist) as the calling transaction sees them - including
+     * changes it hasn't committed yet - for answering from when the engine's snapshot can't be used
+     */
+    public PermissionSnapshot compileCurrent(Collection<String> programNames, Collection<String> roleNames) {
+        long revision = mappingRevisionRepository.current();
+
+        Map<String, CompiledProgram> programs = new HashMap<>();
+        programRepository.findAllByNameIn(programNames).forEach(p -> programs.put(p.getName(), CompiledProgram.of(p)));
+
+        Set<String> roles = roleRepository.findAllByNameIn(roleNames).stream().map(Role::getName).collect(Collectors.toSet());
+        return new PermissionSnapshot(programs, roles, revision);
+    }
+
+    /**
+     * Brings a snapshot from an earlier revision (e.g. read back from a file) up to date - only the programs changed
+     * since are compiled again, by their revisions, while the program and role names tell what's gone.  A snapshot
+     * from a revision the database hasn't reached can't be of this database, so everything is compiled instead.
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public PermissionSnapshot catchUp(PermissionSnapshot snapshot) {
+        long revision = mappingRevisionRepository.current();
+        if (revision == snapshot.revision()) return snapshot;
+        if (revision < snapshot.revision()) return this.compileAll();
+
+        Map<String, CompiledProgram> programs = new HashMap<>(snapshot.programs());
+        programs.keySet().retainAll(new HashSet<>(programRepository.findAllNames()));
+        programRepository.findAllByRevisionGreaterThan(snapshot.revision())
+                .forEach(p -> programs.put(p.getName(), CompiledProgram.of(p)));
+
+        // a deleted role's grants went with it
+        Set<String> roles = roleRepository.findAll().stream().map(Role::getName).collect(Collectors.toSet());
+        Set<String> deleted = new HashSet<>(snapshot.roles());
+        deleted.removeAll(roles);
+        for (String role : deleted) {
+            programs.replaceAll((name, p) -> p.hasRole(role) ? p.withoutRole(role) : p);
+        }
+        return new PermissionSnapshot(programs, roles, revision);
+    }
+}
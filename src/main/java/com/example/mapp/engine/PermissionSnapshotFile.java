@@ -0,0 +1,186 @@
+package com.example.mapp.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary form of a {@link PermissionSnapshot}, so a node can start serving checks without compiling every program
+ * from the database first.  Every name is written once to a string table and referred to by its index after that,
+ * and the grants are the compiled ordinal bitmaps as they are - reading it back is just decoding, nothing is
+ * resolved again.  Big-endian throughout:
+ * <pre>
+ * int magic ("MAPP"), int version, long revision
+ * int strings, then per string: int length, UTF-8 bytes
+ * int roles, then per role: int name
+ * int programs, then per program:
+ *     int name, long revision, int functions, then per function (in ordinal order): int name
+ *     int program grants, then per grant: int role, long[words] bitmap
+ *     int forms, then per form: int name, int grants, then per grant: int role, long[words] bitmap
+ * </pre>
+ * Written to a temporary file that's moved over the old one, so a reader never sees half a snapshot.  Read through a
+ * memory mapping - one sequential pass over the page cache, no copying through a stream.
+ */
+public final class PermissionSnapshotFile {
+
+    static final int MAGIC = 0x4D415050;
+    static final int VERSION = 2;
+
+    private PermissionSnapshotFile() {
+    }
+
+    /**
+     * Writes the snapshot to the path, returns the size written
+     */
+    public static long write(PermissionSnapshot snapshot, Path path) throws IOException {
+        // names first - the string table has to come before anything referring to it
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        snapshot.roles().forEach(role -> intern(role, strings, table));
+        snapshot.programs().values().forEach(p -> {
+            intern(p.getName(), strings, table);
+            for (String function : p.functionNames()) intern(function, strings, table);
+            p.programGrants().keySet().forEach(role -> intern(role, strings, table));
+            p.formGrants().forEach((form, grants) -> {
+                intern(form, strings, table);
+                grants.keySet().forEach(role -> intern(role, strings, table));
+            });
+        });
+
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(snapshot.revision());
+
+                out.writeInt(table.size());
+                for (String string : table) {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+
+                out.writeInt(snapshot.roles().size());
+                for (String role : snapshot.roles()) out.writeInt(strings.get(role));
+
+                out.writeInt(snapshot.programs().size());
+                for (CompiledProgram p : snapshot.programs().values()) {
+                    out.writeInt(strings.get(p.getName()));
+                    out.writeLong(p.revision());
+                    out.writeInt(p.functionNames().length);
+                    for (String function : p.functionNames()) out.writeInt(strings.get(function));
+
+                    writeGrants(p.programGrants(), strings, out);
+                    out.writeInt(p.formGrants().size());
+                    for (Map.Entry<String, Map<String, long[]>> form : p.formGrants().entrySet()) {
+                        out.writeInt(strings.get(form.getKey()));
+                        writeGrants(form.getValue(), strings, out);
+                    }
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return Files.size(path);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write}
+     *
+     * @throws IOException when it can't be read, or isn't a snapshot of this version
+     */
+    public static PermissionSnapshot read(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC) throw new IOException(path + " isn't a permission snapshot");
+            int version = buffer.getInt();
+            if (version != VERSION) throw new IOException(path + " is a version " + version + " permission snapshot");
+            long revision = buffer.getLong();
+
+            String[] strings = new String[buffer.getInt()];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < strings.length; i++) {
+                int length = buffer.getInt();
+                if (length > bytes.length) bytes = new byte[length];
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            int roleCount = buffer.getInt();
+            Set<String> roles = new HashSet<>(capacity(roleCount));
+            for (int i = 0; i < roleCount; i++) roles.add(strings[buffer.getInt()]);
+
+            int programCount = buffer.getInt();
+            Map<String, CompiledProgram> programs = new HashMap<>(capacity(programCount));
+            for (int i = 0; i < programCount; i++) {
+                String name = strings[buffer.getInt()];
+                long programRevision = buffer.getLong();
+                String[] functionNames = new String[buffer.getInt()];
+                for (int f = 0; f < functionNames.length; f++) functionNames[f] = strings[buffer.getInt()];
+
+                int words = CompiledProgram.words(functionNames.length);
+                Map<String, long[]> programGrants = readGrants(buffer, strings, words);
+                int formCount = buffer.getInt();
+                Map<String, Map<String, long[]>> formGrants = new HashMap<>(capacity(formCount));
+                for (int f = 0; f < formCount; f++) {
+                    String form = strings[buffer.getInt()];
+                    formGrants.put(form, readGrants(buffer, strings, words));
+                }
+                programs.put(name, new CompiledProgram(name, programRevision, functionNames, programGrants, formGrants));
+            }
+            return new PermissionSnapshot(programs, roles, revision);
+        } catch (RuntimeException e) {
+            // a truncated file runs off the end of the buffer, a corrupt one points outside the string table
+            throw new IOException(path + " is not a readable permission snapshot", e);
+        }
+    }
+
+    private static void intern(String string, Map<String, Integer> strings, List<String> table) {
+        if (strings.putIfAbsent(string, table.size()) == null) table.add(string);
+    }
+
+    private static void writeGrants(Map<String, long[]> grants, Map<String, Integer> strings, DataOutputStream out) throws IOException {
+        out.writeInt(grants.size());
+        for (Map.Entry<String, long[]> grant : grants.entrySet()) {
+            out.writeInt(strings.get(grant.getKey()));
+            for (long word : grant.getValue()) out.writeLong(word);
+        }
+    }
+
+    private static Map<String, long[]> readGrants(ByteBuffer buffer, String[] strings, int words) {
+        int count = buffer.getInt();
+        Map<String, long[]> grants = new HashMap<>(capacity(count));
+        for (int i = 0; i < count; i++) {
+            String role = strings[buffer.getInt()];
+            long[] bits = new long[words];
+            buffer.asLongBuffer().get(bits);
+            buffer.position(buffer.position() + words * Long.BYTES);
+            grants.put(role, bits);
+        }
+        return grants;
+    }
+
+    private static int capacity(int entries) {
+        return (int) (entries / 0.75f) + 1;
+    }
+}
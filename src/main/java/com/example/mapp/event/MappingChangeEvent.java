@@ -0,0 +1,60 @@
+package com.example.mapp.event;
+
+import com.example.mapp.model.util.NormalizedName;
+
+/**
+ * Published by the service whenever a program, form, role or one of their mappings changes.
+ * Names are uppercased like their persisted counterparts, and are null when the change is not scoped to them
+ * (e.g. a role deletion has no program or form)
+ */
+public record MappingChangeEvent(Kind kind, String programName, String formName, String roleName) {
+
+    public enum Kind {
+        PROGRAM_CREATED(false),
+        PROGRAM_DELETED(true),
+        FORM_ADDED(false),
+        FORM_REMOVED(true),
+        SECURITY_FUNCTIONS_ADDED(false),
+        SECURITY_FUNCTION_REMOVED(true),
+        ROLE_CREATED(false),
+        ROLE_DELETED(true),
+        ROLE_MAPPED_TO_PROGRAM(true),
+        ROLE_REMOVED_FROM_PROGRAM(true),
+        ROLE_MAPPED_TO_FORM(true),
+        ROLE_REMOVED_FROM_FORM(true),
+        // a bulk import - not scoped to any program/form/role, so affects everything
+        MAPPINGS_IMPORTED(true);
+
+        private final boolean changesGrants;
+
+        Kind(boolean changesGrants) {
+            this.changesGrants = changesGrants;
+        }
+
+        /**
+         * Whether this kind of change can alter the security functions a role resolves to
+         * (creations can't - nothing could have resolved against a program/form/role that didn't exist yet)
+         */
+        public boolean changesGrants() {
+            return changesGrants;
+        }
+    }
+
+    public static MappingChangeEvent of(Kind kind, String programName, String formName, String roleName) {
+        return new MappingChangeEvent(kind,
+                NormalizedName.normalize(programName),
+                NormalizedName.normalize(formName),
+                NormalizedName.normalize(roleName));
+    }
+
+    /**
+     * True if a grant resolved for the given program/form/role could be affected by this change,
+     * i.e. every name this change is scoped to matches
+     */
+    public boolean affects(String programName, String formName, String roleName) {
+        return kind.changesGrants()
+                && (this.programName == null || this.programName.equals(programName))
+                && (this.formName == null || this.formName.equals(formName))
+                && (this.roleName == null || this.roleName.equals(roleName));
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.mapp.event;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Publishes {@link MappingChangeEvent}s and keeps track of whether the current transaction has
+ * uncommitted mapping changes.  Listeners maintaining in-memory read models should use
+ * {@code @TransactionalEventListener(fallbackExecution = true)} so they only see committed changes.
+ */
+@Component
+public class MappingChangePublisher {
+
+    private static final Object PENDING_CHANGES_KEY = MappingChangePublisher.class.getName() + ".PENDING_CHANGES";
+
+    @Autowired
+    ApplicationEventPublisher applicationEventPublisher;
+
+    public void publish(MappingChangeEvent.Kind kind, String programName, String formName, String roleName) {
+        markPendingChanges();
+        applicationEventPublisher.publishEvent(MappingChangeEvent.of(kind, programName, formName, roleName));
+    }
+
+    /**
+     * True when the current transaction has changed mappings that aren't committed (and so not yet
+     * reflected in any in-memory read model) - reads in that transaction need to go to the database
+     */
+    public boolean hasPendingChanges() {
+        return TransactionSynchronizationManager.hasResource(PENDING_CHANGES_KEY);
+    }
+
+    private void markPendingChanges() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive() || hasPendingChanges()) return;
+
+        TransactionSynchronizationManager.bindResource(PENDING_CHANGES_KEY, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_CHANGES_KEY);
+            }
+        });
+    }
+}
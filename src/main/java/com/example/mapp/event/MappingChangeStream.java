@@ -0,0 +1,261 @@
+package com.example.mapp.event;
+
+import com.example.mapp.dto.MappingChangeDto;
+import com.example.mapp.dto.MappingChangesDto;
+import com.example.mapp.repository.MappingRevisionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends committed mapping changes to the clients subscribed to /mapping-changes as server-sent events, each with its
+ * revision as the event id.  The last replay-size changes are kept, so a client reconnecting with Last-Event-ID gets
+ * the ones it missed - or a reset event when they're no longer all there (it was away too long, or the server has
+ * restarted since), telling it to drop whatever it has cached.  Clients polling instead get the same from
+ * {@link #changesSince}.
+ * <p>
+ * Everything (the replay buffer, the subscribers, the sends) is handled on one thread - committing transactions only
+ * hand their changes over, so a slow client can't hold up a writer, and a client can't miss (or get twice) a change
+ * committed while it was subscribing.
+ * <p>
+ * Transactions hand their changes over as they finish committing, which isn't always in revision order - one can
+ * commit (and be recompiled for) while another given an earlier revision is still finishing.  Revisions have no gaps,
+ * so a change is held until all the ones before it have come, and only ever sent in order.  One that still hasn't
+ * come after gap-timeout is given up on - everyone is sent a reset instead of the changes either side of it.
+ */
+@Slf4j
+@Component
+public class MappingChangeStream {
+
+    public static final String CHANGE_EVENT = "mapping-change";
+    public static final String RESET_EVENT = "reset";
+
+    @Autowired
+    MappingRevisionRepository mappingRevisionRepository;
+
+    @Value("${mapp.change-stream.replay-size:1000}")
+    int replaySize;
+
+    @Value("${mapp.change-stream.timeout:PT30M}")
+    Duration timeout;
+
+    @Value("${mapp.change-stream.heartbeat:PT15S}")
+    Duration heartbeat;
+
+    @Value("${mapp.change-stream.gap-timeout:PT10S}")
+    Duration gapTimeout;
+
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "mapping-change-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // only changed on the dispatcher (polls read it too) - ordered by revision, so a replay is too
+    private final NavigableMap<Long, MappingChangeDto> replay = new ConcurrentSkipListMap<>();
+    private final List<SseEmitter> subscribers = new ArrayList<>();
+
+    // only touched on the dispatcher - changes handed over ahead of one that hasn't been yet, and the check that gives
+    // up on it
+    private final NavigableMap<Long, MappingChangeDto> held = new TreeMap<>();
+    private ScheduledFuture<?> gapCheck;
+
+    // every change up to this revision has been sent (or given up on), none after it
+    private volatile long released;
+
+    // changes up to this revision can't be replayed - dropped from the buffer, or committed before startup.  Raised
+    // before a change is dropped, so a poll that finds the change gone also finds this past it
+    private volatile long replayableAfter;
+
+    @PostConstruct
+    void start() {
+        replayableAfter = mappingRevisionRepository.current();
+        released = replayableAfter;
+        long period = heartbeat.toMillis();
+        dispatcher.scheduleAtFixedRate(this::sendHeartbeat, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        dispatcher.execute(() -> subscribers.forEach(SseEmitter::complete));
+        dispatcher.shutdown();
+    }
+
+    /**
+     * A new subscriber - sent the changes after lastEventId first when it's resuming
+     */
+    public SseEmitter subscribe(Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        emitter.onCompletion(() -> dispatch(() -> subscribers.remove(emitter)));
+        emitter.onTimeout(emitter::complete);
+
+        dispatch(() -> {
+            if (lastEventId != null && !resume(emitter, lastEventId)) return;
+            subscribers.add(emitter);
+        });
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMappingRevision(MappingRevisionEvent event) {
+        MappingChangeEvent change = event.change();
+        MappingChangeDto dto = MappingChangeDto.builder()
+                .revision(event.revision())
+                .kind(change.kind())
+                .program(change.programName())
+                .form(change.formName())
+                .role(change.roleName())
+                .build();
+
+        dispatch(() -> {
+            // committed before startup, or given up on already
+            if (dto.getRevision() <= released) return;
+
+            held.put(dto.getRevision(), dto);
+            release();
+            if (held.size() > replaySize) {
+                skipGap();
+            } else {
+                checkGap();
+            }
+        });
+    }
+
+    /**
+     * Sends the held changes that follow on from the last one sent, in order
+     */
+    private void release() {
+        for (var next = held.firstEntry(); next != null && next.getKey() == released + 1; next = held.firstEntry()) {
+            MappingChangeDto dto = held.pollFirstEntry().getValue();
+            replay.put(dto.getRevision(), dto);
+            released = dto.getRevision();
+            while (replay.size() > replaySize) {
+                long oldest = replay.firstKey();
+                replayableAfter = Math.max(replayableAfter, oldest);
+                replay.remove(oldest);
+            }
+            subscribers.removeIf(emitter -> !send(emitter, changeEvent(dto)));
+        }
+    }
+
+    /**
+     * Gives up on the revision being waited for if it still hasn't come after gap-timeout
+     */
+    private void checkGap() {
+        if (held.isEmpty() || gapCheck != null) return;
+
+        long waitingFor = released + 1;
+        gapCheck = dispatcher.schedule(() -> {
+            gapCheck = null;
+            if (released < waitingFor) skipGap();
+            checkGap();
+        }, gapTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Moves past the missing changes to the latest one held.  Clients can't be told what they were, so everyone is
+     * sent a reset to it and nothing before it can be replayed any more
+     */
+    private void skipGap() {
+        long latest = held.lastKey();
+        log.warn("Mapping changes {} to {} weren't handed over in time, resetting subscribers to {}",
+                released + 1, held.firstKey() - 1, latest);
+
+        held.clear();
+        replayableAfter = latest;
+        released = latest;
+        replay.clear();
+        subscribers.removeIf(emitter -> !send(emitter, resetEvent(latest)));
+    }
+
+    /**
+     * The changes after the given revision, and the revision they bring the caller up to - or a reset when they're
+     * no longer all known.  Without a revision it's just the latest one, to start from.
+     */
+    public MappingChangesDto changesSince(Long since) {
+        List<MappingChangeDto> changes = since == null ? List.of() : List.copyOf(replay.tailMap(since, false).values());
+        long latest = latestRevision();
+
+        if (since == null || since < replayableAfter || since > latest) {
+            return MappingChangesDto.builder()
+                    .revision(latest)
+                    .reset(since != null)
+                    .changes(List.of())
+                    .build();
+        }
+        return MappingChangesDto.builder()
+                .revision(changes.isEmpty() ? since : changes.get(changes.size() - 1).getRevision())
+                .changes(changes)
+                .build();
+    }
+
+    /**
+     * Sends what the client missed, or a reset when that's not all known - false if it's gone meanwhile
+     */
+    private boolean resume(SseEmitter emitter, long lastEventId) {
+        if (lastEventId < replayableAfter || lastEventId > latestRevision()) {
+            return send(emitter, resetEvent(latestRevision()));
+        }
+        for (MappingChangeDto dto : replay.tailMap(lastEventId, false).values()) {
+            if (!send(emitter, changeEvent(dto))) return false;
+        }
+        return true;
+    }
+
+    // once stopped there's no one left to tell
+    private void dispatch(Runnable task) {
+        if (!dispatcher.isShutdown()) dispatcher.execute(task);
+    }
+
+    private long latestRevision() {
+        return released;
+    }
+
+    // keeps idle connections from being closed by proxies, and finds the clients that have gone
+    private void sendHeartbeat() {
+        subscribers.removeIf(emitter -> !send(emitter, SseEmitter.event().comment("")));
+    }
+
+    private static SseEmitter.SseEventBuilder changeEvent(MappingChangeDto dto) {
+        return SseEmitter.event()
+                .name(CHANGE_EVENT)
+                .id(String.valueOf(dto.getRevision()))
+                .data(dto, MediaType.APPLICATION_JSON);
+    }
+
+    private static SseEmitter.SseEventBuilder resetEvent(long revision) {
+        return SseEmitter.event()
+                .name(RESET_EVENT)
+                .id(String.valueOf(revision))
+                .data(revision);
+    }
+
+    private static boolean send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping mapping change subscriber: {}", e.toString());
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+}
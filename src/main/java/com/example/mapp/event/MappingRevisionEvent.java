@@ -0,0 +1,8 @@
+package com.example.mapp.event;
+
+/**
+ * Published for each {@link MappingChangeEvent} once the change has been given its revision, in the transaction
+ * making it - listeners wanting to tell others about committed changes use {@code @TransactionalEventListener}
+ */
+public record MappingRevisionEvent(long revision, MappingChangeEvent change) {
+}
@@ -0,0 +1,65 @@
+package com.example.mapp.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Read model row - the security functions a role effectively has on a program, or on one of its forms with the
+ * form level override already applied.  Derived from the two mapping tables, never edited directly.
+ */
+@Entity
+@Table(name = "effective_permissions")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EffectivePermission {
+
+    /**
+     * The form id of a program level row
+     */
+    public static final long PROGRAM_LEVEL = 0L;
+
+    @Embeddable
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EffectivePermissionId {
+
+        @Column(name = "program_id")
+        Long programId;
+
+        @Column(name = "form_id")
+        Long formId;
+
+        @Column(name = "role_id")
+        Long roleId;
+
+    }
+
+    // always set - rows are only built from a known key
+    @Id
+    EffectivePermissionId id;
+
+    /**
+     * Ids of the security functions, ascending and comma separated
+     */
+    @NotNull
+    @Column(name = "function_ids", length = 100000)
+    String functionIds;
+
+    public static String encode(Collection<Long> functionIds) {
+        return functionIds.stream().sorted().distinct().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    public static List<Long> decode(String functionIds) {
+        return Arrays.stream(functionIds.split(",")).map(Long::valueOf).toList();
+    }
+}
@@ -1,9 +1,12 @@
 package com.example.mapp.model;
 
+import com.example.mapp.model.util.NormalizedName;
 import com.example.mapp.model.util.UppercasedEntity;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -14,6 +17,7 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "forms")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "forms")
 @Data
 @Builder
 @NoArgsConstructor
@@ -21,8 +25,10 @@ import java.util.Set;
 @ToString
 public class Form implements UppercasedEntity {
 
+    // created in bulk by imports - a block of ids per sequence call (must match the sequence's increment)
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "forms_seq")
+    @SequenceGenerator(name = "forms_seq", sequenceName = "forms_seq", allocationSize = 500)
     Long id;
 
     @NotNull String name;
@@ -38,6 +44,11 @@ public class Form implements UppercasedEntity {
     @ToString.Exclude
     Set<RoleFunctionFormMapping> roleFunctionFormMappings = new HashSet<>();
 
+    // the name is normalized as it's set, so equals and hashCode can use it as it is
+    public void setName(String name) {
+        this.name = NormalizedName.normalize(name);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -45,14 +56,14 @@ public class Form implements UppercasedEntity {
 
         Form form = (Form) o;
 
-        return name.toUpperCase().equals(form.name.toUpperCase());
+        return name.equals(form.name);
     }
 
     @PreUpdate
     @PrePersist
     @Override
     public void uppercaseName() {
-        this.name = name.toUpperCase();
+        this.name = NormalizedName.normalize(name);
     }
 
 
@@ -60,4 +71,12 @@ public class Form implements UppercasedEntity {
     public int hashCode() {
         return name.hashCode();
     }
+
+    public static class FormBuilder {
+
+        public FormBuilder name(String name) {
+            this.name = NormalizedName.normalize(name);
+            return this;
+        }
+    }
 }
@@ -0,0 +1,25 @@
+package com.example.mapp.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+/**
+ * The global revision of the mappings (a single row) - bumped by every change to a program, form, role or grant
+ */
+@Entity
+@Table(name = "mapping_revision")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MappingRevision {
+
+    public static final int ID = 1;
+
+    @Id
+    Integer id;
+
+    @NotNull
+    Long revision;
+}
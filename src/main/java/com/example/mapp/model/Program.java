@@ -1,11 +1,18 @@
 package com.example.mapp.model;
 
+import com.example.mapp.model.util.NormalizedName;
 import com.example.mapp.model.util.UppercasedEntity;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -15,6 +22,8 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "programs")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "programs")
+@NaturalIdCache(region = "programs-natural-ids")
 @Data
 @Builder
 @NoArgsConstructor
@@ -26,15 +35,23 @@ public class Program implements UppercasedEntity {
     @GeneratedValue
     Long id;
 
+    @NaturalId
     @NotNull String name;
 
     /**
-     * Forms underneath this program
+     * The global mapping revision of the last change to this program (its forms, functions or grants)
+     */
+    @Builder.Default
+    @NotNull Long revision = 0L;
+
+    /**
+     * Forms underneath this program, by name
      */
     @Builder.Default
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "owner", cascade = CascadeType.ALL, orphanRemoval = true)
+    @MapKey(name = "name")
     @ToString.Exclude
-    Set<Form> forms = new HashSet<>();
+    Map<String, Form> forms = new HashMap<>();
 
     /**
      * Roles and their associated SecurityFunction with this program
@@ -45,18 +62,24 @@ public class Program implements UppercasedEntity {
     Set<RoleFunctionMapping> roleFunctionMappings = new HashSet<>();
 
     /**
-     * This program's defined security functions
+     * This program's defined security functions, by name
      */
     @Builder.Default
     @OneToMany(mappedBy = "program", fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @MapKey(name = "name")
     @ToString.Exclude
-    Set<SecurityFunction> securityFunctions = new HashSet<>();
+    Map<String, SecurityFunction> securityFunctions = new HashMap<>();
+
+    // the name is normalized as it's set, so equals and hashCode can use it as it is
+    public void setName(String name) {
+        this.name = NormalizedName.normalize(name);
+    }
 
     @PreUpdate
     @PrePersist
     @Override
     public void uppercaseName() {
-        this.name = name.toUpperCase();
+        this.name = NormalizedName.normalize(name);
     }
 
     @Override
@@ -65,7 +88,7 @@ public class Program implements UppercasedEntity {
         if (o == null || getClass() != o.getClass()) return false;
 
         Program program = (Program) o;
-        return name.toUpperCase().equals(program.name.toUpperCase());
+        return name.equals(program.name);
     }
 
     @Override
@@ -74,6 +97,30 @@ public class Program implements UppercasedEntity {
     }
 
     public Optional<Form> getFormNamed(String formName) {
-        return this.getForms().stream().filter(f -> f.getName().equals(formName.toUpperCase())).findFirst();
+        return this.getFormNamed(NormalizedName.of(formName));
+    }
+
+    public Optional<Form> getFormNamed(NormalizedName formName) {
+        return Optional.ofNullable(this.getForms().get(formName.value()));
+    }
+
+    public Optional<SecurityFunction> getSecurityFunctionNamed(NormalizedName functionName) {
+        return Optional.ofNullable(this.getSecurityFunctions().get(functionName.value()));
+    }
+
+    public void addForm(Form form) {
+        this.getForms().put(form.getName(), form);
+    }
+
+    public void addSecurityFunction(SecurityFunction securityFunction) {
+        this.getSecurityFunctions().put(securityFunction.getName(), securityFunction);
+    }
+
+    public static class ProgramBuilder {
+
+        public ProgramBuilder name(String name) {
+            this.name = NormalizedName.normalize(name);
+            return this;
+        }
     }
 }
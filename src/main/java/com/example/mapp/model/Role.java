@@ -1,15 +1,22 @@
 package com.example.mapp.model;
 
+import com.example.mapp.model.util.NormalizedName;
 import com.example.mapp.model.util.UppercasedEntity;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 /**
  * Top level role defined that would need its analog in Keycloak defined
  */
 @Entity
 @Table(name = "roles")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "roles")
+@NaturalIdCache(region = "roles-natural-ids")
 @Data
 @Builder
 @NoArgsConstructor
@@ -21,13 +28,19 @@ public class Role implements UppercasedEntity {
     @GeneratedValue
     Long id;
 
+    @NaturalId
     @NotNull String name;
 
+    // the name is normalized as it's set, so equals and hashCode can use it as it is
+    public void setName(String name) {
+        this.name = NormalizedName.normalize(name);
+    }
+
     @PrePersist
     @PreUpdate
     @Override
     public void uppercaseName() {
-        this.name = this.name.toUpperCase();
+        this.name = NormalizedName.normalize(this.name);
     }
 
     @Override
@@ -37,11 +50,19 @@ public class Role implements UppercasedEntity {
 
         Role role = (Role) o;
 
-        return name.toUpperCase().equals(role.name.toUpperCase());
+        return name.equals(role.name);
     }
 
     @Override
     public int hashCode() {
         return name.hashCode();
     }
+
+    public static class RoleBuilder {
+
+        public RoleBuilder name(String name) {
+            this.name = NormalizedName.normalize(name);
+            return this;
+        }
+    }
 }
@@ -1,15 +1,22 @@
 package com.example.mapp.model;
 
+import com.example.mapp.model.util.NormalizedName;
 import com.example.mapp.model.util.UppercasedEntity;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 /**
  * Security function is basically a "permission" within a Program
  */
 @Entity
 @Table(name = "security_functions")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "security-functions")
+@NaturalIdCache(region = "security-functions-natural-ids")
 @Data
 @Builder
 @NoArgsConstructor
@@ -17,13 +24,17 @@ import lombok.*;
 @ToString
 public class SecurityFunction implements UppercasedEntity {
 
+    // created in bulk by imports - a block of ids per sequence call (must match the sequence's increment)
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "security_functions_seq")
+    @SequenceGenerator(name = "security_functions_seq", sequenceName = "security_functions_seq", allocationSize = 500)
     Long id;
 
+    @NaturalId
     @NotNull
     String name;
 
+    @NaturalId
     @NotNull
     @Column(name = "program_id")
     @ToString.Exclude
@@ -33,11 +44,16 @@ public class SecurityFunction implements UppercasedEntity {
     @JoinColumn(name = "program_id", insertable = false, updatable = false)
     Program program;
 
+    // the name is normalized as it's set, so equals and hashCode can use it as it is
+    public void setName(String name) {
+        this.name = NormalizedName.normalize(name);
+    }
+
     @PreUpdate
     @PrePersist
     @Override
     public void uppercaseName() {
-        this.name = this.name.toUpperCase();
+        this.name = NormalizedName.normalize(this.name);
     }
 
     @Override
@@ -47,7 +63,7 @@ public class SecurityFunction implements UppercasedEntity {
 
         SecurityFunction that = (SecurityFunction) o;
 
-        if (!name.toUpperCase().equals(that.name.toUpperCase())) return false;
+        if (!name.equals(that.name)) return false;
         return programId.equals(that.programId);
     }
 
@@ -57,4 +73,12 @@ public class SecurityFunction implements UppercasedEntity {
         result = 31 * result + programId.hashCode();
         return result;
     }
+
+    public static class SecurityFunctionBuilder {
+
+        public SecurityFunctionBuilder name(String name) {
+            this.name = NormalizedName.normalize(name);
+            return this;
+        }
+    }
 }
@@ -0,0 +1,32 @@
+package com.example.mapp.model.util;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A program, form, role or security function name the way it's stored, looked up and compared - uppercased, in the
+ * root locale so it doesn't depend on the one the JVM happens to run in.  Normalized once, when it's made, so
+ * comparing and hashing it after that is just the string's own.
+ */
+public record NormalizedName(String value) {
+
+    public NormalizedName {
+        value = normalize(Objects.requireNonNull(value, "name"));
+    }
+
+    public static NormalizedName of(String name) {
+        return new NormalizedName(name);
+    }
+
+    /**
+     * The name normalized (null stays null) - a name that already is comes back as it is, without a copy being made
+     */
+    public static String normalize(String name) {
+        return name == null ? null : name.toUpperCase(Locale.ROOT);
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.mapp.querybudget;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the most SQL queries a controller endpoint (for the whole request) or a service method (for the
+ * call) may issue.  Budgets should be constants - an N+1 shows up as a count that grows with the data.
+ * Only queries count (see {@link StatementCounter}).
+ * <p>
+ * What happens when a budget is exceeded depends on {@code mapp.query-budget.mode} (see {@link QueryBudgetEnforcer}).
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+
+    int value();
+}
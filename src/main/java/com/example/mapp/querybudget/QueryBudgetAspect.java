@@ -0,0 +1,33 @@
+package com.example.mapp.querybudget;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Checks {@link QueryBudget}s declared on (non controller) bean methods, e.g. the service - counting only
+ * that call's queries.  Calls that throw aren't checked.
+ */
+@Aspect
+@Component
+public class QueryBudgetAspect {
+
+    @Autowired
+    QueryBudgetEnforcer queryBudgetEnforcer;
+
+    @Around("@annotation(budget) && !@within(org.springframework.web.bind.annotation.RestController)")
+    public Object checkBudget(ProceedingJoinPoint joinPoint, QueryBudget budget) throws Throwable {
+        Object result;
+        int queries;
+        try (StatementCounter.Scope scope = StatementCounter.start()) {
+            result = joinPoint.proceed();
+            queries = scope.queries();
+        }
+        queryBudgetEnforcer.check(joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName(),
+                queries,
+                budget);
+        return result;
+    }
+}
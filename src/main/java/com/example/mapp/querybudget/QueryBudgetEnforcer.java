@@ -0,0 +1,43 @@
+package com.example.mapp.querybudget;
+
+import com.example.mapp.exception.QueryBudgetExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Acts on an exceeded {@link QueryBudget} according to {@code mapp.query-budget.mode}:
+ * <ul>
+ *     <li>{@code warn} (default) - logs a warning and increments {@code mapp.query.budget.exceeded}</li>
+ *     <li>{@code strict} - throws {@link QueryBudgetExceededException}, meant for tests</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class QueryBudgetEnforcer {
+
+    public enum Mode { WARN, STRICT }
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${mapp.query-budget.mode:warn}")
+    Mode mode;
+
+    public void check(String target, int queries, QueryBudget budget) {
+        if (queries <= budget.value()) return;
+
+        String message = String.format("%s issued %d SQL queries, over its budget of %d", target, queries, budget.value());
+        if (mode == Mode.STRICT) throw new QueryBudgetExceededException(message);
+
+        log.warn(message);
+        meterRegistry.counter("mapp.query.budget.exceeded", "target", target).increment();
+    }
+
+    public void record(String uri, StatementCounter.Scope scope) {
+        meterRegistry.summary("mapp.sql.queries", "uri", uri).record(scope.queries());
+        meterRegistry.summary("mapp.sql.statements", "uri", uri).record(scope.statements());
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.mapp.querybudget;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Opens a {@link StatementCounter} scope for each request and records the request's query and statement
+ * counts ({@code mapp.sql.queries} and {@code mapp.sql.statements}, by uri) once it completes.  Budgets are checked before the body is written,
+ * by {@link QueryBudgetResponseAdvice}.  Async (streamed) responses run elsewhere and aren't counted.
+ */
+@Component
+public class QueryBudgetInterceptor implements AsyncHandlerInterceptor {
+
+    static final String SCOPE_ATTRIBUTE = QueryBudgetInterceptor.class.getName() + ".SCOPE";
+
+    @Autowired
+    QueryBudgetEnforcer queryBudgetEnforcer;
+
+    static StatementCounter.Scope scope(HttpServletRequest request) {
+        return (StatementCounter.Scope) request.getAttribute(SCOPE_ATTRIBUTE);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (scope(request) == null) request.setAttribute(SCOPE_ATTRIBUTE, StatementCounter.start());
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        StatementCounter.Scope scope = scope(request);
+        if (scope != null) scope.close();
+        request.removeAttribute(SCOPE_ATTRIBUTE);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        StatementCounter.Scope scope = scope(request);
+        if (scope == null) return;
+
+        scope.close();
+        request.removeAttribute(SCOPE_ATTRIBUTE);
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        queryBudgetEnforcer.record(pattern == null ? "UNKNOWN" : pattern.toString(), scope);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.mapp.querybudget;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Reports the queries (and all statements) issued so far in the request as {@code X-Query-Count} (and
+ * {@code X-Statement-Count}) headers and checks the endpoint's {@link QueryBudget} - before the body is
+ * written, so strict mode can still fail the request
+ */
+@RestControllerAdvice
+public class QueryBudgetResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String STATEMENT_COUNT_HEADER = "X-Statement-Count";
+
+    @Autowired
+    QueryBudgetEnforcer queryBudgetEnforcer;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body,
+                                  MethodParameter returnType,
+                                  MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request,
+                                  ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest servletRequest)) return body;
+
+        StatementCounter.Scope scope = QueryBudgetInterceptor.scope(servletRequest.getServletRequest());
+        if (scope == null) return body;
+
+        response.getHeaders().set(QUERY_COUNT_HEADER, String.valueOf(scope.queries()));
+        response.getHeaders().set(STATEMENT_COUNT_HEADER, String.valueOf(scope.statements()));
+        QueryBudget budget = returnType.getMethodAnnotation(QueryBudget.class);
+        if (budget != null) {
+            queryBudgetEnforcer.check(returnType.getContainingClass().getSimpleName() + "." + returnType.getMethod().getName(),
+                    scope.queries(),
+                    budget);
+        }
+        return body;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.mapp.querybudget;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Counts the JDBC statements Hibernate prepares on the current thread, for each open {@link Scope}.
+ * Scopes nest (e.g. a service call inside a request) - a statement counts towards every open scope.
+ * <p>
+ * Registered as Hibernate's statement inspector, so anything that goes through the session (queries,
+ * lazy loads, flushes) is counted.  Queries (selects) are counted separately from the total: inserts,
+ * updates and deletes are issued at flush time, which in a longer transaction may well be during some
+ * later unrelated call, so only the queries can be reliably pinned on the code that caused them.
+ */
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<Deque<Scope>> SCOPES = ThreadLocal.withInitial(ArrayDeque::new);
+
+    public static Scope start() {
+        Scope scope = new Scope();
+        SCOPES.get().push(scope);
+        return scope;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        boolean query = isQuery(sql);
+        for (Scope scope : SCOPES.get()) {
+            scope.statements++;
+            if (query) scope.queries++;
+        }
+        return sql;
+    }
+
+    static boolean isQuery(String sql) {
+        String s = sql.stripLeading();
+        while (s.startsWith("/*") && s.contains("*/")) s = s.substring(s.indexOf("*/") + 2).stripLeading();
+        return s.regionMatches(true, 0, "select", 0, 6) || s.regionMatches(true, 0, "with", 0, 4);
+    }
+
+    public static class Scope implements AutoCloseable {
+
+        private int statements;
+        private int queries;
+
+        public int statements() {
+            return statements;
+        }
+
+        public int queries() {
+            return queries;
+        }
+
+        @Override
+        public void close() {
+            Deque<Scope> scopes = SCOPES.get();
+            scopes.remove(this);
+            if (scopes.isEmpty()) SCOPES.remove();
+        }
+    }
+}
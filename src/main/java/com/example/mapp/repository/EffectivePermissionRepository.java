@@ -0,0 +1,79 @@
+package com.example.mapp.repository;
+
+import com.example.mapp.model.EffectivePermission;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The read model is only ever written in bulk here (or when reconciling whole programs), so a change costs the same
+ * few statements however many forms it fans out to
+ */
+public interface EffectivePermissionRepository
+        extends JpaRepository<EffectivePermission, EffectivePermission.EffectivePermissionId> {
+
+    /**
+     * The permission check - one row per role that has anything on the program (or form)
+     */
+    @Query("select e.functionIds from EffectivePermission e " +
+            "where e.id.programId = :programId and e.id.formId = :formId and e.id.roleId in :roleIds")
+    List<String> findFunctionIds(Long programId, Long formId, Collection<Long> roleIds);
+
+    @Query("select e from EffectivePermission e where e.id.programId in :programIds")
+    List<EffectivePermission> findAllByProgramIdIn(Collection<Long> programIds);
+
+    // selected from the program as an insert ... values doesn't take the embedded id
+    @Modifying(flushAutomatically = true)
+    @Query("insert into EffectivePermission (id.programId, id.formId, id.roleId, functionIds) " +
+            "select p.id, cast(:formId as Long), cast(:roleId as Long), cast(:functionIds as String) from Program p " +
+            "where p.id = :programId")
+    int insertRow(Long programId, Long formId, Long roleId, String functionIds);
+
+    @Modifying(flushAutomatically = true)
+    @Query("delete from EffectivePermission e " +
+            "where e.id.programId = :programId and e.id.formId = :formId and e.id.roleId = :roleId")
+    int deleteRow(Long programId, Long formId, Long roleId);
+
+    /**
+     * Rows for the forms of the program the role has no grants of its own on, with the given (program level) functions
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("insert into EffectivePermission (id.programId, id.formId, id.roleId, functionIds) " +
+            "select cast(:programId as Long), f.id, cast(:roleId as Long), cast(:functionIds as String) from Form f " +
+            "where f.owner.id = :programId and f.id not in (select m.id.formId from RoleFunctionFormMapping m " +
+            "where m.id.programId = :programId and m.id.roleId = :roleId)")
+    int insertFallbackRows(Long programId, Long roleId, String functionIds);
+
+    /**
+     * The role's program level row and the rows of the forms it has no grants of its own on
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("delete from EffectivePermission e where e.id.programId = :programId and e.id.roleId = :roleId " +
+            "and e.id.formId not in (select m.id.formId from RoleFunctionFormMapping m " +
+            "where m.id.programId = :programId and m.id.roleId = :roleId)")
+    int deleteProgramLevelRows(Long programId, Long roleId);
+
+    /**
+     * Gives the form the program level rows - of every role, or just the given one
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("insert into EffectivePermission (id.programId, id.formId, id.roleId, functionIds) " +
+            "select e.id.programId, cast(:formId as Long), e.id.roleId, e.functionIds from EffectivePermission e " +
+            "where e.id.programId = :programId and e.id.formId = 0 and (:roleId is null or e.id.roleId = :roleId)")
+    int copyProgramRows(Long programId, Long formId, Long roleId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("delete from EffectivePermission e where e.id.programId = :programId and e.id.formId = :formId")
+    int deleteByProgramIdAndFormId(Long programId, Long formId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("delete from EffectivePermission e where e.id.programId = :programId")
+    int deleteByProgramId(Long programId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("delete from EffectivePermission e where e.id.roleId = :roleId")
+    int deleteByRoleId(Long roleId);
+}
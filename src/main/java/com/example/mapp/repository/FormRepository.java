@@ -1,7 +1,21 @@
 package com.example.mapp.repository;
 
 import com.example.mapp.model.Form;
+import com.example.mapp.model.Program;
+import com.example.mapp.repository.projection.ProgramChildRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface FormRepository extends JpaRepository<Form, Long> {
+
+    Optional<Form> findByOwnerAndName(Program owner, String name);
+
+    List<Form> findAllByOwnerIn(Collection<Program> programs);
+
+    @Query("select f.owner.id as programId, f.id as id, f.name as name from Form f where f.owner.id in :programIds")
+    List<ProgramChildRow> findRowsByProgramIdIn(Collection<Long> programIds);
 }
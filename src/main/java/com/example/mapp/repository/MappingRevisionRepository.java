@@ -0,0 +1,20 @@
+package com.example.mapp.repository;
+
+import com.example.mapp.model.MappingRevision;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+public interface MappingRevisionRepository extends JpaRepository<MappingRevision, Integer> {
+
+    @Query("select r.revision from MappingRevision r where r.id = " + MappingRevision.ID)
+    long current();
+
+    /**
+     * Locks the row until the transaction ends - concurrent changes queue up behind it, so their revisions are
+     * handed out in the order they commit
+     */
+    @Modifying
+    @Query("update MappingRevision r set r.revision = r.revision + 1 where r.id = " + MappingRevision.ID)
+    int increment();
+}
@@ -0,0 +1,38 @@
+package com.example.mapp.repository;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.NaturalIdLoadAccess;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Repository base class (see {@code @EnableJpaRepositories} on the application) adding the
+ * {@link NaturalIdRepository} lookups to the standard ones
+ */
+public class NaturalIdJpaRepository<T, ID> extends SimpleJpaRepository<T, ID> implements NaturalIdRepository<T, ID> {
+
+    private final EntityManager entityManager;
+
+    public NaturalIdJpaRepository(JpaEntityInformation<T, ?> entityInformation, EntityManager entityManager) {
+        super(entityInformation, entityManager);
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Optional<T> findBySimpleNaturalId(Object naturalId) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(getDomainClass())
+                .loadOptional(naturalId);
+    }
+
+    @Override
+    public Optional<T> findByNaturalId(Map<String, Object> naturalIds) {
+        NaturalIdLoadAccess<T> access = entityManager.unwrap(Session.class).byNaturalId(getDomainClass());
+        naturalIds.forEach(access::using);
+        return access.loadOptional();
+    }
+}
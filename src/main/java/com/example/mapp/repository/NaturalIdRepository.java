@@ -0,0 +1,26 @@
+package com.example.mapp.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Repository for entities with a {@code @NaturalId} - lookups by natural id go through Hibernate's natural id
+ * resolution, so with {@code @NaturalIdCache} they're served from the second level cache once the entity's been
+ * seen (and kept right by Hibernate as entities are created and deleted).
+ */
+@NoRepositoryBean
+public interface NaturalIdRepository<T, ID> extends JpaRepository<T, ID> {
+
+    /**
+     * For entities with a single natural id attribute - values must match exactly (e.g. already be uppercased)
+     */
+    Optional<T> findBySimpleNaturalId(Object naturalId);
+
+    /**
+     * For entities with a compound natural id - keyed by attribute name
+     */
+    Optional<T> findByNaturalId(Map<String, Object> naturalIds);
+}
@@ -1,13 +1,54 @@
 package com.example.mapp.repository;
 
 import com.example.mapp.model.Program;
-import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface ProgramRepository extends JpaRepository<Program, Long> {
-    boolean existsByNameIgnoreCase(String name);
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+public interface ProgramRepository extends NaturalIdRepository<Program, Long> {
+
+    /**
+     * Rows fetched per round trip by the cursor backed stream* queries
+     */
+    String STREAM_FETCH_SIZE = "500";
 
     Optional<Program> findByName(String name);
 
+    List<Program> findAllByNameIn(Collection<String> names);
+
+    @Query("select p.id from Program p order by p.id")
+    List<Long> findAllIds();
+
+    @Query("select p.name from Program p")
+    List<String> findAllNames();
+
+    /**
+     * The programs changed after the given mapping revision - those created after it included
+     */
+    List<Program> findAllByRevisionGreaterThan(long revision);
+
+    @Modifying
+    @Query("update Program p set p.revision = :revision")
+    int updateAllRevisions(long revision);
+
+    /**
+     * Keyset page - the programs with ids after the given one
+     */
+    List<Program> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /**
+     * Cursor backed - must be consumed (and closed) within a transaction
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<Program> streamAllByOrderByIdAsc();
+
 }
@@ -1,12 +1,53 @@
 package com.example.mapp.repository;
 
 import com.example.mapp.model.*;
+import com.example.mapp.repository.projection.FormGrantRow;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static com.example.mapp.repository.ProgramRepository.STREAM_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 public interface RoleFunctionFormMappingRepository
         extends JpaRepository<RoleFunctionFormMapping, RoleFunctionMapping.RoleFunctionMappingId> {
 
-    List<RoleFunctionFormMapping> findAllByFormAndRoleAndProgram(Form f, Role r, Program p);
+    @Query("select m from RoleFunctionFormMapping m join fetch m.securityFunction " +
+            "where m.form = :form and m.role = :role and m.program = :program")
+    List<RoleFunctionFormMapping> findAllByFormAndRoleAndProgram(Form form, Role role, Program program);
+
+    List<RoleFunctionFormMapping> findAllBySecurityFunction(SecurityFunction securityFunction);
+
+    @Query("select r.id as roleId, r.name as roleName, p.id as programId, p.name as programName, " +
+            "f.id as formId, f.name as formName, sf.name as functionName " +
+            "from RoleFunctionFormMapping m join m.role r join m.program p join m.form f join m.securityFunction sf " +
+            "where r = :role order by p.id, f.id, sf.id")
+    List<FormGrantRow> findGrantRowsByRole(Role role);
+
+    @Query("select r.id as roleId, r.name as roleName, p.id as programId, p.name as programName, " +
+            "f.id as formId, f.name as formName, sf.name as functionName " +
+            "from RoleFunctionFormMapping m join m.role r join m.program p join m.form f join m.securityFunction sf " +
+            "where r in :roles order by r.id, p.id, f.id, sf.id")
+    List<FormGrantRow> findGrantRowsByRoles(Collection<Role> roles);
+
+    @Query("select r.id as roleId, r.name as roleName, p.id as programId, p.name as programName, " +
+            "f.id as formId, f.name as formName, sf.name as functionName " +
+            "from RoleFunctionFormMapping m join m.role r join m.program p join m.form f join m.securityFunction sf " +
+            "where r in :roles and p in :programs")
+    List<FormGrantRow> findGrantRowsByRolesAndPrograms(Collection<Role> roles, Collection<Program> programs);
+
+    @Query("select m.id from RoleFunctionFormMapping m where m.id.programId in :programIds")
+    List<RoleFunctionFormMapping.RoleFunctionFormMappingId> findIdsByProgramIdIn(Collection<Long> programIds);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select r.id as roleId, r.name as roleName, p.id as programId, p.name as programName, " +
+            "f.id as formId, f.name as formName, sf.name as functionName " +
+            "from RoleFunctionFormMapping m join m.role r join m.program p join m.form f join m.securityFunction sf " +
+            "order by r.id, p.id, f.id, sf.id")
+    Stream<FormGrantRow> streamAllGrantRows();
 }
@@ -2,13 +2,50 @@ package com.example.mapp.repository;
 
 import com.example.mapp.model.Program;
 import com.example.mapp.model.Role;
+import com.example.mapp.model.SecurityFunction;
 import com.example.mapp.model.RoleFunctionMapping;
+import com.example.mapp.repository.projection.ProgramGrantRow;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static com.example.mapp.repository.ProgramRepository.STREAM_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 public interface RoleFunctionMappingRepository
         extends JpaRepository<RoleFunctionMapping, RoleFunctionMapping.RoleFunctionMappingId> {
 
+    @Query("select m from RoleFunctionMapping m join fetch m.securityFunction where m.program = :program and m.role = :role")
     List<RoleFunctionMapping> findAllByProgramAndRole(Program program, Role role);
+
+    List<RoleFunctionMapping> findAllBySecurityFunction(SecurityFunction securityFunction);
+
+    @Query("select r.id as roleId, r.name as roleName, p.id as programId, p.name as programName, sf.name as functionName " +
+            "from RoleFunctionMapping m join m.role r join m.program p join m.securityFunction sf " +
+            "where r = :role order by p.id, sf.id")
+    List<ProgramGrantRow> findGrantRowsByRole(Role role);
+
+    @Query("select r.id as roleId, r.name as roleName, p.id as programId, p.name as programName, sf.name as functionName " +
+            "from RoleFunctionMapping m join m.role r join m.program p join m.securityFunction sf " +
+            "where r in :roles order by r.id, p.id, sf.id")
+    List<ProgramGrantRow> findGrantRowsByRoles(Collection<Role> roles);
+
+    @Query("select r.id as roleId, r.name as roleName, p.id as programId, p.name as programName, sf.name as functionName " +
+            "from RoleFunctionMapping m join m.role r join m.program p join m.securityFunction sf " +
+            "where r in :roles and p in :programs")
+    List<ProgramGrantRow> findGrantRowsByRolesAndPrograms(Collection<Role> roles, Collection<Program> programs);
+
+    @Query("select m.id from RoleFunctionMapping m where m.id.programId in :programIds")
+    List<RoleFunctionMapping.RoleFunctionMappingId> findIdsByProgramIdIn(Collection<Long> programIds);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select r.id as roleId, r.name as roleName, p.id as programId, p.name as programName, sf.name as functionName " +
+            "from RoleFunctionMapping m join m.role r join m.program p join m.securityFunction sf " +
+            "order by r.id, p.id, sf.id")
+    Stream<ProgramGrantRow> streamAllGrantRows();
 }
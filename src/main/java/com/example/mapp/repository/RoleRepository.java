@@ -1,12 +1,26 @@
 package com.example.mapp.repository;
 
 import com.example.mapp.model.Role;
-import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.QueryHints;
 
-import java.util.Optional;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
-public interface RoleRepository extends JpaRepository<Role, Long> {
+import static com.example.mapp.repository.ProgramRepository.STREAM_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
-    boolean existsByNameIgnoreCase(String name);
-    Optional<Role> findByNameIgnoreCase(String name);
+public interface RoleRepository extends NaturalIdRepository<Role, Long> {
+
+    List<Role> findAllByNameIn(Collection<String> names);
+
+    /**
+     * Keyset page - the roles with ids after the given one
+     */
+    List<Role> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<Role> streamAllByOrderByIdAsc();
 }
@@ -1,7 +1,17 @@
 package com.example.mapp.repository;
 
 import com.example.mapp.model.SecurityFunction;
-import org.springframework.data.jpa.repository.JpaRepository;
+import com.example.mapp.repository.projection.ProgramChildRow;
+import org.springframework.data.jpa.repository.Query;
 
-public interface SecurityFunctionRepository extends JpaRepository<SecurityFunction, Long> {
+import java.util.Collection;
+import java.util.List;
+
+public interface SecurityFunctionRepository extends NaturalIdRepository<SecurityFunction, Long> {
+
+    List<SecurityFunction> findAllByProgramIdAndNameIn(Long programId, Collection<String> names);
+
+    @Query("select sf.programId as programId, sf.id as id, sf.name as name from SecurityFunction sf " +
+            "where sf.programId in :programIds")
+    List<ProgramChildRow> findRowsByProgramIdIn(Collection<Long> programIds);
 }
@@ -0,0 +1,11 @@
+package com.example.mapp.repository.projection;
+
+/**
+ * One row of a role's form level grant - a role mapped to one security function on a form of a program
+ */
+public interface FormGrantRow extends ProgramGrantRow {
+
+    Long getFormId();
+
+    String getFormName();
+}
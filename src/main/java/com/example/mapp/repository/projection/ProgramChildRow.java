@@ -0,0 +1,13 @@
+package com.example.mapp.repository.projection;
+
+/**
+ * One of a program's forms or security functions - just what's needed to tell whether it exists and refer to it
+ */
+public interface ProgramChildRow {
+
+    Long getProgramId();
+
+    Long getId();
+
+    String getName();
+}
@@ -0,0 +1,17 @@
+package com.example.mapp.repository.projection;
+
+/**
+ * One row of a role's program level grant - a role mapped to one security function of a program
+ */
+public interface ProgramGrantRow {
+
+    Long getRoleId();
+
+    String getRoleName();
+
+    Long getProgramId();
+
+    String getProgramName();
+
+    String getFunctionName();
+}
@@ -0,0 +1,243 @@
+package com.example.mapp.service;
+
+import com.example.mapp.dto.EffectivePermissionsReportDto;
+import com.example.mapp.model.EffectivePermission;
+import com.example.mapp.model.EffectivePermission.EffectivePermissionId;
+import com.example.mapp.model.Form;
+import com.example.mapp.model.Program;
+import com.example.mapp.model.Role;
+import com.example.mapp.model.SecurityFunction;
+import com.example.mapp.model.RoleFunctionFormMapping.RoleFunctionFormMappingId;
+import com.example.mapp.model.RoleFunctionMapping.RoleFunctionMappingId;
+import com.example.mapp.repository.EffectivePermissionRepository;
+import com.example.mapp.repository.FormRepository;
+import com.example.mapp.repository.ProgramRepository;
+import com.example.mapp.repository.RoleFunctionFormMappingRepository;
+import com.example.mapp.repository.RoleFunctionMappingRepository;
+import com.example.mapp.repository.projection.ProgramChildRow;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+import static com.example.mapp.model.EffectivePermission.PROGRAM_LEVEL;
+
+/**
+ * Keeps the effective_permissions read model in step with the mappings.  The service calls in here from the same
+ * transaction as each change, which is applied with a few bulk statements - a role's change on a program rewrites its
+ * rows for the program and every form it has no grants of its own on without reading them.  Changes that could
+ * touch anything on a program (a security function going, an import) work the program's rows out again from the
+ * grant ids instead, writing just the rows that differ - as does the rebuild.
+ * <p>
+ * A role's row for a form is its form grants when it has any, otherwise its program grants - so the fallback is
+ * materialized too, and a permission check is a lookup of the row for the program (or form) per role.
+ */
+@Slf4j
+@Component
+class EffectivePermissionMaintainer {
+
+    // programs per IN list when checking (or rebuilding) all of them
+    static final int CHUNK_SIZE = MappingImporter.LOOKUP_CHUNK_SIZE;
+
+    @Autowired
+    EffectivePermissionRepository effectivePermissionRepository;
+
+    @Autowired
+    ProgramRepository programRepository;
+
+    @Autowired
+    FormRepository formRepository;
+
+    @Autowired
+    RoleFunctionMappingRepository roleFunctionMappingRepository;
+
+    @Autowired
+    RoleFunctionFormMappingRepository roleFunctionFormMappingRepository;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    /**
+     * The role's program level grants are now the given functions - its program row and the rows of the forms it has
+     * no grants of its own on follow them
+     */
+    void programGrantsChanged(Program p, Role r, Collection<SecurityFunction> granted) {
+        effectivePermissionRepository.deleteProgramLevelRows(p.getId(), r.getId());
+        if (granted.isEmpty()) return;
+
+        String functionIds = encode(granted);
+        effectivePermissionRepository.insertRow(p.getId(), PROGRAM_LEVEL, r.getId(), functionIds);
+        effectivePermissionRepository.insertFallbackRows(p.getId(), r.getId(), functionIds);
+    }
+
+    /**
+     * The role's grants on the form are now the given functions - none means it falls back to its program row
+     */
+    void formGrantsChanged(Program p, Form f, Role r, Collection<SecurityFunction> granted) {
+        effectivePermissionRepository.deleteRow(p.getId(), f.getId(), r.getId());
+        if (granted.isEmpty()) {
+            effectivePermissionRepository.copyProgramRows(p.getId(), f.getId(), r.getId());
+        } else {
+            effectivePermissionRepository.insertRow(p.getId(), f.getId(), r.getId(), encode(granted));
+        }
+    }
+
+    /**
+     * A new form has no grants of its own yet, so every role gets its program row on it
+     */
+    void formAdded(Program p, Form f) {
+        effectivePermissionRepository.copyProgramRows(p.getId(), f.getId(), null);
+    }
+
+    void formRemoved(Program p, Form f) {
+        effectivePermissionRepository.deleteByProgramIdAndFormId(p.getId(), f.getId());
+    }
+
+    void programRemoved(Program p) {
+        effectivePermissionRepository.deleteByProgramId(p.getId());
+    }
+
+    void roleRemoved(Role r) {
+        effectivePermissionRepository.deleteByRoleId(r.getId());
+    }
+
+    /**
+     * Anything on these programs may have changed - every role's rows are worked out again from the grants and
+     * compared with what's there, only the difference being written (if repairing)
+     */
+    EffectivePermissionsReportDto refreshPrograms(Collection<Long> programIds, boolean repair) {
+        return this.reconcile(roleFunctionMappingRepository.findIdsByProgramIdIn(programIds),
+                roleFunctionFormMappingRepository.findIdsByProgramIdIn(programIds),
+                formRepository.findRowsByProgramIdIn(programIds),
+                effectivePermissionRepository.findAllByProgramIdIn(programIds),
+                repair);
+    }
+
+    /**
+     * Checks every program's rows against the mappings, a chunk of programs at a time - putting them right as well
+     * if asked to
+     */
+    EffectivePermissionsReportDto rebuild(boolean repair) {
+        long start = System.nanoTime();
+        EffectivePermissionsReportDto total = EffectivePermissionsReportDto.builder().repaired(repair).build();
+
+        List<Long> programIds = programRepository.findAllIds();
+        for (int i = 0; i < programIds.size(); i += CHUNK_SIZE) {
+            var chunk = this.refreshPrograms(programIds.subList(i, Math.min(programIds.size(), i + CHUNK_SIZE)), repair);
+            total.setRows(total.getRows() + chunk.getRows());
+            total.setMissing(total.getMissing() + chunk.getMissing());
+            total.setExtra(total.getExtra() + chunk.getExtra());
+            total.setStale(total.getStale() + chunk.getStale());
+        }
+
+        total.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        if (repair) {
+            log.info("Rebuilt effective permissions: {}", total);
+        } else if (total.getMissing() + total.getExtra() + total.getStale() > 0) {
+            log.warn("Effective permissions are out of step with the mappings: {}", total);
+        }
+        return total;
+    }
+
+    /**
+     * Databases migrated from before the read model existed start with it empty
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        if (effectivePermissionRepository.count() > 0) return;
+        if (roleFunctionMappingRepository.count() == 0 && roleFunctionFormMappingRepository.count() == 0) return;
+
+        this.rebuild(true);
+    }
+
+    /**
+     * Works out the rows the grants call for (the programs' forms are needed for the fallback) and compares them
+     * with the existing rows - inserting, updating and deleting the difference when repairing.  The rows are
+     * detached afterwards, the bulk statements above would otherwise leave them stale in the persistence context.
+     */
+    private EffectivePermissionsReportDto reconcile(List<RoleFunctionMappingId> programGrants,
+                                                    List<RoleFunctionFormMappingId> formGrants,
+                                                    List<ProgramChildRow> forms,
+                                                    List<EffectivePermission> existing,
+                                                    boolean repair) {
+        Map<EffectivePermissionId, String> expected = expectedRows(programGrants, formGrants, forms);
+        long rows = expected.size(), extra = 0, stale = 0;
+
+        for (EffectivePermission row : existing) {
+            String functionIds = expected.remove(row.getId());
+            if (functionIds == null) {
+                extra++;
+                if (repair) entityManager.remove(row);
+            } else if (!functionIds.equals(row.getFunctionIds())) {
+                stale++;
+                if (repair) row.setFunctionIds(functionIds);
+            }
+        }
+
+        // what's left was never there
+        List<EffectivePermission> added = new ArrayList<>();
+        if (repair) {
+            expected.forEach((id, functionIds) -> added.add(EffectivePermission.builder()
+                    .id(id)
+                    .functionIds(functionIds)
+                    .build()));
+            added.forEach(entityManager::persist);
+        }
+
+        entityManager.flush();
+        existing.forEach(entityManager::detach);
+        added.forEach(entityManager::detach);
+
+        return EffectivePermissionsReportDto.builder()
+                .rows(rows)
+                .missing(expected.size())
+                .extra(extra)
+                .stale(stale)
+                .repaired(repair)
+                .build();
+    }
+
+    private static String encode(Collection<SecurityFunction> functions) {
+        return EffectivePermission.encode(functions.stream().map(SecurityFunction::getId).toList());
+    }
+
+    private static Map<EffectivePermissionId, String> expectedRows(List<RoleFunctionMappingId> programGrants,
+                                                                   List<RoleFunctionFormMappingId> formGrants,
+                                                                   List<ProgramChildRow> forms) {
+        // program id -> role id -> function ids, and the same per form (form id -> role id -> function ids)
+        Map<Long, Map<Long, Set<Long>>> programLevel = new HashMap<>();
+        programGrants.forEach(g -> programLevel.computeIfAbsent(g.getProgramId(), id -> new HashMap<>())
+                .computeIfAbsent(g.getRoleId(), id -> new TreeSet<>())
+                .add(g.getSecurityFunctionId()));
+        Map<Long, Map<Long, Set<Long>>> formLevel = new HashMap<>();
+        formGrants.forEach(g -> formLevel.computeIfAbsent(g.getFormId(), id -> new HashMap<>())
+                .computeIfAbsent(g.getRoleId(), id -> new TreeSet<>())
+                .add(g.getSecurityFunctionId()));
+
+        Map<EffectivePermissionId, String> rows = new HashMap<>();
+        programLevel.forEach((programId, roles) -> roles.forEach((roleId, functionIds) ->
+                rows.put(new EffectivePermissionId(programId, PROGRAM_LEVEL, roleId), EffectivePermission.encode(functionIds))));
+
+        for (ProgramChildRow form : forms) {
+            Map<Long, Set<Long>> fallback = programLevel.getOrDefault(form.getProgramId(), Map.of());
+            Map<Long, Set<Long>> overrides = formLevel.getOrDefault(form.getId(), Map.of());
+
+            Set<Long> roleIds = new HashSet<>(fallback.keySet());
+            roleIds.addAll(overrides.keySet());
+            for (Long roleId : roleIds) {
+                Set<Long> functionIds = overrides.getOrDefault(roleId, fallback.getOrDefault(roleId, Set.of()));
+                if (!functionIds.isEmpty()) {
+                    rows.put(new EffectivePermissionId(form.getProgramId(), form.getId(), roleId), EffectivePermission.encode(functionIds));
+                }
+            }
+        }
+        return rows;
+    }
+}
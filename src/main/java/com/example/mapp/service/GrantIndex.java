@@ -0,0 +1,72 @@
+package com.example.mapp.service;
+
+import com.example.mapp.exception.NotFoundException;
+import com.example.mapp.model.util.NormalizedName;
+import com.example.mapp.repository.projection.FormGrantRow;
+import com.example.mapp.repository.projection.ProgramGrantRow;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of grant rows prefetched for a set of roles and programs, so any number of
+ * program/form targets can be collated for those roles without going back to the database
+ */
+class GrantIndex {
+
+    private final Map<String, Set<String>> programForms = new HashMap<>();
+    private final Map<String, Map<String, Set<String>>> programGrants = new HashMap<>();
+    private final Map<String, Map<String, Map<String, Set<String>>>> formGrants = new HashMap<>();
+
+    /**
+     * Registers a program (and its forms) as existing - targets on any other program or form are not found
+     */
+    GrantIndex addProgram(String programName, Collection<String> formNames) {
+        programForms.computeIfAbsent(programName, p -> new HashSet<>()).addAll(formNames);
+        return this;
+    }
+
+    GrantIndex addProgramGrant(ProgramGrantRow row) {
+        programGrants.computeIfAbsent(row.getProgramName(), p -> new HashMap<>())
+                .computeIfAbsent(row.getRoleName(), r -> new HashSet<>())
+                .add(row.getFunctionName());
+        return this;
+    }
+
+    GrantIndex addFormGrant(FormGrantRow row) {
+        formGrants.computeIfAbsent(row.getProgramName(), p -> new HashMap<>())
+                .computeIfAbsent(row.getFormName(), f -> new HashMap<>())
+                .computeIfAbsent(row.getRoleName(), r -> new HashSet<>())
+                .add(row.getFunctionName());
+        return this;
+    }
+
+    /**
+     * Same semantics as collateRolesToProgramAndForm - roles are expected to be uppercased (and to exist)
+     */
+    List<String> collate(Collection<String> roleNames, String programName, String formName) {
+        String program = NormalizedName.normalize(programName);
+        String form = NormalizedName.normalize(formName);
+
+        Set<String> forms = programForms.get(program);
+        if (forms == null) throw new NotFoundException("Pgm Name not found");
+        if (form != null && !forms.contains(form)) throw new NotFoundException("Form not found");
+
+        Set<String> funcs = new HashSet<>();
+        for (String role : roleNames) {
+            Set<String> formFuncs = form == null
+                    ? Set.of()
+                    : formGrants.getOrDefault(program, Map.of()).getOrDefault(form, Map.of()).getOrDefault(role, Set.of());
+
+            // a role's form level grant (if any) overrides its program level one
+            funcs.addAll(formFuncs.isEmpty()
+                    ? programGrants.getOrDefault(program, Map.of()).getOrDefault(role, Set.of())
+                    : formFuncs);
+        }
+        return List.copyOf(funcs);
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.mapp.service;
+
+import com.example.mapp.dto.FormDto;
+import com.example.mapp.dto.MappingImportResultDto;
+import com.example.mapp.dto.ProgramDto;
+import com.example.mapp.dto.RoleWithProgramsDto;
+import com.example.mapp.dto.RoleWithProgramsListDto;
+import com.example.mapp.exception.BadRequestException;
+import com.example.mapp.model.*;
+import com.example.mapp.model.util.NormalizedName;
+import com.example.mapp.repository.FormRepository;
+import com.example.mapp.repository.ProgramRepository;
+import com.example.mapp.repository.RoleFunctionFormMappingRepository;
+import com.example.mapp.repository.RoleFunctionMappingRepository;
+import com.example.mapp.repository.RoleRepository;
+import com.example.mapp.repository.SecurityFunctionRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Applies a whole roles -> programs -> forms -> functions document (the shape /rolesDetails returns) in bulk.
+ * <p>
+ * Only ever adds - roles, programs, forms, functions and grants already there are left as they are, so an import
+ * can safely be re-run (or an export imported again).  What exists is found with one query per kind of row (per
+ * chunk of names or programs), reading just ids and names.  The new rows are persisted directly (no merge, so no
+ * select per row), refer to each other by reference and go out as JDBC batches of hibernate.jdbc.batch_size.  The
+ * persistence context is flushed and cleared every batch so it doesn't grow with the import.  The effective
+ * permissions of every program in the document are brought up to date afterwards.  Runs in the caller's transaction.
+ */
+@Slf4j
+@Component
+class MappingImporter {
+
+    // names (or programs) per IN list when looking up what's already there
+    static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    @Autowired
+    ProgramRepository programRepository;
+
+    @Autowired
+    RoleRepository roleRepository;
+
+    @Autowired
+    FormRepository formRepository;
+
+    @Autowired
+    SecurityFunctionRepository securityFunctionRepository;
+
+    @Autowired
+    RoleFunctionMappingRepository roleFunctionMappingRepository;
+
+    @Autowired
+    RoleFunctionFormMappingRepository roleFunctionFormMappingRepository;
+
+    @Autowired
+    EffectivePermissionMaintainer effectivePermissionMaintainer;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    int batchSize;
+
+    private record ProgramGrant(String roleName, String functionName) {
+    }
+
+    private record FormGrant(String formName, String roleName, String functionName) {
+    }
+
+    /**
+     * Everything the document asks for on one program - names uppercased
+     */
+    private static class ProgramPlan {
+        final Set<String> forms = new HashSet<>();
+        final Set<String> functions = new HashSet<>();
+        final Set<ProgramGrant> programGrants = new HashSet<>();
+        final Set<FormGrant> formGrants = new HashSet<>();
+    }
+
+    MappingImportResultDto importMappings(RoleWithProgramsListDto document) {
+        long start = System.nanoTime();
+        Set<String> roleNames = new HashSet<>();
+        Map<String, ProgramPlan> plans = plan(document, roleNames);
+        Inserter inserter = new Inserter();
+        MappingImportResultDto.MappingImportResultDtoBuilder result = MappingImportResultDto.builder();
+
+        // from here on everything is referred to by id - rows that already exist are never loaded as entities
+        Map<String, Long> roleIds = new HashMap<>();
+        chunked(roleNames, roleRepository::findAllByNameIn).forEach(r -> roleIds.put(r.getName(), r.getId()));
+        result.rolesCreated(createMissing(roleNames, roleIds, name -> Role.builder().name(name).build(), Role::getId, inserter));
+
+        Map<String, Long> programIds = new HashMap<>();
+        chunked(plans.keySet(), programRepository::findAllByNameIn).forEach(p -> programIds.put(p.getName(), p.getId()));
+        List<Long> existingPrograms = List.copyOf(programIds.values());
+        result.programsCreated(createMissing(plans.keySet(), programIds,
+                name -> Program.builder().name(name).build(), Program::getId, inserter));
+
+        // forms, functions and grants can only already exist on programs that did - keyed by program id
+        Map<Long, Map<String, Long>> formIds = new HashMap<>();
+        chunked(existingPrograms, formRepository::findRowsByProgramIdIn)
+                .forEach(row -> formIds.computeIfAbsent(row.getProgramId(), id -> new HashMap<>()).put(row.getName(), row.getId()));
+
+        Map<Long, Map<String, Long>> functionIds = new HashMap<>();
+        chunked(existingPrograms, securityFunctionRepository::findRowsByProgramIdIn)
+                .forEach(row -> functionIds.computeIfAbsent(row.getProgramId(), id -> new HashMap<>()).put(row.getName(), row.getId()));
+
+        Set<RoleFunctionMapping.RoleFunctionMappingId> programGrants =
+                new HashSet<>(chunked(existingPrograms, roleFunctionMappingRepository::findIdsByProgramIdIn));
+        Set<RoleFunctionFormMapping.RoleFunctionFormMappingId> formGrants =
+                new HashSet<>(chunked(existingPrograms, roleFunctionFormMappingRepository::findIdsByProgramIdIn));
+
+        int formsCreated = 0, functionsCreated = 0, programGrantsCreated = 0, formGrantsCreated = 0, alreadyPresent = 0;
+        for (Map.Entry<String, ProgramPlan> entry : plans.entrySet()) {
+            Long programId = programIds.get(entry.getKey());
+            Program program = entityManager.getReference(Program.class, programId);
+            ProgramPlan plan = entry.getValue();
+
+            Map<String, Long> programForms = formIds.computeIfAbsent(programId, id -> new HashMap<>());
+            formsCreated += createMissing(plan.forms, programForms,
+                    name -> Form.builder().name(name).owner(program).build(), Form::getId, inserter);
+
+            Map<String, Long> programFunctions = functionIds.computeIfAbsent(programId, id -> new HashMap<>());
+            functionsCreated += createMissing(plan.functions, programFunctions,
+                    name -> SecurityFunction.builder().name(name).programId(programId).build(), SecurityFunction::getId, inserter);
+
+            for (ProgramGrant grant : plan.programGrants) {
+                var id = new RoleFunctionMapping.RoleFunctionMappingId(programId,
+                        roleIds.get(grant.roleName()),
+                        programFunctions.get(grant.functionName()));
+                if (!programGrants.add(id)) {
+                    alreadyPresent++;
+                    continue;
+                }
+                inserter.persist(RoleFunctionMapping.builder()
+                        .id(id)
+                        .program(program)
+                        .role(entityManager.getReference(Role.class, id.getRoleId()))
+                        .securityFunction(entityManager.getReference(SecurityFunction.class, id.getSecurityFunctionId()))
+                        .build());
+                programGrantsCreated++;
+            }
+
+            for (FormGrant grant : plan.formGrants) {
+                var id = new RoleFunctionFormMapping.RoleFunctionFormMappingId(programId,
+                        roleIds.get(grant.roleName()),
+                        programFunctions.get(grant.functionName()),
+                        programForms.get(grant.formName()));
+                if (!formGrants.add(id)) {
+                    alreadyPresent++;
+                    continue;
+                }
+                inserter.persist(RoleFunctionFormMapping.builder()
+                        .id(id)
+                        .program(program)
+                        .role(entityManager.getReference(Role.class, id.getRoleId()))
+                        .form(entityManager.getReference(Form.class, id.getFormId()))
+                        .securityFunction(entityManager.getReference(SecurityFunction.class, id.getSecurityFunctionId()))
+                        .build());
+                formGrantsCreated++;
+            }
+        }
+        inserter.finish();
+
+        // the imported programs' effective permissions, worked out again a chunk of programs at a time
+        List<Long> imported = List.copyOf(programIds.values());
+        for (int i = 0; i < imported.size(); i += LOOKUP_CHUNK_SIZE) {
+            effectivePermissionMaintainer.refreshPrograms(imported.subList(i, Math.min(imported.size(), i + LOOKUP_CHUNK_SIZE)), true);
+            inserter.finish();
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        log.info("Imported {} rows ({} grants already present) in {} ms",
+                inserter.inserted,
+                alreadyPresent,
+                elapsedNanos / 1_000_000);
+
+        return result.formsCreated(formsCreated)
+                .securityFunctionsCreated(functionsCreated)
+                .programGrantsCreated(programGrantsCreated)
+                .formGrantsCreated(formGrantsCreated)
+                .grantsAlreadyPresent(alreadyPresent)
+                .rowsInserted(inserter.inserted)
+                .elapsedMillis(elapsedNanos / 1_000_000)
+                .rowsPerSecond(elapsedNanos == 0 ? 0 : inserter.inserted * 1e9 / elapsedNanos)
+                .build();
+    }
+
+    /**
+     * Collects what the document asks for per program (and every role it names, including ones only named as keys
+     * of roleMappings) - functions a grant names are defined on the program if they aren't listed
+     */
+    private static Map<String, ProgramPlan> plan(RoleWithProgramsListDto document, Set<String> roleNames) {
+        Map<String, ProgramPlan> plans = new HashMap<>();
+        for (RoleWithProgramsDto role : orEmpty(document.getRoles())) {
+            roleNames.add(upper(role.getRoleName()));
+
+            for (ProgramDto program : orEmpty(role.getPrograms())) {
+                ProgramPlan plan = plans.computeIfAbsent(upper(program.getName()), name -> new ProgramPlan());
+                orEmpty(program.getSecurityFunctions()).forEach(name -> plan.functions.add(upper(name)));
+                orEmpty(program.getRoleMappings()).forEach((roleName, functionNames) -> orEmpty(functionNames)
+                        .forEach(name -> plan.programGrants.add(new ProgramGrant(upper(roleName), upper(name)))));
+
+                for (FormDto form : orEmpty(program.getForms())) {
+                    String formName = upper(form.getName());
+                    plan.forms.add(formName);
+                    orEmpty(form.getRoleMappings()).forEach((roleName, functionNames) -> orEmpty(functionNames)
+                            .forEach(name -> plan.formGrants.add(new FormGrant(formName, upper(roleName), upper(name)))));
+                }
+            }
+        }
+
+        plans.values().forEach(plan -> {
+            plan.programGrants.forEach(g -> {
+                roleNames.add(g.roleName());
+                plan.functions.add(g.functionName());
+            });
+            plan.formGrants.forEach(g -> {
+                roleNames.add(g.roleName());
+                plan.functions.add(g.functionName());
+            });
+        });
+        return plans;
+    }
+
+    /**
+     * Persists a new entity for each name without an id yet (adding its id), returns how many were made
+     */
+    private static <T> int createMissing(Collection<String> names,
+                                         Map<String, Long> ids,
+                                         Function<String, T> factory,
+                                         Function<T, Long> id,
+                                         Inserter inserter) {
+        int created = 0;
+        for (String name : names) {
+            if (ids.containsKey(name)) continue;
+            ids.put(name, id.apply(inserter.persist(factory.apply(name))));
+            created++;
+        }
+        return created;
+    }
+
+    /**
+     * Persists new rows, flushing them out (as JDBC batches) and clearing the persistence context every batch -
+     * the ids (assigned on persist) are all the later rows need
+     */
+    private class Inserter {
+        long inserted;
+
+        <T> T persist(T entity) {
+            entityManager.persist(entity);
+            if (++inserted % batchSize == 0) finish();
+            return entity;
+        }
+
+        void finish() {
+            entityManager.flush();
+            entityManager.clear();
+        }
+    }
+
+    private static <T, R> List<R> chunked(Collection<T> values, Function<List<T>, List<R>> query) {
+        List<T> all = List.copyOf(values);
+        List<R> results = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += LOOKUP_CHUNK_SIZE) {
+            results.addAll(query.apply(all.subList(i, Math.min(all.size(), i + LOOKUP_CHUNK_SIZE))));
+        }
+        return results;
+    }
+
+    private static String upper(String name) {
+        if (name == null || name.isBlank()) throw new BadRequestException("Names can't be blank");
+        return NormalizedName.normalize(name);
+    }
+
+    private static <T> List<T> orEmpty(List<T> values) {
+        return values == null ? List.of() : values;
+    }
+
+    private static <K, V> Map<K, V> orEmpty(Map<K, V> values) {
+        return values == null ? Map.of() : values;
+    }
+}
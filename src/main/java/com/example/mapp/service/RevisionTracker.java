@@ -0,0 +1,42 @@
+package com.example.mapp.service;
+
+import com.example.mapp.event.MappingChangeEvent;
+import com.example.mapp.event.MappingRevisionEvent;
+import com.example.mapp.repository.MappingRevisionRepository;
+import com.example.mapp.repository.ProgramRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bumps the global mapping revision for every change, and stamps the program the change was made to with it - in
+ * the transaction making the change, as it's published.  The revisions are what the read endpoints use as ETags, and
+ * what the change stream numbers its events with (each change goes on as a {@link MappingRevisionEvent}).
+ */
+@Component
+class RevisionTracker {
+
+    @Autowired
+    MappingRevisionRepository mappingRevisionRepository;
+
+    @Autowired
+    ProgramRepository programRepository;
+
+    @Autowired
+    ApplicationEventPublisher applicationEventPublisher;
+
+    @EventListener
+    public void onMappingChange(MappingChangeEvent event) {
+        mappingRevisionRepository.increment();
+        long revision = mappingRevisionRepository.current();
+
+        if (event.kind() == MappingChangeEvent.Kind.MAPPINGS_IMPORTED) {
+            // not scoped to any program, so could have changed any of them
+            programRepository.updateAllRevisions(revision);
+        } else if (event.programName() != null && event.kind() != MappingChangeEvent.Kind.PROGRAM_DELETED) {
+            programRepository.findBySimpleNaturalId(event.programName()).ifPresent(p -> p.setRevision(revision));
+        }
+        applicationEventPublisher.publishEvent(new MappingRevisionEvent(revision, event));
+    }
+}
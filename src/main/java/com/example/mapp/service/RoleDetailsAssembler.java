@@ -0,0 +1,144 @@
+package com.example.mapp.service;
+
+import com.example.mapp.dto.FormDto;
+import com.example.mapp.dto.ProgramDto;
+import com.example.mapp.dto.RoleWithProgramsDto;
+import com.example.mapp.model.Role;
+import com.example.mapp.repository.projection.FormGrantRow;
+import com.example.mapp.repository.projection.ProgramGrantRow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Groups program and form level grant rows into role details DTOs - each role gets just the programs
+ * (and forms under them) it has functions mapped on, with only its own mappings in them
+ */
+class RoleDetailsAssembler {
+
+    private final Map<String, Map<Long, ProgramEntry>> roles = new LinkedHashMap<>();
+
+    /**
+     * Makes sure the role is in the output, even if no grant rows end up added for it
+     */
+    RoleDetailsAssembler addRole(String roleName) {
+        roles.computeIfAbsent(roleName, r -> new TreeMap<>());
+        return this;
+    }
+
+    RoleDetailsAssembler addProgramGrant(ProgramGrantRow row) {
+        program(row).addFunction(row.getRoleName(), row.getFunctionName());
+        return this;
+    }
+
+    RoleDetailsAssembler addFormGrant(FormGrantRow row) {
+        program(row).forms
+                .computeIfAbsent(row.getFormId(), id -> new FormEntry(row.getFormId(), row.getFormName()))
+                .addFunction(row.getRoleName(), row.getFunctionName());
+        return this;
+    }
+
+    List<RoleWithProgramsDto> build() {
+        List<RoleWithProgramsDto> dtos = new ArrayList<>(roles.size());
+        roles.forEach((roleName, programs) -> dtos.add(RoleWithProgramsDto.builder()
+                .roleName(roleName)
+                .programs(programs.values().stream().map(ProgramEntry::toProgramDto).toList())
+                .build()));
+        return dtos;
+    }
+
+    /**
+     * Assembles role details one role at a time from cursors ordered by role id (grant rows by role id first),
+     * handing each role to the sink as soon as it's complete - so only one role's details are held in memory
+     */
+    static void assembleByRole(Iterator<Role> roles,
+                               Iterator<? extends ProgramGrantRow> programRows,
+                               Iterator<? extends FormGrantRow> formRows,
+                               Consumer<RoleWithProgramsDto> sink) {
+        RowCursor<? extends ProgramGrantRow> programCursor = new RowCursor<>(programRows);
+        RowCursor<? extends FormGrantRow> formCursor = new RowCursor<>(formRows);
+
+        while (roles.hasNext()) {
+            Role r = roles.next();
+            RoleDetailsAssembler assembler = new RoleDetailsAssembler().addRole(r.getName());
+            while (programCursor.advanceTo(r.getId())) assembler.addProgramGrant(programCursor.next());
+            while (formCursor.advanceTo(r.getId())) assembler.addFormGrant(formCursor.next());
+            sink.accept(assembler.build().get(0));
+        }
+    }
+
+    private ProgramEntry program(ProgramGrantRow row) {
+        return roles.computeIfAbsent(row.getRoleName(), r -> new TreeMap<>())
+                .computeIfAbsent(row.getProgramId(), id -> new ProgramEntry(row.getProgramId(), row.getProgramName()));
+    }
+
+    /**
+     * Peeking iterator over role id ordered grant rows
+     */
+    private static class RowCursor<T extends ProgramGrantRow> {
+        final Iterator<T> rows;
+        T next;
+
+        RowCursor(Iterator<T> rows) {
+            this.rows = rows;
+            this.next = rows.hasNext() ? rows.next() : null;
+        }
+
+        /**
+         * Skips any rows of roles before the given one, true if the next row belongs to the given role
+         */
+        boolean advanceTo(Long roleId) {
+            while (next != null && next.getRoleId() < roleId) next();
+            return next != null && next.getRoleId().equals(roleId);
+        }
+
+        T next() {
+            T current = next;
+            next = rows.hasNext() ? rows.next() : null;
+            return current;
+        }
+    }
+
+    private static class FormEntry {
+        final Long id;
+        final String name;
+        final Map<String, List<String>> roleMappings = new HashMap<>();
+
+        FormEntry(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        void addFunction(String roleName, String functionName) {
+            roleMappings.computeIfAbsent(roleName, r -> new ArrayList<>()).add(functionName);
+        }
+
+        FormDto toFormDto() {
+            return FormDto.builder().id(id).name(name).roleMappings(roleMappings).build();
+        }
+    }
+
+    private static class ProgramEntry extends FormEntry {
+        final Map<Long, FormEntry> forms = new TreeMap<>();
+
+        ProgramEntry(Long id, String name) {
+            super(id, name);
+        }
+
+        ProgramDto toProgramDto() {
+            return ProgramDto.builder()
+                    .id(id)
+                    .name(name)
+                    .forms(forms.values().stream().map(FormEntry::toFormDto).toList())
+                    .roleMappings(roleMappings)
+                    .securityFunctions(List.of())
+                    .build();
+        }
+    }
+}
@@ -1,15 +1,26 @@
 package com.example.mapp.service;
 
+import com.example.mapp.dto.DecisionCacheStatsDto;
+import com.example.mapp.dto.EffectivePermissionsReportDto;
 import com.example.mapp.dto.FormDto;
+import com.example.mapp.dto.MappingImportResultDto;
+import com.example.mapp.dto.PermissionSnapshotExportDto;
+import com.example.mapp.dto.PermissionTargetDto;
+import com.example.mapp.dto.PermissionTargetResultDto;
+import com.example.mapp.dto.ProgramListDto;
+import com.example.mapp.dto.RoleListDto;
 import com.example.mapp.dto.ProgramDto;
 import com.example.mapp.dto.RoleWithProgramsDto;
+import com.example.mapp.dto.RoleWithProgramsListDto;
 import com.example.mapp.dto.SecurityFunctionDto;
+import com.example.mapp.dto.SecurityFunctionList;
 import com.example.mapp.model.Form;
 import com.example.mapp.model.Program;
 import com.example.mapp.model.Role;
 import com.example.mapp.model.SecurityFunction;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface RoleMappingService {
 
@@ -17,10 +28,12 @@ public interface RoleMappingService {
     Role createRoleName(String name);
     void deleteRole(String name);
     List<Role> getRoles();
+    RoleListDto getRolesPage(Long after, Integer size);
 
     // Program management
     Program createProgram(String programName);
     List<Program> getPrograms();
+    ProgramListDto mapProgramsPageToDto(Long after, Integer size);
     void deleteProgram(String programName);
     Program getProgramById(Long id);
     Program associateRoleToProgram(String programName, String roleName, List<String> functionNames);
@@ -34,13 +47,36 @@ public interface RoleMappingService {
     Program associateRoleToForm(String programName, String formName, String roleName, List<String> functionNames);
     Program removeRoleFromProgramForm(String programName, String formName, String roleName);
 
+    // Bulk
+    MappingImportResultDto importMappings(RoleWithProgramsListDto document);
+
+    // Effective permissions read model - checked against (and optionally rebuilt from) the mappings
+    EffectivePermissionsReportDto rebuildEffectivePermissions();
+    EffectivePermissionsReportDto verifyEffectivePermissions();
+
     // DTO mappers
     RoleWithProgramsDto mapRoleAndProgramsToDto(String roleName);
+    RoleWithProgramsListDto mapRolesAndProgramsPageToDto(Long after, Integer size);
+
+    // Streaming (cursor backed) mappers - hand records to the sink one at a time instead of building a list
+    void streamAllRolesAndProgramsToDto(Consumer<RoleWithProgramsDto> sink);
+    void streamProgramsToDto(Consumer<ProgramDto> sink);
     ProgramDto mapProgramToDto(Program program);
     FormDto mapFormToDto(Form form);
     SecurityFunctionDto mapSecurityFunctionToDto(SecurityFunction securityFunction);
 
     // Security function collation to resource given a role
     List<String> collateRolesToProgramAndForm(List<String> roleNames, String programName, String formName);
+    List<PermissionTargetResultDto> collateRolesToTargets(List<String> roleNames, List<PermissionTargetDto> targets);
+
+    // ...and as functionOrdinals, with the revision of the program's function table they index
+    SecurityFunctionList collateRoleOrdinalsToProgramAndForm(List<String> roleNames, String programName, String formName);
+    List<PermissionTargetResultDto> collateRoleOrdinalsToTargets(List<String> roleNames, List<PermissionTargetDto> targets);
+
+    DecisionCacheStatsDto getDecisionCacheStats();
+    PermissionSnapshotExportDto exportPermissionSnapshot();
+
+    // Revisions - the global one moves with every change (a program's own with every change to it)
+    long getMappingRevision();
 
 }
@@ -1,23 +1,63 @@
 package com.example.mapp.service;
 
+import com.example.mapp.cache.PermissionDecisionCache;
+import com.example.mapp.cache.PermissionDecisionCache.DecisionKey;
+import com.example.mapp.dto.DecisionCacheStatsDto;
+import com.example.mapp.dto.EffectivePermissionsReportDto;
 import com.example.mapp.dto.FormDto;
+import com.example.mapp.dto.MappingImportResultDto;
+import com.example.mapp.dto.PermissionSnapshotExportDto;
+import com.example.mapp.dto.PermissionTargetDto;
+import com.example.mapp.dto.PermissionTargetResultDto;
+import com.example.mapp.dto.ProgramListDto;
+import com.example.mapp.dto.RoleListDto;
 import com.example.mapp.dto.ProgramDto;
 import com.example.mapp.dto.RoleWithProgramsDto;
+import com.example.mapp.dto.RoleWithProgramsListDto;
 import com.example.mapp.dto.SecurityFunctionDto;
+import com.example.mapp.dto.SecurityFunctionList;
+import com.example.mapp.engine.CollatedOrdinals;
+import com.example.mapp.engine.PermissionEngine;
+import com.example.mapp.engine.PermissionSnapshot;
+import com.example.mapp.engine.PermissionSnapshotCompiler;
+import com.example.mapp.event.MappingChangeEvent.Kind;
+import com.example.mapp.event.MappingChangePublisher;
 import com.example.mapp.exception.ConflictException;
 import com.example.mapp.exception.NotFoundException;
 import com.example.mapp.model.*;
+import com.example.mapp.model.util.NormalizedName;
+import com.example.mapp.querybudget.QueryBudget;
+import com.example.mapp.repository.EffectivePermissionRepository;
+import com.example.mapp.repository.FormRepository;
+import com.example.mapp.repository.MappingRevisionRepository;
 import com.example.mapp.repository.ProgramRepository;
 import com.example.mapp.repository.RoleFunctionFormMappingRepository;
 import com.example.mapp.repository.RoleFunctionMappingRepository;
 import com.example.mapp.repository.RoleRepository;
+import com.example.mapp.repository.SecurityFunctionRepository;
+import com.example.mapp.repository.projection.FormGrantRow;
+import com.example.mapp.repository.projection.ProgramGrantRow;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed("mapp.service")
 public class RoleMappingServiceImpl implements RoleMappingService {
 
     @Autowired
@@ -26,23 +66,69 @@ public class RoleMappingServiceImpl implements RoleMappingService {
     @Autowired
     RoleRepository roleRepository;
 
+    @Autowired
+    FormRepository formRepository;
+
+    @Autowired
+    SecurityFunctionRepository securityFunctionRepository;
+
     @Autowired
     RoleFunctionMappingRepository roleFunctionMappingRepository;
 
     @Autowired
     RoleFunctionFormMappingRepository roleFunctionFormMappingRepository;
 
+    @Autowired
+    MappingChangePublisher mappingChangePublisher;
+
+    @Autowired
+    PermissionDecisionCache permissionDecisionCache;
+
+    @Autowired
+    PermissionEngine permissionEngine;
+
+    @Autowired
+    PermissionSnapshotCompiler permissionSnapshotCompiler;
+
+    @Autowired
+    MappingImporter mappingImporter;
+
+    @Autowired
+    EffectivePermissionRepository effectivePermissionRepository;
+
+    @Autowired
+    EffectivePermissionMaintainer effectivePermissionMaintainer;
+
+    @Autowired
+    MappingRevisionRepository mappingRevisionRepository;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Value("${mapp.paging.default-size:100}")
+    int defaultPageSize;
+
+    @Value("${mapp.paging.max-size:1000}")
+    int maxPageSize;
+
+    // names are stored uppercased and are the natural ids - these resolve from the second level cache
 
     private Program getProgramByName(String programName) {
-        return programRepository.findByName(programName.toUpperCase())
+        return programRepository.findBySimpleNaturalId(NormalizedName.normalize(programName))
                 .orElseThrow(() -> new NotFoundException("Pgm Name not found"));
     }
 
+    private Optional<Role> findRoleByName(String roleName) {
+        return roleRepository.findBySimpleNaturalId(NormalizedName.normalize(roleName));
+    }
+
     @Override
     @Transactional
     public Program createProgram(String programName) {
-        if (!programRepository.existsByNameIgnoreCase(programName)) {
-            return programRepository.save(Program.builder().name(programName).build());
+        if (programRepository.findBySimpleNaturalId(NormalizedName.normalize(programName)).isEmpty()) {
+            Program p = programRepository.save(Program.builder().name(programName).build());
+            mappingChangePublisher.publish(Kind.PROGRAM_CREATED, programName, null, null);
+            return p;
         } else {
             throw new ConflictException("Program name already exists");
         }
@@ -54,21 +140,44 @@ public class RoleMappingServiceImpl implements RoleMappingService {
     }
 
     @Override
+    @Transactional
+    public ProgramListDto mapProgramsPageToDto(Long after, Integer size) {
+        Page<Program> page = fetchPage(after, size, programRepository::findByIdGreaterThanOrderByIdAsc, Program::getId);
+
+        // the page's forms, functions and mappings are batch fetched (see hibernate.default_batch_fetch_size)
+        // as they're first touched - a fixed number of queries per page rather than a few per program
+        return ProgramListDto.builder()
+                .programs(page.items().stream().map(this::mapProgramToDto).toList())
+                .nextCursor(page.nextCursor())
+                .build();
+    }
+
+    @Override
+    @Transactional
     public void deleteProgram(String programName) {
         Program p = this.getProgramByName(programName);
+        effectivePermissionMaintainer.programRemoved(p);
         programRepository.deleteById(p.getId());
+        mappingChangePublisher.publish(Kind.PROGRAM_DELETED, programName, null, null);
     }
 
     @Override
+    @Transactional
     public Role createRoleName(String name) {
-        return roleRepository.save(Role.builder().name(name.toUpperCase()).build());
+        if (this.findRoleByName(name).isPresent()) throw new ConflictException("Role name already exists");
+
+        Role r = roleRepository.save(Role.builder().name(name).build());
+        mappingChangePublisher.publish(Kind.ROLE_CREATED, null, null, name);
+        return r;
     }
 
     @Override
+    @Transactional
     public void deleteRole(String name) {
-        Role r = roleRepository.findByNameIgnoreCase(name)
-                .orElseThrow(() -> new NotFoundException("Role not found"));
+        Role r = this.findRoleByName(name).orElseThrow(() -> new NotFoundException("Role not found"));
+        effectivePermissionMaintainer.roleRemoved(r);
         roleRepository.deleteById(r.getId());
+        mappingChangePublisher.publish(Kind.ROLE_DELETED, null, null, name);
     }
 
     @Override
@@ -76,6 +185,30 @@ public class RoleMappingServiceImpl implements RoleMappingService {
         return roleRepository.findAll();
     }
 
+    @Override
+    public RoleListDto getRolesPage(Long after, Integer size) {
+        Page<Role> page = fetchPage(after, size, roleRepository::findByIdGreaterThanOrderByIdAsc, Role::getId);
+        return RoleListDto.builder().roles(page.items()).nextCursor(page.nextCursor()).build();
+    }
+
+    private record Page<T>(List<T> items, Long nextCursor) {
+    }
+
+    /**
+     * Fetches one keyset page (plus one to tell whether there's another page after it)
+     */
+    private <T> Page<T> fetchPage(Long after,
+                                  Integer size,
+                                  BiFunction<Long, Limit, List<T>> query,
+                                  Function<T, Long> id) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        List<T> items = query.apply(after == null ? 0L : after, Limit.of(pageSize + 1));
+        if (items.size() <= pageSize) return new Page<>(items, null);
+
+        items = items.subList(0, pageSize);
+        return new Page<>(items, id.apply(items.get(pageSize - 1)));
+    }
+
     @Override
     @Transactional
     public Program getProgramById(Long id) {
@@ -83,113 +216,205 @@ public class RoleMappingServiceImpl implements RoleMappingService {
     }
 
     @Override
+    @Transactional
     public Program associateRoleToProgram(String programName, String roleName, List<String> functionNames) {
+        Program p = this.getProgramByName(programName);
+        Collection<SecurityFunction> funcs = this.ensureSecurityFunctions(p, programName, functionNames);
 
-        // make sure the program has the security functions defined
-        Program p = this.addSecurityFunctionsToProgram(programName, functionNames);
-
-        // pull the role and functionNames (create if not present - a good/bad idea?)
-        Role r = roleRepository.findByNameIgnoreCase(roleName)
-                .orElseGet(() -> roleRepository.save(Role.builder().name(roleName).build()));
-
-        // get the program's security functions we're concerned with
-        List<SecurityFunction> funcs = p.getSecurityFunctions()
-                .stream()
-                .filter(f -> functionNames.stream().map(String::toUpperCase).toList().contains(f.getName()))
-                .toList();
+        // pull the role (create if not present - a good/bad idea?)
+        Role r = this.findRoleByName(roleName).orElseGet(() -> this.createRoleName(roleName));
 
-        // map the role to the program with said security functions
-        p.getRoleFunctionMappings().removeIf(item -> item.getRole().equals(r) && item.getProgram().equals(p));
-        funcs.forEach(f -> p.getRoleFunctionMappings()
-                .add(RoleFunctionMapping.builder()
+        // only the grants that differ from the role's current ones on the program are written
+        boolean changed = this.applyGrants(roleFunctionMappingRepository.findAllByProgramAndRole(p, r),
+                funcs,
+                RoleFunctionMapping::getSecurityFunction,
+                f -> RoleFunctionMapping.builder()
                         .id(new RoleFunctionMapping.RoleFunctionMappingId(p.getId(), r.getId(), f.getId()))
                         .role(r)
                         .program(p)
                         .securityFunction(f)
-                        .build()));
+                        .build(),
+                p.getRoleFunctionMappings());
 
-        return programRepository.save(p);
+        if (changed) {
+            effectivePermissionMaintainer.programGrantsChanged(p, r, funcs);
+            mappingChangePublisher.publish(Kind.ROLE_MAPPED_TO_PROGRAM, programName, null, roleName);
+        }
+        return p;
     }
 
     @Override
+    @Transactional
     public Program addSecurityFunctionsToProgram(String programName, List<String> functionNames) {
         Program p = this.getProgramByName(programName);
+        this.ensureSecurityFunctions(p, programName, functionNames);
+        return p;
+    }
 
-        p.getSecurityFunctions()
-                .addAll(functionNames.stream()
-                        .map(name -> SecurityFunction.builder().name(name).programId(p.getId()).build())
-                        .toList());
+    /**
+     * Gets the program's security functions with the given names, defining the ones it doesn't have yet - only
+     * those functions are read, not all the program's
+     */
+    private Collection<SecurityFunction> ensureSecurityFunctions(Program p, String programName, List<String> functionNames) {
+        Map<String, SecurityFunction> funcs = new HashMap<>();
+        functionNames.forEach(name -> funcs.put(NormalizedName.normalize(name), null));
+        if (funcs.isEmpty()) return List.of();
+
+        securityFunctionRepository.findAllByProgramIdAndNameIn(p.getId(), funcs.keySet())
+                .forEach(f -> funcs.put(f.getName(), f));
+
+        List<String> missing = funcs.keySet().stream().filter(name -> funcs.get(name) == null).toList();
+        for (String name : missing) {
+            SecurityFunction f = SecurityFunction.builder().name(name).programId(p.getId()).program(p).build();
+            entityManager.persist(f);
+            if (Hibernate.isInitialized(p.getSecurityFunctions())) p.addSecurityFunction(f);
+            funcs.put(name, f);
+        }
 
-        return programRepository.save(p);
+        if (!missing.isEmpty()) mappingChangePublisher.publish(Kind.SECURITY_FUNCTIONS_ADDED, programName, null, null);
+        return funcs.values();
+    }
+
+    /**
+     * Brings a role's grants at one level (the program, or one of its forms) in line with the requested security
+     * functions - only the grants being added or taken away are written, so the cost is the size of the change
+     * rather than of the program
+     */
+    private <M> boolean applyGrants(List<M> current,
+                                    Collection<SecurityFunction> requested,
+                                    Function<M, SecurityFunction> functionOf,
+                                    Function<SecurityFunction, M> newGrant,
+                                    Set<M> owningCollection) {
+        // once the current grants are taken out, what's left of the requested functions is what's new
+        Set<SecurityFunction> added = new HashSet<>(requested);
+        List<M> removed = current.stream().filter(m -> !added.remove(functionOf.apply(m))).toList();
+        return this.writeGrants(removed, added.stream().map(newGrant).toList(), owningCollection);
+    }
+
+    /**
+     * Deletes and inserts just the given grants.  The owning collection is kept in step if it's already loaded (it's
+     * never loaded just for this), and the writes are flushed so a later load of it sees them too.
+     *
+     * @return whether anything was written
+     */
+    private <M> boolean writeGrants(List<M> removed, List<M> added, Set<M> owningCollection) {
+        if (removed.isEmpty() && added.isEmpty()) return false;
+
+        boolean loaded = Hibernate.isInitialized(owningCollection);
+        for (M grant : removed) {
+            if (loaded) owningCollection.remove(grant);
+            entityManager.remove(grant);
+        }
+        for (M grant : added) {
+            entityManager.persist(grant);
+            if (loaded) owningCollection.add(grant);
+        }
+
+        entityManager.flush();
+        return true;
     }
 
     @Override
+    @Transactional
     public Program removeSecurityFunctionFromProgram(String programName, String functionName) {
         Program p = getProgramByName(programName);
-        SecurityFunction sf = p.getSecurityFunctions()
-                .stream()
-                .filter(f -> f.getName().equals(functionName.toUpperCase()))
-                .findFirst()
+        SecurityFunction sf = securityFunctionRepository
+                .findByNaturalId(Map.of("name", NormalizedName.normalize(functionName), "programId", p.getId()))
                 .orElseThrow(() -> new NotFoundException("Security Function not found"));
 
-        // remove all presence of this SecFunc
-        p.getRoleFunctionMappings().removeIf(f -> f.getSecurityFunction().equals(sf));
-        p.getForms()
-                .forEach(frm -> frm.getRoleFunctionFormMappings()
-                        .removeIf(rffm -> rffm.getSecurityFunction().equals(sf)));
-        p.getSecurityFunctions().removeIf(f -> f.equals(sf));
-
-        return programRepository.save(p);
+        // remove all presence of this SecFunc - its grants are found with a query per level rather than by loading
+        // the program's and every form's mappings (only collections already loaded need to be kept in step)
+        List<RoleFunctionMapping> programGrants = roleFunctionMappingRepository.findAllBySecurityFunction(sf);
+        if (Hibernate.isInitialized(p.getRoleFunctionMappings())) programGrants.forEach(p.getRoleFunctionMappings()::remove);
+        roleFunctionMappingRepository.deleteAll(programGrants);
+
+        List<RoleFunctionFormMapping> formGrants = roleFunctionFormMappingRepository.findAllBySecurityFunction(sf);
+        formGrants.stream()
+                .filter(rffm -> Hibernate.isInitialized(rffm.getForm().getRoleFunctionFormMappings()))
+                .forEach(rffm -> rffm.getForm().getRoleFunctionFormMappings().remove(rffm));
+        roleFunctionFormMappingRepository.deleteAll(formGrants);
+
+        if (Hibernate.isInitialized(p.getSecurityFunctions())) p.getSecurityFunctions().remove(sf.getName());
+        securityFunctionRepository.delete(sf);
+
+        Program saved = programRepository.save(p);
+        effectivePermissionMaintainer.refreshPrograms(List.of(p.getId()), true);
+        mappingChangePublisher.publish(Kind.SECURITY_FUNCTION_REMOVED, programName, null, null);
+        return saved;
     }
 
     @Override
+    @Transactional
     public Program removeRoleFromProgram(String programName, String roleName) {
         Program p = getProgramByName(programName);
-        p.getRoleFunctionMappings().removeIf(rfm -> rfm.getRole().getName().equals(roleName.toUpperCase()));
-        return programRepository.save(p);
+        Optional<Role> r = this.findRoleByName(roleName);
+        List<RoleFunctionMapping> grants = r
+                .map(role -> roleFunctionMappingRepository.findAllByProgramAndRole(p, role))
+                .orElse(List.of());
+
+        boolean changed = this.writeGrants(grants, List.of(), p.getRoleFunctionMappings());
+
+        if (changed) {
+            effectivePermissionMaintainer.programGrantsChanged(p, r.get(), List.of());
+            mappingChangePublisher.publish(Kind.ROLE_REMOVED_FROM_PROGRAM, programName, null, roleName);
+        }
+        return p;
     }
 
     @Override
+    @Transactional
     public Program addFormToProgram(String programName, String formName) {
         Program p = this.getProgramByName(programName);
-        p.getForms().add(Form.builder().name(formName).owner(p).build());
-        return programRepository.save(p);
+        this.findOrAddForm(p, programName, formName);
+        return p;
+    }
+
+    /**
+     * Looks up just the one form of the program, adding it if the program doesn't have it yet
+     */
+    private Form findOrAddForm(Program p, String programName, String formName) {
+        return formRepository.findByOwnerAndName(p, NormalizedName.normalize(formName)).orElseGet(() -> {
+            Form f = Form.builder().name(formName).owner(p).build();
+            entityManager.persist(f);
+            if (Hibernate.isInitialized(p.getForms())) p.addForm(f);
+            effectivePermissionMaintainer.formAdded(p, f);
+            mappingChangePublisher.publish(Kind.FORM_ADDED, programName, formName, null);
+            return f;
+        });
     }
 
     @Override
+    @Transactional
     public Program removeFormFromProgram(String programName, String formName) {
         Program p = getProgramByName(programName);
-        p.getForms().removeIf(f -> f.getName().equals(formName.toUpperCase()));
+        p.getFormNamed(NormalizedName.of(formName)).ifPresent(f -> {
+            effectivePermissionMaintainer.formRemoved(p, f);
+            p.getForms().remove(f.getName());
+            mappingChangePublisher.publish(Kind.FORM_REMOVED, programName, formName, null);
+        });
         return programRepository.save(p);
     }
 
     @Override
+    @Transactional
     public Program associateRoleToForm(String programName,
                                        String formName,
                                        String roleName,
                                        List<String> functionNames) {
-        // make sure the program has the security functions defined
-        Program p = this.addSecurityFunctionsToProgram(programName, functionNames);
+        Program p = this.getProgramByName(programName);
+        Collection<SecurityFunction> funcs = this.ensureSecurityFunctions(p, programName, functionNames);
 
         // create FORM id on the fly?  good or bad idea??
-        Form theForm = p.getFormNamed(formName)
-                .orElseGet(() -> (this.addFormToProgram(programName, formName).getFormNamed(formName)).orElseThrow());
+        Form theForm = this.findOrAddForm(p, programName, formName);
 
-        // pull the role and functionNames (create if not present - a good/bad idea?)
-        Role r = roleRepository.findByNameIgnoreCase(roleName)
-                .orElseGet(() -> roleRepository.save(Role.builder().name(roleName).build()));
+        // pull the role (create if not present - a good/bad idea?)
+        Role r = this.findRoleByName(roleName).orElseGet(() -> this.createRoleName(roleName));
 
-        // get the program's security functions we're concerned with
-        List<SecurityFunction> funcs = p.getSecurityFunctions()
-                .stream()
-                .filter(func -> functionNames.stream().map(String::toUpperCase).toList().contains(func.getName()))
-                .toList();
-
-        // map the role to the form with said security functions
-        theForm.getRoleFunctionFormMappings()
-                .removeIf(item -> item.getRole().equals(r) && item.getForm().equals(theForm));
-        funcs.forEach(func -> theForm.getRoleFunctionFormMappings()
-                .add(RoleFunctionFormMapping.builder()
+        // only the grants that differ from the role's current ones on the form are written
+        boolean changed = this.applyGrants(roleFunctionFormMappingRepository.findAllByFormAndRoleAndProgram(theForm, r, p),
+                funcs,
+                RoleFunctionFormMapping::getSecurityFunction,
+                func -> RoleFunctionFormMapping.builder()
                         .id(new RoleFunctionFormMapping.RoleFunctionFormMappingId(p.getId(),
                                 r.getId(),
                                 func.getId(),
@@ -198,59 +423,105 @@ public class RoleMappingServiceImpl implements RoleMappingService {
                         .program(p)
                         .securityFunction(func)
                         .form(theForm)
-                        .build()));
+                        .build(),
+                theForm.getRoleFunctionFormMappings());
 
-        return programRepository.save(p);
+        if (changed) {
+            effectivePermissionMaintainer.formGrantsChanged(p, theForm, r, funcs);
+            mappingChangePublisher.publish(Kind.ROLE_MAPPED_TO_FORM, programName, formName, roleName);
+        }
+        return p;
     }
 
     @Override
+    @Transactional
     public Program removeRoleFromProgramForm(String programName, String formName, String roleName) {
         Program p = getProgramByName(programName);
-        Form f = p.getFormNamed(formName).orElseThrow(() -> new NotFoundException("Form not found"));
-        f.getRoleFunctionFormMappings().removeIf(rffm -> rffm.getRole().getName().equals(roleName.toUpperCase()));
-        return programRepository.save(p);
+        Form f = formRepository.findByOwnerAndName(p, NormalizedName.normalize(formName))
+                .orElseThrow(() -> new NotFoundException("Form not found"));
+        Optional<Role> r = this.findRoleByName(roleName);
+        List<RoleFunctionFormMapping> grants = r
+                .map(role -> roleFunctionFormMappingRepository.findAllByFormAndRoleAndProgram(f, role, p))
+                .orElse(List.of());
+
+        boolean changed = this.writeGrants(grants, List.of(), f.getRoleFunctionFormMappings());
+
+        if (changed) {
+            effectivePermissionMaintainer.formGrantsChanged(p, f, r.get(), List.of());
+            mappingChangePublisher.publish(Kind.ROLE_REMOVED_FROM_FORM, programName, formName, roleName);
+        }
+        return p;
+    }
+
+    @Override
+    @Transactional
+    public MappingImportResultDto importMappings(RoleWithProgramsListDto document) {
+        MappingImportResultDto result = mappingImporter.importMappings(document);
+        mappingChangePublisher.publish(Kind.MAPPINGS_IMPORTED, null, null, null);
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public EffectivePermissionsReportDto rebuildEffectivePermissions() {
+        return effectivePermissionMaintainer.rebuild(true);
+    }
+
+    @Override
+    @Transactional
+    public EffectivePermissionsReportDto verifyEffectivePermissions() {
+        return effectivePermissionMaintainer.rebuild(false);
     }
 
     @Override
+    @QueryBudget(3)
     public RoleWithProgramsDto mapRoleAndProgramsToDto(String roleName) {
-        List<Program> allPrograms = programRepository.findAll();
-        List<Program> returnList = new ArrayList<>();
-        Role r = roleRepository.findByNameIgnoreCase(roleName).orElseThrow();
-
-        // go through all programs and filter out other roles besides roleName
-        for (Program p : allPrograms) {
-            Set<Form> forms = p.getForms();
-            Set<Form> filteredForms = new HashSet<>();
-            Set<RoleFunctionMapping> roleList = new HashSet<>(roleFunctionMappingRepository.findAllByProgramAndRole(p,
-                    r));
-
-            for (Form f : forms) {
-                var result = roleFunctionFormMappingRepository.findAllByFormAndRoleAndProgram(f, r, p);
-                if (!result.isEmpty()) {
-                    filteredForms.add(Form.builder()
-                            .name(f.getName())
-                            .id(f.getId())
-                            .owner(p)
-                            .roleFunctionFormMappings(new HashSet<>(result))
-                            .build());
-                }
-            }
+        Role r = this.findRoleByName(roleName).orElseThrow();
+
+        // one query per mapping level, grouped into programs/forms in memory
+        RoleDetailsAssembler assembler = new RoleDetailsAssembler().addRole(r.getName());
+        roleFunctionMappingRepository.findGrantRowsByRole(r).forEach(assembler::addProgramGrant);
+        roleFunctionFormMappingRepository.findGrantRowsByRole(r).forEach(assembler::addFormGrant);
 
-            // if this program has some association to given role, include it in the return
-            if (!filteredForms.isEmpty() || !roleList.isEmpty()) returnList.add(Program.builder()
-                    .id(p.getId())
-                    .name(p.getName())
-                    .forms(filteredForms)
-                    .roleFunctionMappings(roleList)
-                    .build());
+        return assembler.build().get(0);
+    }
+
+    @Override
+    @QueryBudget(3)
+    public RoleWithProgramsListDto mapRolesAndProgramsPageToDto(Long after, Integer size) {
+        Page<Role> page = fetchPage(after, size, roleRepository::findByIdGreaterThanOrderByIdAsc, Role::getId);
+
+        RoleDetailsAssembler assembler = new RoleDetailsAssembler();
+        page.items().forEach(r -> assembler.addRole(r.getName()));
+        if (!page.items().isEmpty()) {
+            roleFunctionMappingRepository.findGrantRowsByRoles(page.items()).forEach(assembler::addProgramGrant);
+            roleFunctionFormMappingRepository.findGrantRowsByRoles(page.items()).forEach(assembler::addFormGrant);
         }
 
+        return RoleWithProgramsListDto.builder().roles(assembler.build()).nextCursor(page.nextCursor()).build();
+    }
 
-        return RoleWithProgramsDto.builder()
-                .roleName(roleName.toUpperCase())
-                .programs(returnList.stream().map(this::mapProgramToDto).toList())
-                .build();
+    @Override
+    @Transactional
+    public void streamAllRolesAndProgramsToDto(Consumer<RoleWithProgramsDto> sink) {
+        try (Stream<Role> roles = roleRepository.streamAllByOrderByIdAsc();
+             Stream<ProgramGrantRow> programRows = roleFunctionMappingRepository.streamAllGrantRows();
+             Stream<FormGrantRow> formRows = roleFunctionFormMappingRepository.streamAllGrantRows()) {
+            RoleDetailsAssembler.assembleByRole(roles.iterator(), programRows.iterator(), formRows.iterator(), sink);
+        }
+    }
 
+    @Override
+    @Transactional
+    public void streamProgramsToDto(Consumer<ProgramDto> sink) {
+        try (Stream<Program> programs = programRepository.streamAllByOrderByIdAsc()) {
+            programs.forEach(p -> {
+                sink.accept(this.mapProgramToDto(p));
+
+                // detach (cascades to its forms/mappings/functions) so the persistence context doesn't grow
+                entityManager.detach(p);
+            });
+        }
     }
 
     @Override
@@ -259,9 +530,15 @@ public class RoleMappingServiceImpl implements RoleMappingService {
         return ProgramDto.builder()
                 .id(program.getId())
                 .name(program.getName())
-                .forms(program.getForms().stream().map(this::mapFormToDto).toList())
+                .forms(program.getForms().values().stream().map(this::mapFormToDto).toList())
                 .roleMappings(groupedRoles)
-                .securityFunctions(program.getSecurityFunctions().stream().map(f -> f.getName()).toList())
+                // in id order - the order functionOrdinals index them in
+                .securityFunctions(program.getSecurityFunctions()
+                        .values()
+                        .stream()
+                        .sorted(Comparator.comparing(SecurityFunction::getId))
+                        .map(f -> f.getName())
+                        .toList())
                 .build();
     }
 
@@ -299,31 +576,196 @@ public class RoleMappingServiceImpl implements RoleMappingService {
     }
 
     @Override
+    @QueryBudget(5)
     public List<String> collateRolesToProgramAndForm(List<String> roleNames, String programName, String formName) {
 
-        Set<SecurityFunction> funcs = new HashSet<>();
-        Program p = this.getProgramByName(programName);
+        if (roleNames.isEmpty()) {
+            this.getProgramByName(programName);
+            return List.of();
+        }
+
+        // decisions are cached per role and resolved from the compiled snapshot - changes this transaction hasn't
+        // committed yet aren't in either though, so then (or before the first snapshot) go to the database
+        Optional<PermissionSnapshot> snapshot = mappingChangePublisher.hasPendingChanges()
+                ? Optional.empty()
+                : permissionEngine.current();
+
+        if (snapshot.isEmpty()) return this.lookupEffectivePermissions(roleNames, programName, formName);
+
+        Set<String> funcs = new HashSet<>();
         for (String roleName : roleNames) {
-            Role r = roleRepository.findByNameIgnoreCase(roleName)
-                    .orElseThrow(() -> new NotFoundException("Role not found"));
-            var programRoleFuncList = roleFunctionMappingRepository.findAllByProgramAndRole(p, r);
-
-            List<RoleFunctionFormMapping> formList = new ArrayList<>();
-            if (formName != null) {
-                Form f = p.getFormNamed(formName).orElseThrow(() -> new NotFoundException("Form not found"));
-                formList.addAll(roleFunctionFormMappingRepository.findAllByFormAndRoleAndProgram(f, r, p));
+            funcs.addAll(permissionDecisionCache.get(DecisionKey.of(programName, formName, roleName), this::resolveDecision));
+        }
+
+        return List.copyOf(funcs);
+    }
+
+    /**
+     * Reads the roles' rows of the effective permissions read model - a single indexed lookup, however the grants
+     * are split between the program and its forms.  The rows are maintained by the transaction making the change, so
+     * they already include changes it hasn't committed.
+     */
+    private List<String> lookupEffectivePermissions(List<String> roleNames, String programName, String formName) {
+        Set<String> names = new HashSet<>(roleNames.stream().map(NormalizedName::normalize).toList());
+        List<Role> roles = roleRepository.findAllByNameIn(names);
+        if (roles.size() != names.size()) throw new NotFoundException("Role not found");
+
+        Program p = this.getProgramByName(programName);
+        Long formId = formName == null
+                ? EffectivePermission.PROGRAM_LEVEL
+                : formRepository.findByOwnerAndName(p, NormalizedName.normalize(formName))
+                        .orElseThrow(() -> new NotFoundException("Form not found"))
+                        .getId();
+
+        Set<Long> functionIds = new HashSet<>();
+        effectivePermissionRepository.findFunctionIds(p.getId(), formId, roles.stream().map(Role::getId).toList())
+                .forEach(ids -> functionIds.addAll(EffectivePermission.decode(ids)));
+        if (functionIds.isEmpty()) return List.of();
+
+        // the functions themselves resolve from the second level cache
+        return entityManager.unwrap(Session.class)
+                .byMultipleIds(SecurityFunction.class)
+                .multiLoad(List.copyOf(functionIds))
+                .stream()
+                .map(SecurityFunction::getName)
+                .toList();
+    }
+
+    /**
+     * Resolves the security functions a single role has on a program (or form within it) from the compiled
+     * snapshot - read inside the cache's load so it's never older than the last invalidation
+     */
+    private List<String> resolveDecision(DecisionKey key) {
+        return permissionEngine.current()
+                .orElseThrow()
+                .collate(List.of(key.roleName()), key.programName(), key.formName());
+    }
+
+    @Override
+    @QueryBudget(5)
+    public List<PermissionTargetResultDto> collateRolesToTargets(List<String> roleNames,
+                                                                 List<PermissionTargetDto> targets) {
+        Set<String> roles = new HashSet<>(roleNames.stream().map(NormalizedName::normalize).toList());
+
+        // resolve everything from the compiled snapshot if we can, otherwise prefetch all that's needed in one go
+        Optional<PermissionSnapshot> snapshot = mappingChangePublisher.hasPendingChanges()
+                ? Optional.empty()
+                : permissionEngine.current();
+
+        GrantCollator collator;
+        if (snapshot.isPresent()) {
+            if (!roles.stream().allMatch(snapshot.get()::hasRole)) throw new NotFoundException("Role not found");
+            collator = snapshot.get()::collate;
+        } else {
+            collator = this.prefetchGrants(roles, targets)::collate;
+        }
+
+        return targets.stream().map(t -> {
+            var result = PermissionTargetResultDto.builder().programName(t.getProgramName()).formName(t.getFormName());
+            try {
+                return result.securityFunctions(collator.collate(roles, t.getProgramName(), t.getFormName())).build();
+            } catch (NotFoundException e) {
+                return result.error(e.getMessage()).build();
             }
+        }).toList();
+    }
+
+    @Override
+    @Transactional
+    public SecurityFunctionList collateRoleOrdinalsToProgramAndForm(List<String> roleNames, String programName, String formName) {
+        CollatedOrdinals collated = this.ordinalsSnapshot(List.of(programName), roleNames)
+                .collateOrdinals(roleNames, programName, formName);
+        return SecurityFunctionList.builder()
+                .securityFunctionOrdinals(collated.ordinals())
+                .programRevision(collated.programRevision())
+                .build();
+    }
 
-            // if the form level list of security functions is present for given role
-            // then prefer that OVER the program level one
-            if (formList.isEmpty()) {
-                funcs.addAll(programRoleFuncList.stream().map(m -> m.getSecurityFunction()).toList());
-            } else {
-                funcs.addAll(formList.stream().map(m -> m.getSecurityFunction()).toList());
+    @Override
+    @Transactional
+    public List<PermissionTargetResultDto> collateRoleOrdinalsToTargets(List<String> roleNames,
+                                                                        List<PermissionTargetDto> targets) {
+        PermissionSnapshot snapshot = this.ordinalsSnapshot(targets.stream().map(PermissionTargetDto::getProgramName).toList(), roleNames);
+        if (!roleNames.stream().allMatch(snapshot::hasRole)) throw new NotFoundException("Role not found");
+
+        return targets.stream().map(t -> {
+            var result = PermissionTargetResultDto.builder().programName(t.getProgramName()).formName(t.getFormName());
+            try {
+                CollatedOrdinals collated = snapshot.collateOrdinals(roleNames, t.getProgramName(), t.getFormName());
+                return result.securityFunctionOrdinals(collated.ordinals()).programRevision(collated.programRevision()).build();
+            } catch (NotFoundException e) {
+                return result.error(e.getMessage()).build();
             }
+        }).toList();
+    }
+
+    /**
+     * What ordinals are answered from - the compiled snapshot, unless this transaction has changes it doesn't have
+     * yet (or there isn't one yet), then the programs and roles asked about compiled as this transaction sees them.
+     * Either way an answer's ordinals and the program revision sent with them come from the same compiled program,
+     * so they can't disagree
+     */
+    private PermissionSnapshot ordinalsSnapshot(Collection<String> programNames, Collection<String> roleNames) {
+        Optional<PermissionSnapshot> snapshot = mappingChangePublisher.hasPendingChanges()
+                ? Optional.empty()
+                : permissionEngine.current();
+
+        return snapshot.orElseGet(() -> permissionSnapshotCompiler.compileCurrent(
+                programNames.stream().map(NormalizedName::normalize).collect(Collectors.toSet()),
+                roleNames.stream().map(NormalizedName::normalize).collect(Collectors.toSet())));
+    }
+
+    private interface GrantCollator {
+        List<String> collate(Collection<String> roleNames, String programName, String formName);
+    }
 
+    /**
+     * Loads the roles, the targeted programs, their forms and both levels of grants between them - a fixed
+     * number of queries regardless of how many targets or roles there are
+     */
+    private GrantIndex prefetchGrants(Set<String> roleNames, List<PermissionTargetDto> targets) {
+        List<Role> roles = roleRepository.findAllByNameIn(roleNames);
+        if (roles.size() != roleNames.size()) throw new NotFoundException("Role not found");
+
+        GrantIndex index = new GrantIndex();
+        List<Program> programs = programRepository.findAllByNameIn(targets.stream()
+                .map(t -> NormalizedName.normalize(t.getProgramName()))
+                .collect(Collectors.toSet()));
+        if (programs.isEmpty()) return index;
+
+        Map<String, List<String>> formNames = new HashMap<>();
+        programs.forEach(p -> formNames.put(p.getName(), new ArrayList<>()));
+        formRepository.findAllByOwnerIn(programs).forEach(f -> formNames.get(f.getOwner().getName()).add(f.getName()));
+        formNames.forEach(index::addProgram);
+
+        if (!roles.isEmpty()) {
+            roleFunctionMappingRepository.findGrantRowsByRolesAndPrograms(roles, programs).forEach(index::addProgramGrant);
+            roleFunctionFormMappingRepository.findGrantRowsByRolesAndPrograms(roles, programs).forEach(index::addFormGrant);
         }
+        return index;
+    }
 
-        return funcs.stream().map(m -> m.getName()).toList();
+    @Override
+    public long getMappingRevision() {
+        return mappingRevisionRepository.current();
+    }
+
+    @Override
+    public DecisionCacheStatsDto getDecisionCacheStats() {
+        CacheStats stats = permissionDecisionCache.stats();
+        return DecisionCacheStatsDto.builder()
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictionCount(stats.evictionCount())
+                .evictionWeight(stats.evictionWeight())
+                .estimatedSize(permissionDecisionCache.estimatedSize())
+                .weightedSize(permissionDecisionCache.weightedSize())
+                .build();
+    }
+
+    @Override
+    public PermissionSnapshotExportDto exportPermissionSnapshot() {
+        return permissionEngine.export();
     }
 }
@@ -0,0 +1,53 @@
+package com.example.mapp.virtualthreads;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * The virtual-threads profile - Tomcat (and so the controllers and the service calls they make) runs every request on
+ * its own virtual thread (spring.threads.virtual.enabled in application-virtual-threads.properties), so there's no
+ * thread pool to size any more.  What the pool's size used to limit - how many requests can be using the database
+ * at once - is limited by a {@link ConnectionLimitingDataSource} around the DataSource instead, with the pool sized
+ * to match.
+ */
+@Slf4j
+@Configuration
+@Profile("virtual-threads")
+public class VirtualThreadsConfiguration {
+
+    @Bean
+    public static BeanPostProcessor connectionLimitingDataSourcePostProcessor(Environment environment) {
+        int maxConnections = environment.getProperty("mapp.datasource.max-connections", Integer.class, 10);
+        Duration acquireTimeout = environment.getProperty("mapp.datasource.acquire-timeout", Duration.class, Duration.ofSeconds(30));
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConnectionLimitingDataSource) return bean;
+
+                if (bean instanceof HikariDataSource hikari) hikari.setMaximumPoolSize(maxConnections);
+                return new ConnectionLimitingDataSource(dataSource, maxConnections, acquireTimeout);
+            }
+        };
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkRuntime(ApplicationReadyEvent event) {
+        if (Runtime.version().feature() < 21) {
+            log.warn("The virtual-threads profile needs Java 21 or later, running on {} - requests are on platform threads", Runtime.version());
+        } else {
+            log.info("Serving requests on virtual threads, at most {} of them using the database at once",
+                    event.getApplicationContext().getEnvironment().getProperty("mapp.datasource.max-connections"));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+-- The schema as Hibernate's ddl-auto created it up to now.  Databases created that way are baselined at this
+-- version (spring.flyway.baseline-on-migrate) and only get the migrations after it.
+
+create sequence programs_seq start with 1 increment by 50;
+create sequence forms_seq start with 1 increment by 50;
+create sequence roles_seq start with 1 increment by 50;
+create sequence security_functions_seq start with 1 increment by 50;
+
+create table programs (
+    id bigint not null,
+    name varchar(255) not null,
+    constraint pk_programs primary key (id),
+    constraint uk_programs_name unique (name)
+);
+
+create table forms (
+    id bigint not null,
+    owner_id bigint,
+    name varchar(255) not null,
+    constraint pk_forms primary key (id),
+    constraint fk_forms_owner foreign key (owner_id) references programs (id)
+);
+
+create table roles (
+    id bigint not null,
+    name varchar(255) not null,
+    constraint pk_roles primary key (id),
+    constraint uk_roles_name unique (name)
+);
+
+create table security_functions (
+    id bigint not null,
+    program_id bigint not null,
+    name varchar(255) not null,
+    constraint pk_security_functions primary key (id),
+    constraint uk_security_functions_name_program unique (name, program_id),
+    constraint fk_security_functions_program foreign key (program_id) references programs (id)
+);
+
+create table role_function_mappings (
+    program_id bigint not null,
+    role_id bigint not null,
+    security_function_id bigint not null,
+    constraint pk_role_function_mappings primary key (program_id, role_id, security_function_id),
+    constraint fk_role_function_mappings_program foreign key (program_id) references programs (id),
+    constraint fk_role_function_mappings_role foreign key (role_id) references roles (id),
+    constraint fk_role_function_mappings_function foreign key (security_function_id) references security_functions (id)
+);
+
+create table role_function_form_mappings (
+    form_id bigint not null,
+    program_id bigint not null,
+    role_id bigint not null,
+    security_function_id bigint not null,
+    constraint pk_role_function_form_mappings primary key (form_id, program_id, role_id, security_function_id),
+    constraint fk_role_function_form_mappings_form foreign key (form_id) references forms (id),
+    constraint fk_role_function_form_mappings_program foreign key (program_id) references programs (id),
+    constraint fk_role_function_form_mappings_role foreign key (role_id) references roles (id),
+    constraint fk_role_function_form_mappings_function foreign key (security_function_id) references security_functions (id)
+);
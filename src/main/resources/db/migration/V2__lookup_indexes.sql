@@ -0,0 +1,17 @@
+-- Indexes for the lookups the repositories make that the primary keys and unique constraints don't cover.
+-- Name lookups are exact matches on the (always uppercased) names, served by uk_programs_name/uk_roles_name.
+
+-- grants by role (role details, collation) - the primary keys lead with program_id/form_id
+create index ix_role_function_mappings_role on role_function_mappings (role_id, program_id);
+create index ix_role_function_form_mappings_role on role_function_form_mappings (role_id, form_id, program_id);
+
+-- form grants by program (batch collation prefetch, program deletes)
+create index ix_role_function_form_mappings_program on role_function_form_mappings (program_id, role_id);
+
+-- grants by security function (removing a function), also backs its foreign keys
+create index ix_role_function_mappings_function on role_function_mappings (security_function_id);
+create index ix_role_function_form_mappings_function on role_function_form_mappings (security_function_id);
+
+-- children by owning program (lazy collection loads, batch fetches)
+create index ix_forms_owner on forms (owner_id);
+create index ix_security_functions_program on security_functions (program_id);
@@ -0,0 +1,6 @@
+-- Forms and security functions are created in bulk by the mapping import - their ids are handed out in blocks of
+-- 500 (the allocationSize on the entities, which Hibernate checks against these increments) to go with the JDBC
+-- insert batches, rather than a sequence round trip every 50 rows.
+
+alter sequence forms_seq increment by 500;
+alter sequence security_functions_seq increment by 500;
@@ -0,0 +1,20 @@
+-- Read model of the security functions each role effectively has on each program and form, with the form level
+-- override already applied (a form the role has no grant on falls back to its program grant).  Kept up to date by
+-- the service as mappings change - form_id is 0 for the program level row.
+
+create table effective_permissions (
+    role_id bigint not null,
+    program_id bigint not null,
+    form_id bigint not null,
+    function_ids varchar(100000) not null,
+    constraint pk_effective_permissions primary key (program_id, form_id, role_id),
+    constraint fk_effective_permissions_role foreign key (role_id) references roles (id),
+    constraint fk_effective_permissions_program foreign key (program_id) references programs (id)
+);
+
+-- a role's rows (removing a role, refreshing a role's rows on one program)
+create index ix_effective_permissions_role on effective_permissions (role_id, program_id);
+
+-- forms are looked up by name within their program (permission checks, mapping changes)
+create unique index uk_forms_owner_name on forms (owner_id, name);
+drop index ix_forms_owner;
@@ -0,0 +1,12 @@
+-- Revisions for conditional reads (ETags).  Every mapping change bumps the one global revision and stamps the
+-- program it changed with it - so a program's revision only moves when the program does.
+
+create table mapping_revision (
+    id integer not null,
+    revision bigint not null,
+    constraint pk_mapping_revision primary key (id)
+);
+
+insert into mapping_revision (id, revision) values (1, 0);
+
+alter table programs add column revision bigint default 0 not null;
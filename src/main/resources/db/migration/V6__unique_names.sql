@@ -0,0 +1,103 @@
+-- Program and role names are their natural ids - looked up by name, and cached by it.  V1 has them unique, but
+-- databases created by the old ddl-auto=update were baselined at V1 without it, and nothing stopped the same name
+-- being created twice there.  Duplicates are merged into the one created first (the lowest id): the grants of all of
+-- them are kept, as are the forms and security functions of a program (those with the same name merged the same way).
+
+-- each row and the row it's merged into (itself when it's the first of its name)
+create table v6_roles as
+select r.id, min(k.id) as keep_id
+from roles r join roles k on k.name = r.name
+group by r.id;
+
+create table v6_programs as
+select p.id, min(k.id) as keep_id
+from programs p join programs k on k.name = p.name
+group by p.id;
+
+create table v6_forms as
+select f.id, min(g.id) as keep_id
+from forms f
+join v6_programs fp on fp.id = f.owner_id
+join v6_programs gp on gp.keep_id = fp.keep_id
+join forms g on g.owner_id = gp.id and g.name = f.name
+group by f.id
+union all
+select id, id from forms where owner_id is null;
+
+create table v6_functions as
+select f.id, min(g.id) as keep_id
+from security_functions f
+join v6_programs fp on fp.id = f.program_id
+join v6_programs gp on gp.keep_id = fp.keep_id
+join security_functions g on g.program_id = gp.id and g.name = f.name
+group by f.id;
+
+-- grants are moved onto the rows kept (unless they're already there), then the ones left on the others dropped
+insert into role_function_mappings (program_id, role_id, security_function_id)
+select distinct p.keep_id, r.keep_id, f.keep_id
+from role_function_mappings m
+join v6_programs p on p.id = m.program_id
+join v6_roles r on r.id = m.role_id
+join v6_functions f on f.id = m.security_function_id
+where (p.keep_id <> p.id or r.keep_id <> r.id or f.keep_id <> f.id)
+  and not exists (select 1 from role_function_mappings x
+                  where x.program_id = p.keep_id and x.role_id = r.keep_id and x.security_function_id = f.keep_id);
+
+delete from role_function_mappings
+where program_id in (select id from v6_programs where keep_id <> id)
+   or role_id in (select id from v6_roles where keep_id <> id)
+   or security_function_id in (select id from v6_functions where keep_id <> id);
+
+insert into role_function_form_mappings (form_id, program_id, role_id, security_function_id)
+select distinct fm.keep_id, p.keep_id, r.keep_id, f.keep_id
+from role_function_form_mappings m
+join v6_forms fm on fm.id = m.form_id
+join v6_programs p on p.id = m.program_id
+join v6_roles r on r.id = m.role_id
+join v6_functions f on f.id = m.security_function_id
+where (fm.keep_id <> fm.id or p.keep_id <> p.id or r.keep_id <> r.id or f.keep_id <> f.id)
+  and not exists (select 1 from role_function_form_mappings x
+                  where x.form_id = fm.keep_id and x.program_id = p.keep_id
+                    and x.role_id = r.keep_id and x.security_function_id = f.keep_id);
+
+delete from role_function_form_mappings
+where form_id in (select id from v6_forms where keep_id <> id)
+   or program_id in (select id from v6_programs where keep_id <> id)
+   or role_id in (select id from v6_roles where keep_id <> id)
+   or security_function_id in (select id from v6_functions where keep_id <> id);
+
+-- the read model is emptied when anything was merged - it's rebuilt from the mappings on startup when it's empty
+delete from effective_permissions
+where exists (select 1 from v6_roles where keep_id <> id)
+   or exists (select 1 from v6_programs where keep_id <> id);
+
+-- and a merged program counts as changed, so ETags and saved permission snapshots don't carry on from before
+update mapping_revision set revision = revision + 1
+where exists (select 1 from v6_programs where keep_id <> id);
+
+update programs set revision = (select revision from mapping_revision where id = 1)
+where id in (select keep_id from v6_programs where keep_id <> id);
+
+-- the merged forms and functions go (before the kept ones move, so a program never has two of the same name) ...
+delete from security_functions where id in (select id from v6_functions where keep_id <> id);
+delete from forms where id in (select id from v6_forms where keep_id <> id);
+
+-- ... the ones kept from a merged program move to the program kept ...
+update security_functions set program_id = (select keep_id from v6_programs where v6_programs.id = security_functions.program_id)
+where program_id in (select id from v6_programs where keep_id <> id);
+
+update forms set owner_id = (select keep_id from v6_programs where v6_programs.id = forms.owner_id)
+where owner_id in (select id from v6_programs where keep_id <> id);
+
+-- ... and then the merged programs and roles have nothing left referring to them
+delete from programs where id in (select id from v6_programs where keep_id <> id);
+delete from roles where id in (select id from v6_roles where keep_id <> id);
+
+drop table v6_functions;
+drop table v6_forms;
+drop table v6_programs;
+drop table v6_roles;
+
+-- no-ops where V1 created them (Postgres names a unique constraint's index after it)
+create unique index if not exists uk_programs_name on programs (name);
+create unique index if not exists uk_roles_name on roles (name);
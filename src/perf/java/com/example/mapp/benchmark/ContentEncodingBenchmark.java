@@ -0,0 +1,139 @@
+package com.example.mapp.benchmark;
+
+import com.example.mapp.dto.FormDto;
+import com.example.mapp.dto.ProgramDto;
+import com.example.mapp.dto.RoleWithProgramsDto;
+import com.example.mapp.dto.RoleWithProgramsListDto;
+import com.example.mapp.encoding.BinaryFormatsConfiguration;
+import com.example.mapp.encoding.FunctionOrdinals;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes representative GET /programs/{id} and /rolesDetails bodies in each of the negotiated formats,
+ * with the security functions as names or as ordinals.  No Spring context - just the mappers the converters use.
+ * <p>
+ * The size of each body is printed on setup, e.g. {@code -Djmh.args="-p format=json,cbor ContentEncoding"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentEncodingBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    String format;
+
+    @Param({"false", "true"})
+    boolean functionOrdinals;
+
+    // the hot programs are the wide ones - a few dozen forms, most roles mapped on each
+    @Param({"40"})
+    int formsPerProgram;
+
+    @Param({"12"})
+    int functionsPerProgram;
+
+    @Param({"30"})
+    int roles;
+
+    ObjectMapper mapper;
+    ProgramDto program;
+    RoleWithProgramsListDto rolesDetails;
+    byte[] programBytes;
+    byte[] rolesDetailsBytes;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        mapper = switch (format) {
+            case "cbor" -> BinaryFormatsConfiguration.cborMapper(new Jackson2ObjectMapperBuilder(), true);
+            case "smile" -> BinaryFormatsConfiguration.smileMapper(new Jackson2ObjectMapperBuilder());
+            default -> new Jackson2ObjectMapperBuilder().build();
+        };
+
+        program = this.program("PGM0", roles);
+        if (functionOrdinals) program = FunctionOrdinals.encode(program);
+
+        // a role's details carry a program per mapping, with only that role's grants in it
+        List<RoleWithProgramsDto> details = new ArrayList<>();
+        for (int r = 0; r < roles; r++) {
+            List<ProgramDto> programs = new ArrayList<>();
+            for (int p = 0; p < 5; p++) {
+                ProgramDto mapped = this.program("PGM" + p, 1);
+                programs.add(functionOrdinals ? FunctionOrdinals.encode(mapped) : mapped);
+            }
+            details.add(RoleWithProgramsDto.builder().roleName(role(r)).programs(programs).build());
+        }
+        rolesDetails = RoleWithProgramsListDto.builder().roles(details).build();
+
+        programBytes = mapper.writeValueAsBytes(program);
+        rolesDetailsBytes = mapper.writeValueAsBytes(rolesDetails);
+        System.out.printf("%n%s%s: /programs/{id} %,d bytes, /rolesDetails %,d bytes%n",
+                format,
+                functionOrdinals ? " (ordinals)" : "",
+                programBytes.length,
+                rolesDetailsBytes.length);
+    }
+
+    @Benchmark
+    public byte[] encodeProgram() throws Exception {
+        return mapper.writeValueAsBytes(program);
+    }
+
+    @Benchmark
+    public ProgramDto decodeProgram() throws Exception {
+        return mapper.readValue(programBytes, ProgramDto.class);
+    }
+
+    @Benchmark
+    public byte[] encodeRolesDetails() throws Exception {
+        return mapper.writeValueAsBytes(rolesDetails);
+    }
+
+    @Benchmark
+    public RoleWithProgramsListDto decodeRolesDetails() throws Exception {
+        return mapper.readValue(rolesDetailsBytes, RoleWithProgramsListDto.class);
+    }
+
+    // every role holds about half the functions on the program and a couple on each form
+    private ProgramDto program(String name, int mappedRoles) {
+        List<String> functions = new ArrayList<>();
+        for (int f = 0; f < functionsPerProgram; f++) functions.add("FUNCTION_" + f);
+
+        List<FormDto> forms = new ArrayList<>();
+        for (int f = 0; f < formsPerProgram; f++) {
+            Map<String, List<String>> formMappings = new LinkedHashMap<>();
+            for (int r = 0; r < mappedRoles; r++) {
+                if ((r + f) % 3 == 0) formMappings.put(role(r), List.of(functions.get(f % functionsPerProgram), functions.get((f + r) % functionsPerProgram)));
+            }
+            forms.add(FormDto.builder().name("FORM" + f).roleMappings(formMappings).build());
+        }
+
+        Map<String, List<String>> roleMappings = new LinkedHashMap<>();
+        for (int r = 0; r < mappedRoles; r++) {
+            List<String> granted = new ArrayList<>();
+            for (int f = r % 2; f < functionsPerProgram; f += 2) granted.add(functions.get(f));
+            roleMappings.put(role(r), granted);
+        }
+
+        return ProgramDto.builder()
+                .name(name)
+                .forms(forms)
+                .roleMappings(roleMappings)
+                .securityFunctions(functions)
+                .build();
+    }
+
+    private static String role(int r) {
+        return "ROLE" + r;
+    }
+}
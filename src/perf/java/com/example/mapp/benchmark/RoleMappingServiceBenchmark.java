@@ -0,0 +1,165 @@
+package com.example.mapp.benchmark;
+
+import com.example.mapp.MappApplication;
+import com.example.mapp.dto.ProgramDto;
+import com.example.mapp.dto.RoleWithProgramsDto;
+import com.example.mapp.model.Program;
+import com.example.mapp.repository.ProgramRepository;
+import com.example.mapp.service.RoleMappingService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the RoleMappingServiceImpl hot paths against an in-memory H2 seeded at the parameterized scale.
+ * <p>
+ * Run with {@code ./mvnw -Pperf test-compile exec:exec} - the default jmh.args add the gc profiler
+ * (allocation rate) and write the results to target/jmh-result.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoleMappingServiceBenchmark {
+
+    @Param({"50"})
+    int programs;
+
+    @Param({"10"})
+    int formsPerProgram;
+
+    @Param({"8"})
+    int functionsPerProgram;
+
+    @Param({"20"})
+    int roles;
+
+    // number of programs each role gets mapped on (at program level and on one of its forms)
+    @Param({"10"})
+    int programsPerRole;
+
+    ConfigurableApplicationContext context;
+    RoleMappingService roleMappingService;
+    ProgramRepository programRepository;
+    TransactionTemplate tx;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(MappApplication.class)
+                .profiles("test")
+                .web(WebApplicationType.NONE)
+                // src/test/resources is on the classpath here too - budgets only warn, as they would in production
+                .run("--logging.level.root=WARN", "--mapp.query-budget.mode=warn");
+        roleMappingService = context.getBean(RoleMappingService.class);
+        programRepository = context.getBean(ProgramRepository.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        for (int p = 0; p < programs; p++) {
+            String programName = program(p);
+            tx.executeWithoutResult(s -> {
+                roleMappingService.createProgram(programName);
+                roleMappingService.addSecurityFunctionsToProgram(programName, functions(functionsPerProgram));
+                for (int f = 0; f < formsPerProgram; f++) roleMappingService.addFormToProgram(programName, form(f));
+            });
+        }
+
+        for (int r = 0; r < roles; r++) {
+            String roleName = role(r);
+            roleMappingService.createRoleName(roleName);
+            for (int k = 0; k < programsPerRole; k++) {
+                String programName = program((r * 7 + k) % programs);
+                tx.executeWithoutResult(s -> {
+                    roleMappingService.associateRoleToProgram(programName, roleName, randomFunctions());
+                    roleMappingService.associateRoleToForm(programName, randomForm(), roleName, randomFunctions());
+                });
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    static String program(int i) {
+        return "PGM" + i;
+    }
+
+    static String form(int i) {
+        return "FORM" + i;
+    }
+
+    static String role(int i) {
+        return "ROLE" + i;
+    }
+
+    static List<String> functions(int count) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) names.add("FUNC" + i);
+        return names;
+    }
+
+    String randomProgram() {
+        return program(ThreadLocalRandom.current().nextInt(programs));
+    }
+
+    String randomForm() {
+        return form(ThreadLocalRandom.current().nextInt(formsPerProgram));
+    }
+
+    String randomRole() {
+        return role(ThreadLocalRandom.current().nextInt(roles));
+    }
+
+    List<String> randomFunctions() {
+        List<String> names = new ArrayList<>();
+        for (String name : functions(functionsPerProgram)) {
+            if (ThreadLocalRandom.current().nextBoolean()) names.add(name);
+        }
+        return names;
+    }
+
+    @Benchmark
+    public List<String> collateRolesToProgramAndForm() {
+        String formName = ThreadLocalRandom.current().nextBoolean() ? randomForm() : null;
+        return roleMappingService.collateRolesToProgramAndForm(List.of(randomRole(), randomRole(), randomRole()),
+                randomProgram(),
+                formName);
+    }
+
+    @Benchmark
+    public RoleWithProgramsDto mapRoleAndProgramsToDto() {
+        return roleMappingService.mapRoleAndProgramsToDto(randomRole());
+    }
+
+    @Benchmark
+    public ProgramDto mapProgramToDto() {
+        return tx.execute(s -> roleMappingService.mapProgramToDto(programRepository.findByName(randomProgram())
+                .orElseThrow()));
+    }
+
+    @Benchmark
+    public Program associateRoleToProgram() {
+        return tx.execute(s -> roleMappingService.associateRoleToProgram(randomProgram(),
+                randomRole(),
+                randomFunctions()));
+    }
+
+    @Benchmark
+    public Program associateRoleToForm() {
+        return tx.execute(s -> roleMappingService.associateRoleToForm(randomProgram(),
+                randomForm(),
+                randomRole(),
+                randomFunctions()));
+    }
+}
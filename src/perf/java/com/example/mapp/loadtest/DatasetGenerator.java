@@ -0,0 +1,188 @@
+package com.example.mapp.loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds a reproducible, skewed "large tenant" dataset and seeds it through the REST API.
+ * <p>
+ * Program rank drives everything: the first few programs carry most of the forms and are the most likely to be mapped
+ * to a role, while the long tail has a handful of forms each.  Roles are skewed the same way (a few roles are mapped
+ * to many programs, most roles to a few).  The same {@link Options} always produce the same dataset.
+ */
+public class DatasetGenerator {
+
+    public record Options(int programs,
+                          int maxFormsPerProgram,
+                          int functionsPerProgram,
+                          int roles,
+                          int maxProgramsPerRole,
+                          int formsPerMappedProgram,
+                          double skew,
+                          long seed) {
+
+        public static Options defaults() {
+            return new Options(2000, 2000, 8, 300, 200, 2, 1.0, 42L);
+        }
+
+        public static Options from(Map<String, String> args) {
+            Options d = defaults();
+            return new Options(intArg(args, "programs", d.programs()),
+                    intArg(args, "maxFormsPerProgram", d.maxFormsPerProgram()),
+                    intArg(args, "functionsPerProgram", d.functionsPerProgram()),
+                    intArg(args, "roles", d.roles()),
+                    intArg(args, "maxProgramsPerRole", d.maxProgramsPerRole()),
+                    intArg(args, "formsPerMappedProgram", d.formsPerMappedProgram()),
+                    Double.parseDouble(args.getOrDefault("skew", String.valueOf(d.skew()))),
+                    Long.parseLong(args.getOrDefault("seed", String.valueOf(d.seed()))));
+        }
+
+        private static int intArg(Map<String, String> args, String key, int defaultValue) {
+            return Integer.parseInt(args.getOrDefault(key, String.valueOf(defaultValue)));
+        }
+    }
+
+    public record ProgramPlan(String name, List<String> functions, List<String> forms) { }
+
+    public record MappingPlan(String programName, String formName, String roleName, List<String> functions) { }
+
+    public record Dataset(Options options,
+                          List<ProgramPlan> programs,
+                          List<String> roles,
+                          List<MappingPlan> mappings,
+                          ZipfSampler programSampler,
+                          ZipfSampler roleSampler) {
+
+        public int formCount() {
+            return programs.stream().mapToInt(p -> p.forms().size()).sum();
+        }
+    }
+
+    private DatasetGenerator() { }
+
+    public static Dataset generate(Options options) {
+        SplittableRandom random = new SplittableRandom(options.seed());
+
+        List<ProgramPlan> programs = new ArrayList<>();
+        for (int p = 0; p < options.programs(); p++) {
+            List<String> functions = new ArrayList<>();
+            for (int f = 0; f < options.functionsPerProgram(); f++) functions.add("FUNC" + f);
+            int formCount = Math.max(1, (int) Math.round(options.maxFormsPerProgram() / Math.pow(p + 1, options.skew())));
+            List<String> forms = new ArrayList<>();
+            for (int f = 0; f < formCount; f++) forms.add("FORM" + f);
+            programs.add(new ProgramPlan("PGM" + p, functions, forms));
+        }
+
+        List<String> roles = new ArrayList<>();
+        for (int r = 0; r < options.roles(); r++) roles.add("ROLE" + r);
+
+        ZipfSampler programSampler = new ZipfSampler(options.programs(), options.skew());
+        List<MappingPlan> mappings = new ArrayList<>();
+        for (int r = 0; r < options.roles(); r++) {
+            int wanted = Math.min(options.programs(),
+                    Math.max(1, (int) Math.round(options.maxProgramsPerRole() / Math.pow(r + 1, options.skew()))));
+            Set<Integer> picked = new LinkedHashSet<>();
+            for (int attempt = 0; picked.size() < wanted && attempt < wanted * 20; attempt++) {
+                picked.add(programSampler.sample(random));
+            }
+            for (int p : picked) {
+                ProgramPlan program = programs.get(p);
+                mappings.add(new MappingPlan(program.name(), null, roles.get(r), randomFunctions(random, program)));
+                for (int f = 0; f < options.formsPerMappedProgram(); f++) {
+                    String form = program.forms().get(random.nextInt(program.forms().size()));
+                    mappings.add(new MappingPlan(program.name(), form, roles.get(r), randomFunctions(random, program)));
+                }
+            }
+        }
+
+        return new Dataset(options,
+                programs,
+                roles,
+                mappings,
+                programSampler,
+                new ZipfSampler(options.roles(), options.skew()));
+    }
+
+    /**
+     * A non-empty random subset of the program's security functions
+     */
+    static List<String> randomFunctions(SplittableRandom random, ProgramPlan program) {
+        List<String> functions = new ArrayList<>();
+        for (String name : program.functions()) {
+            if (random.nextBoolean()) functions.add(name);
+        }
+        if (functions.isEmpty()) functions.add(program.functions().get(random.nextInt(program.functions().size())));
+        return functions;
+    }
+
+    /**
+     * Pushes the dataset through the API.  Programs (with their functions and forms) are seeded first, then roles, then
+     * the mappings - grouped per program so concurrent writers never touch the same program.
+     *
+     * @return number of requests issued
+     */
+    public static long seed(Dataset dataset, MappHttpClient client, int parallelism) throws Exception {
+        AtomicLong requests = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Runnable> programTasks = new ArrayList<>();
+            for (ProgramPlan program : dataset.programs()) {
+                programTasks.add(() -> {
+                    expectOk(client.createProgram(program.name()), "add-program " + program.name(), requests);
+                    expectOk(client.addSecurityFunctions(program.name(), program.functions()),
+                            "add-security-functions " + program.name(), requests);
+                    for (String form : program.forms()) {
+                        expectOk(client.addForm(program.name(), form), "add-form " + program.name() + "/" + form, requests);
+                    }
+                });
+            }
+            runAll(executor, programTasks);
+
+            List<Runnable> roleTasks = new ArrayList<>();
+            for (String role : dataset.roles()) {
+                roleTasks.add(() -> expectOk(client.createRole(role), "add-role " + role, requests));
+            }
+            runAll(executor, roleTasks);
+
+            Map<String, List<MappingPlan>> byProgram = new LinkedHashMap<>();
+            for (MappingPlan mapping : dataset.mappings()) {
+                byProgram.computeIfAbsent(mapping.programName(), k -> new ArrayList<>()).add(mapping);
+            }
+            List<Runnable> mappingTasks = new ArrayList<>();
+            for (List<MappingPlan> programMappings : byProgram.values()) {
+                mappingTasks.add(() -> {
+                    for (MappingPlan m : programMappings) {
+                        int status = m.formName() == null
+                                ? client.mapRoleToProgram(m.programName(), m.roleName(), m.functions())
+                                : client.mapRoleToForm(m.programName(), m.formName(), m.roleName(), m.functions());
+                        expectOk(status, "map " + m, requests);
+                    }
+                });
+            }
+            runAll(executor, mappingTasks);
+        } finally {
+            executor.shutdownNow();
+        }
+        return requests.get();
+    }
+
+    private static void runAll(ExecutorService executor, List<Runnable> tasks) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (Runnable task : tasks) futures.add(executor.submit(task));
+        for (Future<?> future : futures) future.get();
+    }
+
+    private static void expectOk(int status, String what, AtomicLong requests) {
+        requests.incrementAndGet();
+        if (status / 100 != 2) throw new IllegalStateException("Seeding failed (" + status + "): " + what);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.mapp.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Collects raw per-request latencies (nanos) for one operation so exact percentiles can be reported at the end of a run.
+ */
+public class LatencyRecorder {
+
+    private final String name;
+    private long[] samples = new long[1024];
+    private int count;
+    private int errors;
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized void record(long nanos, boolean ok) {
+        if (!ok) {
+            errors++;
+            return;
+        }
+        if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+        samples[count++] = nanos;
+    }
+
+    public synchronized void reset() {
+        count = 0;
+        errors = 0;
+    }
+
+    public synchronized Summary summarize(double seconds) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return new Summary(name,
+                count,
+                errors,
+                count / seconds,
+                percentile(sorted, 0.50),
+                percentile(sorted, 0.90),
+                percentile(sorted, 0.99),
+                percentile(sorted, 0.999),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1_000_000d);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(idx, 0)] / 1_000_000d;
+    }
+
+    public record Summary(String name, int count, int errors, double throughput,
+                          double p50, double p90, double p99, double p999, double max) {
+
+        public static String header() {
+            return String.format("%-28s %9s %7s %10s %9s %9s %9s %9s %9s",
+                    "operation", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-28s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f",
+                    name, count, errors, throughput, p50, p90, p99, p999, max);
+        }
+    }
+}
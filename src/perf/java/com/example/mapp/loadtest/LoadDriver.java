@@ -0,0 +1,248 @@
+package com.example.mapp.loadtest;
+
+import com.example.mapp.MappApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop load driver: seeds a {@link DatasetGenerator} dataset, then runs a weighted mix of permission lookups,
+ * role detail reads and role mapping writes from N concurrent clients, and prints per-operation throughput and latency
+ * percentiles.
+ * <p>
+ * Arguments are {@code key=value} pairs (a leading {@code --} is optional):
+ * <ul>
+ *     <li>{@code baseUrl} - target an already running server; otherwise the app is started in-process</li>
+ *     <li>{@code profile} - profile for the in-process app: {@code test} (H2, the default) or {@code default} (local Pg)</li>
+ *     <li>{@code threads}, {@code warmup}, {@code duration} - client count and phase lengths in seconds</li>
+ *     <li>{@code mix} - operation weights, e.g. {@code permissions:70,rolesDetails:20,mapRoleToProgram:5,mapRoleToForm:5}</li>
+ *     <li>{@code skipSeed=true} - reuse data seeded by an earlier run with the same dataset options</li>
+ *     <li>{@code compare=true} - run twice in-process, on platform threads and then with the virtual-threads profile
+ *     added, and print the two side by side (defaults to 1000 clients of just /permissions-for-program)</li>
+ *     <li>any of the {@link DatasetGenerator.Options} fields, e.g. {@code programs=500 skew=1.2 seed=7}</li>
+ * </ul>
+ */
+public class LoadDriver {
+
+    private static final String DEFAULT_MIX = "permissions:70,rolesDetails:20,mapRoleToProgram:5,mapRoleToForm:5";
+    private static final String COMPARE_MIX = "permissions:100";
+
+    private interface Operation {
+        int run(SplittableRandom random);
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> args = parseArgs(argv);
+        if (Boolean.parseBoolean(args.getOrDefault("compare", "false"))) {
+            compare(args);
+            return;
+        }
+
+        ConfigurableApplicationContext context = null;
+        String baseUrl = args.get("baseUrl");
+        if (baseUrl == null) {
+            context = start(args.getOrDefault("profile", "test"));
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        try {
+            seedAndRun(args, baseUrl, DEFAULT_MIX, 16);
+        } finally {
+            if (context != null) context.close();
+        }
+    }
+
+    /**
+     * The same load against the app on platform threads and on virtual threads, each started (and seeded) afresh
+     */
+    static void compare(Map<String, String> args) throws Exception {
+        if (Runtime.version().feature() < 21) {
+            System.out.printf("WARNING: running on Java %s - virtual threads need 21 or later, so both runs are on platform threads%n",
+                    Runtime.version());
+        }
+
+        String profile = args.getOrDefault("profile", "test");
+        Map<String, List<LatencyRecorder.Summary>> results = new LinkedHashMap<>();
+        for (String mode : List.of("platform", "virtual-threads")) {
+            System.out.printf("%n== %s ==%n", mode);
+            ConfigurableApplicationContext context = start(mode.equals("platform") ? profile : profile + ",virtual-threads");
+            try {
+                String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                results.put(mode, seedAndRun(args, baseUrl, COMPARE_MIX, 1000));
+            } finally {
+                context.close();
+            }
+        }
+
+        System.out.printf("%n%-28s %-16s %10s %9s %9s %9s%n", "operation", "threads", "req/s", "p50 ms", "p99 ms", "errors");
+        results.forEach((mode, summaries) -> summaries.forEach(summary ->
+                System.out.printf("%-28s %-16s %10.1f %9.2f %9.2f %9d%n",
+                        summary.name(), mode, summary.throughput(), summary.p50(), summary.p99(), summary.errors())));
+    }
+
+    private static ConfigurableApplicationContext start(String profiles) {
+        return new SpringApplicationBuilder(MappApplication.class)
+                .profiles(profiles.split(","))
+                // src/test/resources is on the classpath here too - budgets only warn, as they would in production
+                .run("--server.port=0", "--logging.level.root=WARN", "--mapp.query-budget.mode=warn");
+    }
+
+    private static List<LatencyRecorder.Summary> seedAndRun(Map<String, String> args, String baseUrl,
+                                                            String defaultMix, int defaultThreads) throws Exception {
+        DatasetGenerator.Options options = DatasetGenerator.Options.from(args);
+        int threads = Integer.parseInt(args.getOrDefault("threads", String.valueOf(defaultThreads)));
+        int warmup = Integer.parseInt(args.getOrDefault("warmup", "10"));
+        int duration = Integer.parseInt(args.getOrDefault("duration", "60"));
+
+        MappHttpClient client = new MappHttpClient(baseUrl);
+        DatasetGenerator.Dataset dataset = DatasetGenerator.generate(options);
+        System.out.printf("Dataset %s: %d programs, %d forms, %d roles, %d mappings%n",
+                options, dataset.programs().size(), dataset.formCount(), dataset.roles().size(), dataset.mappings().size());
+
+        if (!Boolean.parseBoolean(args.getOrDefault("skipSeed", "false"))) {
+            long start = System.nanoTime();
+            long requests = DatasetGenerator.seed(dataset, client,
+                    Integer.parseInt(args.getOrDefault("seedParallelism", "8")));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Seeded %s with %d requests in %.1fs (%.0f req/s)%n",
+                    baseUrl, requests, seconds, requests / seconds);
+        }
+
+        return run(dataset, client, parseMix(args.getOrDefault("mix", defaultMix)), threads, warmup, duration);
+    }
+
+    static List<LatencyRecorder.Summary> run(DatasetGenerator.Dataset dataset, MappHttpClient client, Map<String, Integer> mix,
+                                             int threads, int warmupSeconds, int durationSeconds) throws InterruptedException {
+
+        Map<String, Operation> operations = operations(dataset, client);
+        List<Operation> weighted = new ArrayList<>();
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        List<Integer> cumulative = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<String, Integer> e : mix.entrySet()) {
+            Operation op = operations.get(e.getKey());
+            if (op == null) throw new IllegalArgumentException("Unknown operation " + e.getKey() + ", expected one of " + operations.keySet());
+            if (e.getValue() <= 0) continue;
+            total += e.getValue();
+            weighted.add(op);
+            recorders.add(new LatencyRecorder(e.getKey()));
+            cumulative.add(total);
+        }
+        int totalWeight = total;
+
+        SplittableRandom root = new SplittableRandom(dataset.options().seed());
+        List<Thread> workers = new ArrayList<>();
+        RunState state = new RunState();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = root.split();
+            Thread worker = new Thread(() -> {
+                while (!state.stopped) {
+                    int pick = random.nextInt(totalWeight);
+                    int idx = 0;
+                    while (cumulative.get(idx) <= pick) idx++;
+                    long start = System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = weighted.get(idx).run(random) / 100 == 2;
+                    } catch (RuntimeException e) {
+                        ok = false;
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    if (state.measuring) recorders.get(idx).record(elapsed, ok);
+                }
+            }, "load-" + t);
+            worker.start();
+            workers.add(worker);
+        }
+
+        System.out.printf("Running %d clients: %ds warmup, %ds measured, mix %s%n", threads, warmupSeconds, durationSeconds, mix);
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        state.measuring = true;
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        state.measuring = false;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        state.stopped = true;
+        for (Thread worker : workers) worker.join();
+
+        System.out.println(LatencyRecorder.Summary.header());
+        List<LatencyRecorder.Summary> summaries = new ArrayList<>();
+        long requests = 0;
+        for (LatencyRecorder recorder : recorders) {
+            LatencyRecorder.Summary summary = recorder.summarize(seconds);
+            requests += summary.count();
+            summaries.add(summary);
+            System.out.println(summary);
+        }
+        System.out.printf("Total: %d requests in %.1fs (%.1f req/s)%n", requests, seconds, requests / seconds);
+        return summaries;
+    }
+
+    /**
+     * Programs and roles are picked with the dataset's Zipf samplers, so the hot programs/roles take most of the traffic
+     */
+    private static Map<String, Operation> operations(DatasetGenerator.Dataset dataset, MappHttpClient client) {
+        Map<String, Operation> operations = new LinkedHashMap<>();
+        operations.put("permissions", random -> {
+            DatasetGenerator.ProgramPlan program = program(dataset, random);
+            String form = random.nextBoolean() ? program.forms().get(random.nextInt(program.forms().size())) : null;
+            List<String> roles = new ArrayList<>();
+            for (int i = 1 + random.nextInt(3); i > 0; i--) roles.add(role(dataset, random));
+            return client.permissionsForProgram(program.name(), form, roles);
+        });
+        operations.put("rolesDetails", random -> client.roleDetails(role(dataset, random)));
+        operations.put("mapRoleToProgram", random -> {
+            DatasetGenerator.ProgramPlan program = program(dataset, random);
+            return client.mapRoleToProgram(program.name(),
+                    role(dataset, random),
+                    DatasetGenerator.randomFunctions(random, program));
+        });
+        operations.put("mapRoleToForm", random -> {
+            DatasetGenerator.ProgramPlan program = program(dataset, random);
+            return client.mapRoleToForm(program.name(),
+                    program.forms().get(random.nextInt(program.forms().size())),
+                    role(dataset, random),
+                    DatasetGenerator.randomFunctions(random, program));
+        });
+        return operations;
+    }
+
+    private static DatasetGenerator.ProgramPlan program(DatasetGenerator.Dataset dataset, SplittableRandom random) {
+        return dataset.programs().get(dataset.programSampler().sample(random));
+    }
+
+    private static String role(DatasetGenerator.Dataset dataset, SplittableRandom random) {
+        return dataset.roles().get(dataset.roleSampler().sample(random));
+    }
+
+    private static final class RunState {
+        volatile boolean measuring;
+        volatile boolean stopped;
+    }
+
+    static Map<String, String> parseArgs(String[] argv) {
+        Map<String, String> args = new LinkedHashMap<>();
+        for (String arg : argv) {
+            String stripped = arg.startsWith("--") ? arg.substring(2) : arg;
+            int eq = stripped.indexOf('=');
+            if (eq < 0) args.put(stripped, "true");
+            else args.put(stripped.substring(0, eq), stripped.substring(eq + 1));
+        }
+        return args;
+    }
+
+    static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            weights.put(kv[0], Integer.parseInt(kv[1]));
+        }
+        return weights;
+    }
+}
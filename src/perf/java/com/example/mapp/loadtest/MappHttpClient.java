@@ -0,0 +1,114 @@
+package com.example.mapp.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Minimal blocking client for the mapp REST API, used by the dataset generator and the load driver.
+ * Response bodies are drained and discarded - only the status code is returned.
+ */
+public class MappHttpClient {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient http;
+    private final String baseUrl;
+
+    public MappHttpClient(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public int createProgram(String programName) {
+        return post("/add-program", Map.of("programName", programName), null);
+    }
+
+    public int addSecurityFunctions(String programName, List<String> functionNames) {
+        return post("/add-security-functions", Map.of("programName", programName), functionNames);
+    }
+
+    public int addForm(String programName, String formName) {
+        return post("/add-form", Map.of("programName", programName, "formName", formName), null);
+    }
+
+    public int createRole(String roleName) {
+        return post("/roles/add-role", Map.of("roleName", roleName), null);
+    }
+
+    public int mapRoleToProgram(String programName, String roleName, List<String> functionNames) {
+        return post("/map-role-to-program", Map.of("programName", programName, "roleName", roleName), functionNames);
+    }
+
+    public int mapRoleToForm(String programName, String formName, String roleName, List<String> functionNames) {
+        return post("/map-role-to-form",
+                Map.of("programName", programName, "formName", formName, "roleName", roleName),
+                functionNames);
+    }
+
+    public int permissionsForProgram(String programName, String formName, List<String> roleNames) {
+        return post("/permissions-for-program",
+                formName == null ? Map.of("programName", programName) : Map.of("programName", programName, "formName", formName),
+                roleNames);
+    }
+
+    public int roleDetails(String roleName) {
+        return get("/rolesDetails", Map.of("roleName", roleName));
+    }
+
+    public int get(String path, Map<String, String> params) {
+        return send(HttpRequest.newBuilder(uri(path, params)).GET().build());
+    }
+
+    public int post(String path, Map<String, String> params, Object body) {
+        HttpRequest.BodyPublisher publisher = body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(json(body));
+        return send(HttpRequest.newBuilder(uri(path, params))
+                .header("Content-Type", "application/json")
+                .POST(publisher)
+                .build());
+    }
+
+    private int send(HttpRequest request) {
+        try {
+            return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private URI uri(String path, Map<String, String> params) {
+        String query = params.entrySet()
+                .stream()
+                .map(e -> e.getKey() + "=" + URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&"));
+        return URI.create(baseUrl + path + (query.isEmpty() ? "" : "?" + query));
+    }
+
+    private static String json(Object body) {
+        try {
+            return MAPPER.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.mapp.loadtest;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples ranks 0..n-1 with probability proportional to 1 / (rank + 1)^skew, so rank 0 is the hottest.
+ * A skew of 0 is uniform.
+ */
+public class ZipfSampler {
+
+    private final double[] cdf;
+
+    public ZipfSampler(int n, double skew) {
+        if (n < 1) throw new IllegalArgumentException("Zipf sampler needs at least one rank");
+        cdf = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1 / Math.pow(i + 1, skew);
+            cdf[i] = total;
+        }
+        for (int i = 0; i < n; i++) cdf[i] /= total;
+    }
+
+    public int size() {
+        return cdf.length;
+    }
+
+    public int sample(RandomGenerator random) {
+        int idx = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(idx >= 0 ? idx : -idx - 1, cdf.length - 1);
+    }
+}
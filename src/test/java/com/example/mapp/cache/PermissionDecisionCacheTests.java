@@ -0,0 +1,68 @@
+package com.example.mapp.cache;
+
+import com.example.mapp.cache.PermissionDecisionCache.DecisionKey;
+import com.example.mapp.event.MappingChangeEvent;
+import com.example.mapp.event.MappingChangeEvent.Kind;
+import com.example.mapp.exception.NotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PermissionDecisionCacheTests {
+
+    @Test
+    public void testHitsAndMisses() {
+        PermissionDecisionCache cache = new PermissionDecisionCache(1000);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(List.of("READ"), cache.get(DecisionKey.of("abc", "home", "admin"), k -> {
+                loads.incrementAndGet();
+                return List.of("READ");
+            }));
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(2, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() {
+        PermissionDecisionCache cache = new PermissionDecisionCache(1000);
+
+        assertThrows(NotFoundException.class, () -> cache.get(DecisionKey.of("ABC", null, "NOBODY"), k -> {
+            throw new NotFoundException("Role not found");
+        }));
+        assertEquals(0, cache.estimatedSize());
+    }
+
+    @Test
+    public void testInvalidationIsScopedToTheChange() {
+        PermissionDecisionCache cache = new PermissionDecisionCache(1000);
+        List.of(DecisionKey.of("ABC", null, "ADMIN"),
+                DecisionKey.of("ABC", "HOME", "ADMIN"),
+                DecisionKey.of("ABC", "HOME", "USER"),
+                DecisionKey.of("ABC", "SEARCH", "ADMIN"),
+                DecisionKey.of("DEF", null, "ADMIN")).forEach(k -> cache.get(k, key -> List.of("READ")));
+
+        // functions being added to a program can't change anything already resolved
+        cache.onMappingChange(MappingChangeEvent.of(Kind.SECURITY_FUNCTIONS_ADDED, "ABC", null, null));
+        assertEquals(5, cache.estimatedSize());
+
+        cache.onMappingChange(MappingChangeEvent.of(Kind.ROLE_MAPPED_TO_FORM, "abc", "home", "admin"));
+        assertEquals(4, cache.estimatedSize());
+
+        // program level change for a role reaches all of that program's forms (they fall back to it)
+        cache.onMappingChange(MappingChangeEvent.of(Kind.ROLE_MAPPED_TO_PROGRAM, "ABC", null, "ADMIN"));
+        assertEquals(2, cache.estimatedSize());
+
+        cache.onMappingChange(MappingChangeEvent.of(Kind.ROLE_DELETED, null, null, "ADMIN"));
+        assertEquals(1, cache.estimatedSize());
+        assertEquals(List.of("READ"), cache.get(DecisionKey.of("ABC", "HOME", "USER"), key -> List.of()));
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.mapp.cache;
+
+import com.example.mapp.cache.ProgramResponseCache.CachedResponse;
+import com.example.mapp.cache.ProgramResponseCache.ResponseKey;
+import com.example.mapp.dto.ProgramDto;
+import com.example.mapp.event.MappingChangeEvent;
+import com.example.mapp.event.MappingChangeEvent.Kind;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProgramResponseCacheTests {
+
+    static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    static ProgramResponseCache cache() {
+        return new ProgramResponseCache(DataSize.ofMegabytes(1),
+                new MappingJackson2HttpMessageConverter(),
+                new MappingJackson2CborHttpMessageConverter(),
+                new MappingJackson2SmileHttpMessageConverter());
+    }
+
+    static ProgramDto program(String name) {
+        return ProgramDto.builder()
+                .name(name)
+                .forms(List.of())
+                .roleMappings(Map.of("ADMIN", List.of("READ")))
+                .securityFunctions(List.of("READ"))
+                .build();
+    }
+
+    static ResponseKey put(ProgramResponseCache cache, long id, String name, MediaType encoding) {
+        ResponseKey key = new ResponseKey(id, encoding, false);
+        cache.put(key, cache.generation(), cache.encode(key, name, 1, program(name)));
+        return key;
+    }
+
+    @Test
+    public void testNegotiation() throws Exception {
+        ProgramResponseCache cache = cache();
+
+        assertEquals(MediaType.APPLICATION_JSON, cache.negotiate(List.of(MediaType.ALL)));
+        assertEquals(MediaType.APPLICATION_CBOR, cache.negotiate(List.of(MediaType.APPLICATION_CBOR, MediaType.APPLICATION_JSON)));
+        assertEquals(SMILE, cache.negotiate(List.of(MediaType.TEXT_HTML, SMILE)));
+        assertEquals(MediaType.APPLICATION_JSON, cache.negotiate(MediaType.parseMediaTypes("application/*")));
+        assertThrows(HttpMediaTypeNotAcceptableException.class, () -> cache.negotiate(List.of(MediaType.TEXT_HTML)));
+    }
+
+    @Test
+    public void testEncodingAndSize() {
+        ProgramResponseCache cache = cache();
+        ResponseKey json = put(cache, 1, "ABC", MediaType.APPLICATION_JSON);
+        ResponseKey cbor = put(cache, 1, "ABC", MediaType.APPLICATION_CBOR);
+
+        CachedResponse response = cache.getIfPresent(json).orElseThrow();
+        assertEquals(MediaType.APPLICATION_JSON, response.contentType());
+        assertTrue(new String(response.body(), StandardCharsets.UTF_8).contains("\"ADMIN\":[\"READ\"]"));
+        assertNotEquals(response.body().length, cache.getIfPresent(cbor).orElseThrow().body().length);
+
+        // weighed by what's kept of them - mostly their bodies
+        long bodies = response.body().length + cache.getIfPresent(cbor).orElseThrow().body().length;
+        assertTrue(cache.weightedSize() >= bodies && cache.weightedSize() < bodies + 1024);
+        assertEquals(3, cache.stats().hitCount());
+    }
+
+    @Test
+    public void testInvalidationIsScopedToTheProgram() {
+        ProgramResponseCache cache = cache();
+        ResponseKey abc = put(cache, 1, "ABC", MediaType.APPLICATION_JSON);
+        ResponseKey abcSmile = put(cache, 1, "ABC", SMILE);
+        ResponseKey def = put(cache, 2, "DEF", MediaType.APPLICATION_JSON);
+
+        // nothing cached can be about what's just been created
+        cache.onMappingChange(MappingChangeEvent.of(Kind.PROGRAM_CREATED, "GHI", null, null));
+        cache.onMappingChange(MappingChangeEvent.of(Kind.ROLE_CREATED, null, null, "USER"));
+        assertTrue(cache.getIfPresent(abc).isPresent());
+
+        cache.onMappingChange(MappingChangeEvent.of(Kind.ROLE_MAPPED_TO_FORM, "abc", "home", "admin"));
+        assertTrue(cache.getIfPresent(abc).isEmpty());
+        assertTrue(cache.getIfPresent(abcSmile).isEmpty());
+        assertTrue(cache.getIfPresent(def).isPresent());
+
+        // a role's grants can be on any program
+        cache.onMappingChange(MappingChangeEvent.of(Kind.ROLE_DELETED, null, null, "ADMIN"));
+        assertTrue(cache.getIfPresent(def).isEmpty());
+    }
+
+    @Test
+    public void testResponseBuiltBeforeAnInvalidationIsNotKept() {
+        ProgramResponseCache cache = cache();
+        ResponseKey key = new ResponseKey(1, MediaType.APPLICATION_JSON, false);
+
+        long generation = cache.generation();
+        CachedResponse response = cache.encode(key, "ABC", 1, program("ABC"));
+        // ...a change to some program commits while it's being built
+        cache.onMappingChange(MappingChangeEvent.of(Kind.SECURITY_FUNCTIONS_ADDED, "ABC", null, null));
+        cache.put(key, generation, response);
+        assertTrue(cache.getIfPresent(key).isEmpty());
+
+        cache.put(key, cache.generation(), response);
+        assertTrue(cache.getIfPresent(key).isPresent());
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.mapp.engine;
+
+import com.example.mapp.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PermissionSnapshotFileTests {
+
+    @TempDir
+    Path dir;
+
+    Map<String, CompiledProgram> programs = new HashMap<>();
+
+    /**
+     * A program with the given number of functions - each role gets every step-th one on the program, and the
+     * first half of them on every other form
+     */
+    void program(String name, int functionCount, int forms, Map<Role, Integer> roles) {
+        Program program = Program.builder().id((long) programs.size()).name(name).revision(10L + programs.size()).build();
+        List<SecurityFunction> functions = IntStream.range(0, functionCount)
+                .mapToObj(i -> SecurityFunction.builder().id(1000L * programs.size() + i).name("FUNC" + i).programId(program.getId()).build())
+                .toList();
+        functions.forEach(program::addSecurityFunction);
+
+        IntStream.range(0, forms).forEach(i -> program.addForm(Form.builder().id(100L * programs.size() + i).name("FORM" + i).owner(program).build()));
+
+        roles.forEach((role, step) -> {
+            for (int i = 0; i < functionCount; i += step) {
+                program.getRoleFunctionMappings().add(RoleFunctionMapping.builder()
+                        .id(new RoleFunctionMapping.RoleFunctionMappingId(program.getId(), role.getId(), functions.get(i).getId()))
+                        .program(program)
+                        .role(role)
+                        .securityFunction(functions.get(i))
+                        .build());
+            }
+            int f = 0;
+            for (Form form : program.getForms().values()) {
+                if (f++ % 2 != 0) continue;
+                for (int i = 0; i < functionCount / 2; i += step) {
+                    form.getRoleFunctionFormMappings().add(RoleFunctionFormMapping.builder()
+                            .id(new RoleFunctionFormMapping.RoleFunctionFormMappingId(program.getId(), role.getId(), functions.get(i).getId(), form.getId()))
+                            .program(program)
+                            .role(role)
+                            .form(form)
+                            .securityFunction(functions.get(i))
+                            .build());
+                }
+            }
+        });
+        programs.put(name, CompiledProgram.of(program));
+    }
+
+    Role admin = Role.builder().id(1L).name("ADMIN").build();
+    Role user = Role.builder().id(2L).name("USER").build();
+
+    @BeforeEach
+    void setup() {
+        program("BIG", 150, 6, Map.of(admin, 1, user, 7));
+        program("SMALL", 3, 1, Map.of(user, 2));
+        program("EMPTY", 0, 0, Map.of());
+        program("UNICODE_ÉTÉ", 64, 2, Map.of(admin, 3));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        PermissionSnapshot written = new PermissionSnapshot(programs, Set.of("ADMIN", "USER", "NOBODY"), 42);
+        Path file = dir.resolve("permissions.snapshot");
+        long size = PermissionSnapshotFile.write(written, file);
+        assertEquals(Files.size(file), size);
+
+        PermissionSnapshot read = PermissionSnapshotFile.read(file);
+        assertEquals(42, read.revision());
+        assertEquals(written.roles(), read.roles());
+        assertEquals(written.programs().keySet(), read.programs().keySet());
+
+        for (CompiledProgram p : written.programs().values()) {
+            CompiledProgram q = read.program(p.getName());
+            assertEquals(p.revision(), q.revision());
+            assertEquals(Arrays.asList(p.functionNames()), Arrays.asList(q.functionNames()));
+
+            List<String> forms = new ArrayList<>(p.formGrants().keySet());
+            forms.add(null);
+            for (String form : forms) {
+                for (List<String> roles : List.of(List.of("ADMIN"), List.of("USER"), List.of("NOBODY"), List.of("ADMIN", "USER"))) {
+                    assertEquals(written.collate(roles, p.getName(), form), read.collate(roles, p.getName(), form));
+                    assertEquals(written.collateOrdinals(roles, p.getName(), form), read.collateOrdinals(roles, p.getName(), form));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUnreadableFiles() throws IOException {
+        Path file = dir.resolve("permissions.snapshot");
+        PermissionSnapshotFile.write(new PermissionSnapshot(programs, Set.of("ADMIN", "USER"), 1), file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> PermissionSnapshotFile.read(file));
+
+        Files.writeString(file, "not a snapshot");
+        assertThrows(IOException.class, () -> PermissionSnapshotFile.read(file));
+    }
+}
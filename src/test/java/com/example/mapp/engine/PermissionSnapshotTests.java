@@ -0,0 +1,140 @@
+package com.example.mapp.engine;
+
+import com.example.mapp.exception.NotFoundException;
+import com.example.mapp.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PermissionSnapshotTests {
+
+    Program program;
+    Role admin;
+    Role developer;
+    Map<String, SecurityFunction> functions = new HashMap<>();
+
+    @BeforeEach
+    void setup() {
+        program = Program.builder().id(1L).name("ABC").build();
+        admin = Role.builder().id(10L).name("ADMIN").build();
+        developer = Role.builder().id(11L).name("DEVELOPER").build();
+
+        // enough functions to need more than one word in the bitmaps
+        IntStream.range(0, 70).forEach(i -> {
+            String name = i < 4 ? List.of("CREATE", "READ", "UPDATE", "DELETE").get(i) : "FUNC" + i;
+            SecurityFunction f = SecurityFunction.builder().id(100L + i).name(name).programId(1L).build();
+            functions.put(name, f);
+            program.addSecurityFunction(f);
+        });
+
+        program.addForm(Form.builder().id(20L).name("HOME").owner(program).build());
+        program.addForm(Form.builder().id(21L).name("SEARCH").owner(program).build());
+    }
+
+    void mapToProgram(Role r, String... functionNames) {
+        for (String name : functionNames) {
+            program.getRoleFunctionMappings()
+                    .add(RoleFunctionMapping.builder()
+                            .id(new RoleFunctionMapping.RoleFunctionMappingId(1L, r.getId(), functions.get(name).getId()))
+                            .program(program)
+                            .role(r)
+                            .securityFunction(functions.get(name))
+                            .build());
+        }
+    }
+
+    void mapToForm(Role r, String formName, String... functionNames) {
+        Form f = program.getFormNamed(formName).orElseThrow();
+        for (String name : functionNames) {
+            f.getRoleFunctionFormMappings()
+                    .add(RoleFunctionFormMapping.builder()
+                            .id(new RoleFunctionFormMapping.RoleFunctionFormMappingId(1L,
+                                    r.getId(),
+                                    functions.get(name).getId(),
+                                    f.getId()))
+                            .program(program)
+                            .role(r)
+                            .form(f)
+                            .securityFunction(functions.get(name))
+                            .build());
+        }
+    }
+
+    PermissionSnapshot compile() {
+        return new PermissionSnapshot(Map.of("ABC", CompiledProgram.of(program)), Set.of("ADMIN", "DEVELOPER", "USER"), 0);
+    }
+
+    @Test
+    public void testFormGrantOverridesProgramGrant() {
+        mapToProgram(admin, "CREATE", "READ", "UPDATE", "DELETE", "FUNC69");
+        mapToForm(admin, "HOME", "READ", "UPDATE", "DELETE");
+        mapToForm(developer, "HOME", "CREATE", "READ");
+
+        PermissionSnapshot s = compile();
+
+        assertEquals(Set.of("CREATE", "READ", "UPDATE", "DELETE"),
+                Set.copyOf(s.collate(List.of("admin", "developer"), "abc", "home")));
+        assertEquals(Set.of("CREATE", "READ", "UPDATE", "DELETE", "FUNC69"),
+                Set.copyOf(s.collate(List.of("ADMIN"), "ABC", null)));
+    }
+
+    @Test
+    public void testFormFallsBackToProgramGrant() {
+        mapToProgram(admin, "READ", "UPDATE", "FUNC64");
+        mapToForm(developer, "HOME", "READ");
+
+        PermissionSnapshot s = compile();
+
+        assertEquals(Set.of("READ", "UPDATE", "FUNC64"),
+                Set.copyOf(s.collate(List.of("ADMIN", "DEVELOPER"), "ABC", "HOME")));
+        assertEquals(List.of(), s.collate(List.of("USER"), "ABC", "SEARCH"));
+    }
+
+    @Test
+    public void testOrdinalsIndexTheProgramsFunctionTable() {
+        program.setRevision(7L);
+        mapToProgram(admin, "READ", "UPDATE", "FUNC64");
+        mapToForm(developer, "HOME", "DELETE", "FUNC69");
+
+        PermissionSnapshot s = compile();
+        List<String> table = s.program("ABC").functionTable();
+
+        CollatedOrdinals ordinals = s.collateOrdinals(List.of("ADMIN", "DEVELOPER"), "ABC", "HOME");
+        assertEquals(7L, ordinals.programRevision());
+        assertEquals(Set.copyOf(s.collate(List.of("ADMIN", "DEVELOPER"), "ABC", "HOME")),
+                ordinals.ordinals().stream().map(table::get).collect(Collectors.toSet()));
+        assertEquals(List.of(), s.collateOrdinals(List.of("USER"), "ABC", null).ordinals());
+    }
+
+    @Test
+    public void testUnknownNames() {
+        PermissionSnapshot s = compile();
+
+        assertThrows(NotFoundException.class, () -> s.collate(List.of("ADMIN"), "XYZ", null));
+        assertThrows(NotFoundException.class, () -> s.collate(List.of("ADMIN"), "ABC", "NOPE"));
+        assertThrows(NotFoundException.class, () -> s.collate(List.of("NOBODY"), "ABC", null));
+    }
+
+    @Test
+    public void testCopyOnWrite() {
+        mapToProgram(admin, "READ");
+        PermissionSnapshot s = compile();
+
+        PermissionSnapshot withoutAdmin = s.withoutRole("ADMIN");
+        assertThrows(NotFoundException.class, () -> withoutAdmin.collate(List.of("ADMIN"), "ABC", null));
+        assertEquals(List.of(), withoutAdmin.withRole("ADMIN").collate(List.of("ADMIN"), "ABC", null));
+
+        // the original is untouched
+        assertEquals(List.of("READ"), s.collate(List.of("ADMIN"), "ABC", null));
+        assertThrows(NotFoundException.class, () -> s.withoutProgram("ABC").collate(List.of("ADMIN"), "ABC", null));
+    }
+}
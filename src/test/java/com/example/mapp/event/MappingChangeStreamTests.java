@@ -0,0 +1,94 @@
+package com.example.mapp.event;
+
+import com.example.mapp.dto.MappingChangeDto;
+import com.example.mapp.dto.MappingChangesDto;
+import com.example.mapp.repository.MappingRevisionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MappingChangeStreamTests {
+
+    MappingChangeStream stream = new MappingChangeStream();
+
+    @BeforeEach
+    void setUp() {
+        stream.mappingRevisionRepository = mock(MappingRevisionRepository.class);
+        when(stream.mappingRevisionRepository.current()).thenReturn(10L);
+        stream.replaySize = 100;
+        stream.timeout = Duration.ofMinutes(1);
+        stream.heartbeat = Duration.ofMinutes(1);
+        stream.gapTimeout = Duration.ofMillis(200);
+        stream.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stream.stop();
+    }
+
+    void publish(long revision) {
+        stream.onMappingRevision(new MappingRevisionEvent(revision,
+                MappingChangeEvent.of(MappingChangeEvent.Kind.PROGRAM_CREATED, "PGM" + revision, null, null)));
+    }
+
+    /**
+     * Polls until the answer satisfies the condition (changes are handled on the stream's own thread)
+     */
+    MappingChangesDto changesSince(long since, Predicate<MappingChangesDto> until) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            MappingChangesDto changes = stream.changesSince(since);
+            if (until.test(changes)) return changes;
+            Thread.sleep(20);
+        }
+        return fail("Gave up waiting, got: " + stream.changesSince(since));
+    }
+
+    static List<Long> revisions(MappingChangesDto changes) {
+        return changes.getChanges().stream().map(MappingChangeDto::getRevision).toList();
+    }
+
+    @Test
+    void testChangesHandedOverOutOfOrderAreSentInOrder() throws Exception {
+        // 12 committed first - it waits for 11
+        publish(12);
+        Thread.sleep(50);
+        MappingChangesDto held = stream.changesSince(10L);
+        assertEquals(10, held.getRevision());
+        assertEquals(List.of(), held.getChanges());
+
+        publish(11);
+        MappingChangesDto changes = changesSince(10, c -> c.getRevision() == 12);
+        assertFalse(changes.isReset());
+        assertEquals(List.of(11L, 12L), revisions(changes));
+        assertEquals(List.of(12L), revisions(stream.changesSince(11L)));
+    }
+
+    @Test
+    void testGapThatNeverFillsResets() throws Exception {
+        publish(11);
+        publish(13);
+        assertEquals(List.of(11L), revisions(changesSince(10, c -> c.getRevision() == 11)));
+
+        // 12 never comes - everyone before 13 has to start again from there
+        MappingChangesDto reset = changesSince(11, MappingChangesDto::isReset);
+        assertEquals(13, reset.getRevision());
+        assertTrue(reset.getChanges().isEmpty());
+
+        // once it's been given up on it's not sent late, and what comes after carries on from 13
+        publish(12);
+        publish(14);
+        assertEquals(List.of(14L), revisions(changesSince(13, c -> c.getRevision() == 14)));
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.mapp.integration;
+
+import com.example.mapp.dto.ProgramDto;
+import com.example.mapp.dto.RoleWithProgramsListDto;
+import com.example.mapp.dto.SecurityFunctionList;
+import com.example.mapp.encoding.BinaryFormatsConfiguration;
+import com.example.mapp.repository.ProgramRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Changes are committed (each request is its own transaction, like a real client's), so ordinals come from the
+ * compiled snapshot - and the context is thrown away afterwards
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class BinaryFormatsIntegrationTests {
+
+    static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper json;
+
+    @Autowired
+    ProgramRepository programRepository;
+
+    ObjectMapper cbor = BinaryFormatsConfiguration.cborMapper(new Jackson2ObjectMapperBuilder(), true);
+    ObjectMapper smile = BinaryFormatsConfiguration.smileMapper(new Jackson2ObjectMapperBuilder());
+
+    static String programUrl;
+
+    void change(String url, String functions) throws Exception {
+        mockMvc.perform(post(url).contentType(MediaType.APPLICATION_JSON).content(functions))
+                .andExpect(status().isOk());
+    }
+
+    byte[] body(MockHttpServletRequestBuilder request, MediaType accept) throws Exception {
+        return mockMvc.perform(request.accept(accept))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(accept))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        if (programUrl != null) return;
+
+        change("/add-program?programName=wire", "");
+        change("/add-security-functions?programName=wire", "[\"READ\", \"UPDATE\", \"DELETE\", \"CREATE\"]");
+        change("/add-form?programName=wire&formName=form1", "");
+        change("/roles/add-role?roleName=wire_user", "");
+        change("/roles/add-role?roleName=wire_admin", "");
+        change("/map-role-to-program?programName=wire&roleName=wire_user", "[\"READ\"]");
+        change("/map-role-to-program?programName=wire&roleName=wire_admin", "[\"READ\", \"UPDATE\", \"DELETE\"]");
+        change("/map-role-to-form?programName=wire&formName=form1&roleName=wire_user", "[\"CREATE\"]");
+        programUrl = "/programs/" + programRepository.findByName("WIRE").orElseThrow().getId();
+    }
+
+    @Test
+    void testSameDocumentInEachFormat() throws Exception {
+        ProgramDto asJson = json.readValue(body(get(programUrl), MediaType.APPLICATION_JSON), ProgramDto.class);
+        byte[] cborBytes = body(get(programUrl), MediaType.APPLICATION_CBOR);
+        byte[] smileBytes = body(get(programUrl), SMILE);
+
+        assertEquals(asJson, cbor.readValue(cborBytes, ProgramDto.class));
+        assertEquals(asJson, smile.readValue(smileBytes, ProgramDto.class));
+        assertEquals(List.of("CREATE", "DELETE", "READ", "UPDATE"), asJson.getSecurityFunctions().stream().sorted().toList());
+
+        RoleWithProgramsListDto roles = json.readValue(body(get("/rolesDetails"), MediaType.APPLICATION_JSON), RoleWithProgramsListDto.class);
+        assertEquals(roles, smile.readValue(body(get("/rolesDetails"), SMILE), RoleWithProgramsListDto.class));
+        assertEquals(roles, cbor.readValue(body(get("/rolesDetails"), MediaType.APPLICATION_CBOR), RoleWithProgramsListDto.class));
+
+        SecurityFunctionList functions = cbor.readValue(body(post("/permissions-for-program?programName=wire")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"wire_admin\"]"), MediaType.APPLICATION_CBOR), SecurityFunctionList.class);
+        assertEquals(List.of("DELETE", "READ", "UPDATE"), functions.getSecurityFunctions().stream().sorted().toList());
+
+        // one ETag for all three, so caches have to key them by Accept as well
+        mockMvc.perform(get(programUrl).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.VARY, "Accept"));
+
+        // errors come back in the format asked for too
+        mockMvc.perform(get("/programs/0").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testFunctionOrdinals() throws Exception {
+        ProgramDto program = json.readValue(body(get(programUrl + "?functionOrdinals=true"), MediaType.APPLICATION_JSON), ProgramDto.class);
+        List<String> table = program.getSecurityFunctions();
+        assertNull(program.getRoleMappings());
+        assertEquals(Map.of("WIRE_USER", Set.of("READ"), "WIRE_ADMIN", Set.of("READ", "UPDATE", "DELETE")), names(table, program.getRoleMappingOrdinals()));
+        assertEquals(Map.of("WIRE_USER", Set.of("CREATE")), names(table, program.getForms().get(0).getRoleMappingOrdinals()));
+
+        SecurityFunctionList functions = smile.readValue(body(post("/permissions-for-program?programName=wire&formName=form1&functionOrdinals=true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"wire_admin\", \"wire_user\"]"), SMILE), SecurityFunctionList.class);
+        assertNull(functions.getSecurityFunctions());
+        assertEquals(List.of(0, 1, 2, 3), functions.getSecurityFunctionOrdinals().stream().sorted().toList());
+
+        // every ordinal answer says which revision of the program's table it indexes - the program's ETag
+        String etag = mockMvc.perform(get(programUrl)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertEquals(etag, "\"" + functions.getProgramRevision() + "\"");
+
+        mockMvc.perform(post("/permissions-for-programs?functionOrdinals=true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"roleNames\": [\"wire_user\"], \"targets\": [{\"programName\": \"wire\"}, {\"programName\": \"nope\"}]}"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"results\": [{\"programName\": \"wire\", \"securityFunctionOrdinals\": [" + table.indexOf("READ") + "], "
+                        + "\"programRevision\": " + functions.getProgramRevision() + "}, {\"programName\": \"nope\", \"error\": \"Pgm Name not found\"}]}"));
+
+        // removing a function renumbers the ones after it - and moves the program's revision
+        mockMvc.perform(post("/remove-security-function?programName=wire&securityFunctionName=update")).andExpect(status().isOk());
+        ProgramDto after = json.readValue(body(get(programUrl + "?functionOrdinals=true"), MediaType.APPLICATION_JSON), ProgramDto.class);
+        List<String> remaining = new ArrayList<>(table);
+        remaining.remove("UPDATE");
+        assertEquals(remaining, after.getSecurityFunctions());
+        assertEquals(Map.of("WIRE_USER", Set.of("READ"), "WIRE_ADMIN", Set.of("READ", "DELETE")), names(remaining, after.getRoleMappingOrdinals()));
+        String etagAfter = mockMvc.perform(get(programUrl)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, etagAfter);
+
+        // so a client holding the old table can tell an answer isn't for it
+        SecurityFunctionList renumbered = json.readValue(body(post("/permissions-for-program?programName=wire&functionOrdinals=true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"wire_admin\"]"), MediaType.APPLICATION_JSON), SecurityFunctionList.class);
+        assertEquals(etagAfter, "\"" + renumbered.getProgramRevision() + "\"");
+        assertEquals(Set.of("READ", "DELETE"), renumbered.getSecurityFunctionOrdinals().stream().map(remaining::get).collect(Collectors.toSet()));
+    }
+
+    static Map<String, Set<String>> names(List<String> table, Map<String, List<Integer>> ordinals) {
+        Map<String, Set<String>> names = new HashMap<>();
+        ordinals.forEach((role, functions) -> names.put(role, functions.stream().map(table::get).collect(Collectors.toSet())));
+        return names;
+    }
+}
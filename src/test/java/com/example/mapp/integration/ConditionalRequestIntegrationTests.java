@@ -0,0 +1,143 @@
+package com.example.mapp.integration;
+
+import com.example.mapp.repository.ProgramRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Changes are committed (each request is its own transaction, like a real client's), so the context is thrown away
+ * afterwards
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class ConditionalRequestIntegrationTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ProgramRepository programRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    String etag(String url) throws Exception {
+        return mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+    }
+
+    void assertNotModified(String url, String etag) throws Exception {
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+    }
+
+    void change(String url, String functions) throws Exception {
+        mockMvc.perform(post(url).contentType(MediaType.APPLICATION_JSON).content(functions))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testProgramRevisions() throws Exception {
+        change("/add-program?programName=etag", "");
+        change("/add-program?programName=other", "");
+        String url = "/programs/" + programRepository.findByName("ETAG").orElseThrow().getId();
+
+        String etag = etag(url);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        assertNotModified(url, etag);
+
+        // answered without building the program's DTO - none of its forms, functions or grants are loaded
+        assertEquals(0, statistics.getCollectionLoadCount());
+
+        // changes to other programs leave it be
+        change("/map-role-to-form?programName=other&formName=home&roleName=etag", "[\"READ\"]");
+        assertNotModified(url, etag);
+
+        change("/map-role-to-program?programName=etag&roleName=etag", "[\"READ\"]");
+        String changed = etag(url);
+        assertNotEquals(etag, changed);
+        assertNotModified(url, changed);
+
+        // a change that changes nothing isn't a change
+        change("/map-role-to-program?programName=etag&roleName=etag", "[\"READ\"]");
+        assertNotModified(url, changed);
+    }
+
+    @Test
+    void testProgramResponsesAreCached() throws Exception {
+        change("/add-program?programName=cached", "");
+        change("/add-security-functions?programName=cached", "[\"READ\", \"UPDATE\"]");
+        change("/map-role-to-program?programName=cached&roleName=cached", "[\"READ\"]");
+        String url = "/programs/" + programRepository.findByName("CACHED").orElseThrow().getId();
+
+        String body = mockMvc.perform(get(url)).andReturn().getResponse().getContentAsString();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().string(body));
+
+        // sent as it was encoded the last time - the program isn't even loaded
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        // each encoding is cached for itself
+        mockMvc.perform(get(url).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR));
+        mockMvc.perform(get(url).accept(MediaType.TEXT_HTML)).andExpect(status().isNotAcceptable());
+
+        // until the program changes
+        change("/map-role-to-program?programName=cached&roleName=cached", "[\"READ\", \"UPDATE\"]");
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"roleMappings\": {\"CACHED\": [\"READ\", \"UPDATE\"]}}"));
+    }
+
+    @Test
+    void testGlobalRevision() throws Exception {
+        String etag = etag("/rolesDetails");
+        assertNotModified("/rolesDetails", etag);
+        assertNotModified("/rolesDetails?roleName=nobody", etag);
+        assertNotModified("/roleNames", etag);
+        assertNotModified("/programs", etag);
+
+        // every change moves it
+        change("/roles/add-role?roleName=global", "");
+        String changed = etag("/rolesDetails");
+        assertNotEquals(etag, changed);
+        assertTrue(Long.parseLong(changed.replace("\"", "")) > Long.parseLong(etag.replace("\"", "")));
+
+        mockMvc.perform(get("/roleNames").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, changed));
+    }
+}
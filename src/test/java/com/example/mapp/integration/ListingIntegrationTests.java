@@ -0,0 +1,178 @@
+package com.example.mapp.integration;
+
+import com.example.mapp.dto.RoleWithProgramsDto;
+import com.example.mapp.dto.RoleWithProgramsListDto;
+import com.example.mapp.service.RoleMappingService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Streamed responses read in their own transaction, so the data here is committed (and the context thrown
+ * away afterwards)
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class ListingIntegrationTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    RoleMappingService roleMappingService;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setup() throws Exception {
+        if (!roleMappingService.getPrograms().isEmpty()) return;
+
+        for (String role : List.of("ADMIN", "USER", "NOBODY")) {
+            mockMvc.perform(post(String.format("/roles/add-role?roleName=%s", role))).andExpect(status().isOk());
+        }
+        for (String pgm : List.of("ABC", "DEF", "GHI", "JKL", "MNO", "PQR")) {
+            mockMvc.perform(post(String.format("/add-program?programName=%s", pgm))).andExpect(status().isOk());
+            mockMvc.perform(post(String.format("/map-role-to-program?roleName=ADMIN&programName=%s", pgm))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(new ObjectMapper().writeValueAsString(List.of("CREATE", "READ"))))
+                    .andExpect(status().isOk());
+            for (String form : List.of("HOME", "SEARCH")) {
+                mockMvc.perform(post(String.format("/map-role-to-form?roleName=USER&formName=%s&programName=%s", form, pgm))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(new ObjectMapper().writeValueAsString(List.of("READ"))))
+                        .andExpect(status().isOk());
+            }
+        }
+    }
+
+    List<JsonNode> readNdjson(String url) throws Exception {
+        MvcResult result = mockMvc.perform(get(url).accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        List<JsonNode> records = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            records.add(new ObjectMapper().readTree(line));
+        }
+        return records;
+    }
+
+    @Test
+    void testStreamPrograms() throws Exception {
+        List<JsonNode> programs = readNdjson("/programs");
+
+        assertEquals(6, programs.size());
+        assertEquals("ABC", programs.get(0).get("name").asText());
+        assertEquals(2, programs.get(0).get("roleMappings").get("ADMIN").size());
+        assertEquals(2, programs.get(0).get("forms").size());
+        assertEquals(1, programs.get(0).get("forms").get(0).get("roleMappings").get("USER").size());
+    }
+
+    /**
+     * Every role's details, a (small) page at a time
+     */
+    List<RoleWithProgramsDto> allRolePages() {
+        List<RoleWithProgramsDto> roles = new ArrayList<>();
+        Long after = null;
+        do {
+            RoleWithProgramsListDto page = roleMappingService.mapRolesAndProgramsPageToDto(after, 2);
+            roles.addAll(page.getRoles());
+            after = page.getNextCursor();
+        } while (after != null);
+        return roles;
+    }
+
+    @Test
+    void testStreamRoleDetails() throws Exception {
+        List<JsonNode> roles = readNdjson("/rolesDetails");
+
+        // same content as the paged version
+        assertEquals(new ObjectMapper().valueToTree(allRolePages()), new ObjectMapper().valueToTree(roles));
+        assertEquals(6, roles.get(0).get("programs").size());
+        assertEquals(0, roles.get(2).get("programs").size());
+    }
+
+    long statementsFor(String url) throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get(url)).andExpect(status().isOk());
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    void testProgramPages() throws Exception {
+        String firstPage = mockMvc.perform(get("/programs?size=4"))
+                .andExpect(jsonPath("$.programs", hasSize(4)))
+                .andExpect(jsonPath("$.programs[0].name", equalTo("ABC")))
+                .andExpect(jsonPath("$.programs[0].forms", hasSize(2)))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        long cursor = new ObjectMapper().readTree(firstPage).get("nextCursor").asLong();
+        mockMvc.perform(get("/programs?size=4&after=" + cursor))
+                .andExpect(jsonPath("$.programs", hasSize(2)))
+                .andExpect(jsonPath("$.programs[0].name", equalTo("MNO")))
+                .andExpect(jsonPath("$.nextCursor", nullValue()));
+
+        // the children of a page are batch fetched - same number of statements however big the page is
+        assertEquals(statementsFor("/programs?size=2"), statementsFor("/programs?size=6"));
+    }
+
+    @Test
+    void testRolePages() throws Exception {
+        mockMvc.perform(get("/roleNames?size=2"))
+                .andExpect(jsonPath("$.roles", hasSize(2)))
+                .andExpect(jsonPath("$.nextCursor", notNullValue()));
+
+        mockMvc.perform(get("/rolesDetails?size=2"))
+                .andExpect(jsonPath("$.roles", hasSize(2)))
+                .andExpect(jsonPath("$.roles[0].roleName", equalTo("ADMIN")))
+                .andExpect(jsonPath("$.roles[0].programs", hasSize(6)))
+                .andExpect(jsonPath("$.nextCursor", notNullValue()));
+
+        assertEquals(statementsFor("/rolesDetails?size=1"), statementsFor("/rolesDetails?size=3"));
+    }
+
+    @Test
+    void testJsonIsStillTheDefault() throws Exception {
+        mockMvc.perform(get("/programs"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.programs", hasSize(6)));
+        mockMvc.perform(get("/rolesDetails").accept(MediaType.ALL))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.roles", hasSize(3)));
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.mapp.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Changes are committed (the stream only sees committed ones), so the context is thrown away afterwards
+ */
+@SpringBootTest(properties = "mapp.change-stream.replay-size=3")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class MappingChangeStreamIntegrationTests {
+
+    private static final Pattern EVENT = Pattern.compile("event:([\\w-]+)\nid:(\\d+)\ndata:(.*)\n");
+
+    record Event(long id, String name, String data) {
+    }
+
+    @Autowired
+    MockMvc mockMvc;
+
+    MockHttpServletResponse subscribe(Long lastEventId) throws Exception {
+        var request = get("/mapping-changes").accept(MediaType.TEXT_EVENT_STREAM);
+        if (lastEventId != null) request.header("Last-Event-ID", lastEventId);
+
+        return mockMvc.perform(request)
+                .andExpect(request().asyncStarted())
+                .andReturn()
+                .getResponse();
+    }
+
+    void change(String url) throws Exception {
+        mockMvc.perform(post(url).contentType(MediaType.APPLICATION_JSON).content("[\"READ\"]"))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * The events sent so far, once they satisfy the condition (they're sent from another thread)
+     */
+    static List<Event> events(MockHttpServletResponse response, Predicate<List<Event>> until) throws Exception {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            List<Event> events = EVENT.matcher(response.getContentAsString()).results()
+                    .map(m -> new Event(Long.parseLong(m.group(2)), m.group(1), m.group(3)))
+                    .toList();
+            if (until.test(events)) return events;
+            Thread.sleep(50);
+        }
+        return fail("Gave up waiting for the events, got: " + response.getContentAsString());
+    }
+
+    static Predicate<List<Event>> atLeast(int count) {
+        return events -> events.size() >= count;
+    }
+
+    static Predicate<List<Event>> containing(String data) {
+        return events -> events.stream().anyMatch(e -> e.data().contains(data));
+    }
+
+    @Test
+    void testChangesAreStreamedAndReplayed() throws Exception {
+        MockHttpServletResponse live = subscribe(null);
+
+        change("/add-program?programName=stream");
+        change("/map-role-to-program?programName=stream&roleName=stream");
+
+        List<Event> events = events(live, containing("ROLE_MAPPED_TO_PROGRAM"));
+        Event created = events.get(0);
+        assertEquals("mapping-change", created.name());
+        assertEquals("{\"revision\":" + created.id() + ",\"kind\":\"PROGRAM_CREATED\",\"program\":\"STREAM\"}", created.data());
+        assertEquals("{\"revision\":" + events.get(events.size() - 1).id() + ",\"kind\":\"ROLE_MAPPED_TO_PROGRAM\",\"program\":\"STREAM\",\"role\":\"STREAM\"}",
+                events.get(events.size() - 1).data());
+
+        // ids only go up
+        for (int i = 1; i < events.size(); i++) assertTrue(events.get(i).id() > events.get(i - 1).id());
+
+        // resuming from the first gets everything after it, and then what comes next
+        MockHttpServletResponse resumed = subscribe(created.id());
+        assertEquals(events.subList(1, events.size()), events(resumed, atLeast(events.size() - 1)));
+
+        change("/add-program?programName=stream2");
+        List<Event> next = events(resumed, containing("STREAM2"));
+        assertEquals(events.size(), next.size());
+        assertEquals(next.get(next.size() - 1), events(live, containing("STREAM2")).get(events.size()));
+    }
+
+    @Test
+    void testResumingFromBeyondTheBufferResets() throws Exception {
+        MockHttpServletResponse live = subscribe(null);
+        for (int i = 0; i < 4; i++) change("/add-program?programName=reset" + i);
+
+        List<Event> events = events(live, atLeast(4));
+        MockHttpServletResponse resumed = subscribe(events.get(0).id() - 1);
+
+        // the buffer only holds 3, so the first has gone
+        Event reset = events(resumed, atLeast(1)).get(0);
+        assertEquals("reset", reset.name());
+        assertEquals(events.get(3).id(), reset.id());
+
+        // while what came after it can still be replayed
+        MockHttpServletResponse recent = subscribe(events.get(0).id());
+        assertEquals(events.subList(1, 4), events(recent, atLeast(3)));
+    }
+
+    JsonNode changesSince(Long since) throws Exception {
+        var request = get("/mapping-changes/since");
+        if (since != null) request.param("since", since.toString());
+
+        return new ObjectMapper().readTree(mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString());
+    }
+
+    /**
+     * Polls until there's been a change since the revision (they're handed over after commit, on another thread)
+     */
+    JsonNode awaitChangesSince(long since) throws Exception {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            JsonNode changes = changesSince(since);
+            if (changes.get("revision").asLong() != since) return changes;
+            Thread.sleep(50);
+        }
+        return fail("No changes since " + since);
+    }
+
+    @Test
+    void testPollingForChanges() throws Exception {
+        JsonNode start = changesSince(null);
+        long revision = start.get("revision").asLong();
+        assertFalse(start.get("reset").asBoolean());
+        assertEquals(0, start.get("changes").size());
+
+        change("/add-program?programName=poll");
+        JsonNode polled = awaitChangesSince(revision);
+        assertFalse(polled.get("reset").asBoolean());
+        JsonNode created = polled.get("changes").get(0);
+        assertEquals("PROGRAM_CREATED", created.get("kind").asText());
+        assertEquals("POLL", created.get("program").asText());
+        assertEquals(polled.get("revision").asLong(), polled.get("changes").get(polled.get("changes").size() - 1).get("revision").asLong());
+
+        // nothing new
+        JsonNode again = changesSince(polled.get("revision").asLong());
+        assertEquals(polled.get("revision").asLong(), again.get("revision").asLong());
+        assertEquals(0, again.get("changes").size());
+
+        // more than the buffer holds
+        long latest = polled.get("revision").asLong();
+        for (int i = 0; i < 4; i++) {
+            change("/add-program?programName=poll" + i);
+            latest = awaitChangesSince(latest).get("revision").asLong();
+        }
+        JsonNode reset = changesSince(revision);
+        assertTrue(reset.get("reset").asBoolean());
+        assertEquals(latest, reset.get("revision").asLong());
+        assertEquals(0, reset.get("changes").size());
+    }
+}
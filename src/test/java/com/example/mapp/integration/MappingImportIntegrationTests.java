@@ -0,0 +1,138 @@
+package com.example.mapp.integration;
+
+import com.example.mapp.dto.FormDto;
+import com.example.mapp.dto.ProgramDto;
+import com.example.mapp.dto.RoleWithProgramsDto;
+import com.example.mapp.dto.RoleWithProgramsListDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Imports are committed (and read back by other requests), so the context is thrown away afterwards
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class MappingImportIntegrationTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    JsonNode importMappings(Object document) throws Exception {
+        String body = mockMvc.perform(post("/import-mappings")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(document)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return new ObjectMapper().readTree(body);
+    }
+
+    @Test
+    void testImportRoundTrips() throws Exception {
+        RoleWithProgramsListDto document = RoleWithProgramsListDto.builder()
+                .roles(List.of(RoleWithProgramsDto.builder()
+                                .roleName("importer")
+                                .programs(List.of(ProgramDto.builder()
+                                        .name("imported")
+                                        .roleMappings(Map.of("importer", List.of("create", "read")))
+                                        .forms(List.of(FormDto.builder()
+                                                .name("home")
+                                                .roleMappings(Map.of("importer", List.of("read"), "viewer", List.of("read")))
+                                                .build()))
+                                        .build()))
+                                .build(),
+                        RoleWithProgramsDto.builder().roleName("unmapped").build()))
+                .build();
+
+        JsonNode result = importMappings(document);
+        assertEquals(3, result.get("rolesCreated").asInt());
+        assertEquals(1, result.get("programsCreated").asInt());
+        assertEquals(1, result.get("formsCreated").asInt());
+        assertEquals(2, result.get("securityFunctionsCreated").asInt());
+        assertEquals(2, result.get("programGrantsCreated").asInt());
+        assertEquals(2, result.get("formGrantsCreated").asInt());
+        assertEquals(11, result.get("rowsInserted").asLong());
+
+        // only adds, so importing the same document again is a no-op
+        JsonNode again = importMappings(document);
+        assertEquals(0, again.get("rowsInserted").asLong());
+        assertEquals(4, again.get("grantsAlreadyPresent").asInt());
+
+        mockMvc.perform(get("/rolesDetails?roleName=importer"))
+                .andExpect(jsonPath("$.roles[0].programs[0].name").value("IMPORTED"))
+                .andExpect(jsonPath("$.roles[0].programs[0].roleMappings.IMPORTER", containsInAnyOrder("CREATE", "READ")))
+                .andExpect(jsonPath("$.roles[0].programs[0].forms[0].roleMappings.IMPORTER", containsInAnyOrder("READ")));
+
+        // the compiled permissions picked the import up
+        mockMvc.perform(post("/permissions-for-program?programName=imported&formName=home")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"viewer\"]"))
+                .andExpect(jsonPath("$.securityFunctions", containsInAnyOrder("READ")));
+
+        // and so did the effective permissions
+        mockMvc.perform(get("/effective-permissions/verify"))
+                .andExpect(jsonPath("$.missing").value(0))
+                .andExpect(jsonPath("$.extra").value(0))
+                .andExpect(jsonPath("$.stale").value(0));
+    }
+
+    @Test
+    void testImportIsBatched() throws Exception {
+        List<String> functions = IntStream.range(0, 400).mapToObj(i -> "FUNC_" + i).toList();
+        RoleWithProgramsListDto document = RoleWithProgramsListDto.builder()
+                .roles(List.of(RoleWithProgramsDto.builder()
+                        .roleName("bulk")
+                        .programs(List.of(ProgramDto.builder()
+                                .name("bulk")
+                                .roleMappings(Map.of("bulk", functions))
+                                .forms(List.of(FormDto.builder().name("home").roleMappings(Map.of("bulk", functions)).build()))
+                                .build()))
+                        .build()))
+                .build();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        JsonNode result = importMappings(document);
+
+        assertEquals(1203, result.get("rowsInserted").asLong());
+        // the lookups, a few sequence calls and a handful of insert batches - not a statement per row
+        assertTrue(statistics.getPrepareStatementCount() < 50, () -> statistics.getPrepareStatementCount() + " statements");
+    }
+
+    @Test
+    void testBlankNamesAreRejected() throws Exception {
+        mockMvc.perform(post("/import-mappings")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"roles\": [{\"roleName\": \" \"}]}"))
+                .andExpect(status().isBadRequest());
+    }
+}
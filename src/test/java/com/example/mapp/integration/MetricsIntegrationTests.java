@@ -0,0 +1,62 @@
+package com.example.mapp.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import jakarta.transaction.Transactional;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs on the app's own (Hikari pooled) H2 datasource rather than the replaced test database so the pool meters exist
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@AutoConfigureObservability(tracing = false)
+@Transactional
+public class MetricsIntegrationTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void testPrometheusScrape() throws Exception {
+        mockMvc.perform(post("/add-program?programName=METRICS")).andExpect(status().isOk());
+        mockMvc.perform(post("/permissions-for-program?programName=METRICS")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(List.of("NOBODY"))))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/programs")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                // service method timers, with histogram buckets
+                .andExpect(content().string(containsString("mapp_service_seconds_count{class=\"com.example.mapp.service.RoleMappingServiceImpl\",exception=\"none\",method=\"createProgram\"")))
+                .andExpect(content().string(containsString("mapp_service_seconds_bucket{class=\"com.example.mapp.service.RoleMappingServiceImpl\",exception=\"NotFoundException\",method=\"collateRolesToProgramAndForm\"")))
+                // per endpoint latency histograms
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{error=\"none\",exception=\"none\",method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/programs\"")))
+                // repository invocations, hibernate statistics, pool and decision cache
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_count{")))
+                .andExpect(content().string(containsString("hibernate_query_executions_total{")))
+                .andExpect(content().string(containsString("hibernate_entities_loads_total{")))
+                .andExpect(content().string(containsString("hikaricp_connections_active{")))
+                .andExpect(content().string(containsString("mapp_sql_queries_count{uri=\"/programs\"")))
+                .andExpect(content().string(containsString("cache_gets_total{cache=\"permission-decisions\"")))
+                .andExpect(content().string(containsString("cache_weighted_size{cache=\"permission-decisions\"")));
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.mapp.integration;
+
+import com.example.mapp.engine.PermissionEngine;
+import com.example.mapp.engine.PermissionSnapshot;
+import com.example.mapp.engine.PermissionSnapshotCompiler;
+import com.example.mapp.exception.NotFoundException;
+import com.example.mapp.service.RoleMappingService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Changes are committed (the catch up reads them back in its own transaction), so the context is thrown away
+ * afterwards
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class PermissionSnapshotWarmStartIntegrationTests {
+
+    @TempDir
+    static Path dir;
+
+    @DynamicPropertySource
+    static void snapshotPath(DynamicPropertyRegistry registry) {
+        registry.add("mapp.snapshot.path", () -> dir.resolve("permissions.snapshot").toString());
+    }
+
+    @Autowired
+    RoleMappingService roleMappingService;
+
+    @Autowired
+    PermissionEngine permissionEngine;
+
+    @Autowired
+    PermissionSnapshotCompiler compiler;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    static void assertSameDecisions(PermissionSnapshot expected, PermissionSnapshot actual, String program, String form) {
+        for (List<String> roles : List.of(List.of("WARM1"), List.of("WARM2"), List.of("WARM1", "WARM2"))) {
+            assertEquals(expected.collate(roles, program, form).stream().sorted().toList(),
+                    actual.collate(roles, program, form).stream().sorted().toList());
+        }
+    }
+
+    void map(String program, String role, String... functions) {
+        if (roleMappingService.getPrograms().stream().noneMatch(p -> p.getName().equals(program))) {
+            roleMappingService.createProgram(program);
+        }
+        roleMappingService.addSecurityFunctionsToProgram(program, List.of(functions));
+        roleMappingService.associateRoleToProgram(program, role, List.of(functions));
+    }
+
+    @Test
+    void testStartsFromTheFileAndCatchesUp() throws Exception {
+        roleMappingService.createRoleName("WARM1");
+        roleMappingService.createRoleName("WARM2");
+        map("WARMA", "WARM1", "READ", "UPDATE");
+        roleMappingService.addFormToProgram("WARMA", "FORM1");
+        roleMappingService.associateRoleToForm("WARMA", "FORM1", "WARM2", List.of("READ"));
+        map("WARMB", "WARM1", "READ");
+        // programs nothing happens to after the export
+        IntStream.range(0, 20).forEach(i -> map("WARMSTILL" + i, "WARM2", "READ"));
+        roleMappingService.createRoleName("WARMGONE");
+
+        var export = roleMappingService.exportPermissionSnapshot();
+        assertEquals(Files.size(dir.resolve("permissions.snapshot")), export.getBytes());
+        assertEquals(roleMappingService.getMappingRevision(), export.getRevision());
+
+        map("WARMA", "WARM1", "DELETE");
+        roleMappingService.deleteProgram("WARMB");
+        map("WARMC", "WARM2", "CREATE");
+        roleMappingService.deleteRole("WARMGONE");
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        permissionEngine.start();
+        long caughtUpLoads = statistics.getCollectionLoadCount();
+
+        PermissionSnapshot started = permissionEngine.current().orElseThrow();
+        PermissionSnapshot compiled = compiler.compileAll();
+        assertEquals(roleMappingService.getMappingRevision(), started.revision());
+        assertEquals(compiled.programCount(), started.programCount());
+        assertEquals(compiled.roleCount(), started.roleCount());
+
+        assertSameDecisions(compiled, started, "WARMA", null);
+        assertSameDecisions(compiled, started, "WARMA", "FORM1");
+        assertSameDecisions(compiled, started, "WARMC", null);
+        assertSameDecisions(compiled, started, "WARMSTILL7", null);
+        assertEquals(List.of("DELETE"), started.collate(List.of("WARM1"), "WARMA", null));
+        assertThrows(NotFoundException.class, () -> started.program("WARMB"));
+        assertThrows(NotFoundException.class, () -> started.collate(List.of("WARMGONE"), "WARMA", null));
+
+        // only the changed programs were read back
+        statistics.clear();
+        compiler.compileAll();
+        assertTrue(caughtUpLoads * 5 < statistics.getCollectionLoadCount(),
+                caughtUpLoads + " collections loaded catching up, " + statistics.getCollectionLoadCount() + " compiling");
+    }
+
+    @Test
+    void testUnreadableFileIsCompiledInstead() throws Exception {
+        Files.writeString(dir.resolve("permissions.snapshot"), "not a snapshot");
+        permissionEngine.start();
+
+        assertEquals(roleMappingService.getMappingRevision(), permissionEngine.current().orElseThrow().revision());
+    }
+}
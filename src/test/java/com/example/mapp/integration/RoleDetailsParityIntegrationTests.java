@@ -0,0 +1,58 @@
+package com.example.mapp.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * mapp-reactive answers /rolesDetails with its own copies of the assembler and DTOs - both are checked against the
+ * same expected bodies (parity/role-details.json) for the same mappings (parity/mappings.sql), so neither can drift
+ * from them without its tests failing.  The mappings are written behind mapp's back, so the context is thrown away
+ * afterwards.
+ */
+@SpringBootTest(properties = "mapp.paging.default-size=100")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@Sql(scripts = "classpath:parity/mappings.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_CLASS)
+public class RoleDetailsParityIntegrationTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void testRoleDetailsMatchTheReactiveReadPath() throws Exception {
+        JsonNode expected = objectMapper.readTree(new ClassPathResource("parity/role-details.json").getInputStream());
+
+        for (Iterator<Map.Entry<String, JsonNode>> it = expected.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> request = it.next();
+            String body = mockMvc.perform(get(request.getKey()))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+
+            // the functions in a mapping come in no particular order
+            JSONAssert.assertEquals(request.getKey(), request.getValue().toString(), body, JSONCompareMode.NON_EXTENSIBLE);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.example.mapp.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.mapp.querybudget.QueryBudgetResponseAdvice;
+import com.example.mapp.repository.ProgramRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,6 +14,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 import java.util.HashMap;
 import java.util.List;
@@ -17,6 +22,7 @@ import java.util.Map;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -30,6 +36,12 @@ public class RoleMappingIntegrationTests {
     @Autowired
     MockMvc mockMvc;
 
+    @Autowired
+    ProgramRepository programRepository;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
     @BeforeEach
     void setup() throws Exception {
 
@@ -74,7 +86,42 @@ public class RoleMappingIntegrationTests {
                     .andExpect(status().isOk());
         }
 
-        mockMvc.perform(get("/roleNames")).andExpect(jsonPath("$", hasSize(4)));
+        mockMvc.perform(get("/roleNames")).andExpect(jsonPath("$.roles", hasSize(4)));
+    }
+
+    long programId(String programName) {
+        return programRepository.findByName(programName).orElseThrow().getId();
+    }
+
+    /**
+     * Statements the request issued (as reported in its X-Query-Count header), starting from an empty
+     * persistence context so nothing's already loaded and no earlier write is left to flush
+     */
+    int queryCount(MockHttpServletRequestBuilder request) throws Exception {
+        entityManager.flush();
+        entityManager.clear();
+        String count = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader(QueryBudgetResponseAdvice.QUERY_COUNT_HEADER);
+        return Integer.parseInt(count);
+    }
+
+    MockHttpServletRequestBuilder collate(String programName, String formName, List<String> roleNames) throws Exception {
+        return post(String.format("/permissions-for-program?programName=%s&formName=%s", programName, formName))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(roleNames));
+    }
+
+    void mapRole(String roleName, String programName, String formName, List<String> functions) throws Exception {
+        String url = formName == null
+                ? String.format("/map-role-to-program?roleName=%s&programName=%s", roleName, programName)
+                : String.format("/map-role-to-form?roleName=%s&programName=%s&formName=%s", roleName, programName, formName);
+        mockMvc.perform(post(url)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(functions)))
+                .andExpect(status().isOk());
     }
 
     @Transactional
@@ -90,7 +137,8 @@ public class RoleMappingIntegrationTests {
                         .content(new ObjectMapper().writeValueAsString(List.of("CREATE", "READ", "UPDATE", "DELETE"))))
                 .andExpect(status().isOk());
 
-        mockMvc.perform(get("/programs/1")).andExpect(jsonPath("$.roleMappings.ADMIN", hasSize(4)));
+        long abcId = programId("ABC");
+        mockMvc.perform(get("/programs/" + abcId)).andExpect(jsonPath("$.roleMappings.ADMIN", hasSize(4)));
 
         mockMvc.perform(post("/map-role-to-form?formName=HOME&roleName=ADMIN&programName=ABC")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -98,7 +146,7 @@ public class RoleMappingIntegrationTests {
                 .andExpect(status().isOk());
 
         // test the programs endpoint fetch
-        mockMvc.perform(get("/programs/1"))
+        mockMvc.perform(get("/programs/" + abcId))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.forms[?(@.name == 'HOME')].roleMappings.ADMIN.[*]", hasSize(3)))
                 .andExpect(jsonPath("$.roleMappings.ADMIN", hasSize(4)));
@@ -106,11 +154,27 @@ public class RoleMappingIntegrationTests {
         // test the roleDetails endpoint fetch
         mockMvc.perform(get("/rolesDetails?roleName=ADMIN"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].roleName", equalTo("ADMIN")))
-                .andExpect(jsonPath("$[0].programs[0].name", equalTo("ABC")))
-                .andExpect(jsonPath("$[0].programs[0].forms[0].name", equalTo("HOME")))
-                .andExpect(jsonPath("$[0].programs[0].forms[0].roleMappings.ADMIN", hasSize(3)))
-                .andExpect(jsonPath("$[0].programs[0].roleMappings.ADMIN", hasSize(4)));
+                .andExpect(jsonPath("$.roles[0].roleName", equalTo("ADMIN")))
+                .andExpect(jsonPath("$.roles[0].programs[0].name", equalTo("ABC")))
+                .andExpect(jsonPath("$.roles[0].programs[0].forms[0].name", equalTo("HOME")))
+                .andExpect(jsonPath("$.roles[0].programs[0].forms[0].roleMappings.ADMIN", hasSize(3)))
+                .andExpect(jsonPath("$.roles[0].programs[0].roleMappings.ADMIN", hasSize(4)));
+
+        // more grants - for the role and on the program - don't cost any more queries to read back
+        int programQueries = queryCount(get("/programs/" + abcId));
+        int roleQueries = queryCount(get("/rolesDetails?roleName=ADMIN"));
+
+        for (String pgm : List.of("DEF", "123")) {
+            mapRole("ADMIN", pgm, null, List.of("CREATE", "READ"));
+            mapRole("ADMIN", pgm, "HOME", List.of("READ"));
+        }
+        for (String role : List.of("USER", "DEVELOPER", "MAINTAINER")) {
+            mapRole(role, "ABC", null, List.of("READ"));
+            mapRole(role, "ABC", "SEARCH", List.of("READ", "UPDATE"));
+        }
+
+        assertEquals(programQueries, queryCount(get("/programs/" + abcId)));
+        assertEquals(roleQueries, queryCount(get("/rolesDetails?roleName=ADMIN")));
     }
 
     @Transactional
@@ -147,7 +211,11 @@ public class RoleMappingIntegrationTests {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(new ObjectMapper().writeValueAsString(List.of("ADMIN", "DEVELOPER"))))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(4)));
+                .andExpect(jsonPath("$.securityFunctions", hasSize(4)));
+
+        // collating for more roles doesn't cost any more queries
+        assertEquals(queryCount(collate("ABC", "HOME", List.of("ADMIN"))),
+                queryCount(collate("ABC", "HOME", List.of("ADMIN", "DEVELOPER", "USER", "MAINTAINER"))));
     }
 
     @Transactional
@@ -177,6 +245,6 @@ public class RoleMappingIntegrationTests {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(new ObjectMapper().writeValueAsString(List.of("ADMIN", "DEVELOPER"))))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(3)));
+                .andExpect(jsonPath("$.securityFunctions", hasSize(3)));
     }
 }
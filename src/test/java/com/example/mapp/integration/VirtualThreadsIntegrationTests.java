@@ -0,0 +1,61 @@
+package com.example.mapp.integration;
+
+import com.example.mapp.virtualthreads.ConnectionLimitingDataSource;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The virtual-threads profile on the app's own datasource - requests are only actually on virtual threads on Java 21+,
+ * the connection limit applies either way
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles({"test", "virtual-threads"})
+public class VirtualThreadsIntegrationTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void testConnectionsAreLimitedToThePoolSize() throws Exception {
+        ConnectionLimitingDataSource limited = assertInstanceOf(ConnectionLimitingDataSource.class, dataSource);
+        assertEquals(10, assertInstanceOf(HikariDataSource.class, limited.getTargetDataSource()).getMaximumPoolSize());
+
+        mockMvc.perform(post("/add-program?programName=VT")).andExpect(status().isOk());
+        mockMvc.perform(post("/roles/add-role?roleName=VT_USER")).andExpect(status().isOk());
+        mockMvc.perform(post("/permissions-for-program?programName=VT")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(List.of("VT_USER"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.securityFunctions").isEmpty());
+
+        // every connection went back
+        assertEquals(0, meterRegistry.get("mapp.datasource.connections.active").gauge().value());
+        assertEquals(0, meterRegistry.get("mapp.datasource.connections.pending").gauge().value());
+    }
+}
@@ -1,9 +1,15 @@
 package com.example.mapp.model;
 
+import com.example.mapp.model.util.NormalizedName;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class IdentityTests {
 
@@ -46,4 +52,46 @@ public class IdentityTests {
         assertEquals(f1, f2);
 
     }
+
+    @Test
+    public void testEqualNamesHashAlike() {
+        Form f1 = Form.builder().name("Test").build();
+        Form f2 = Form.builder().name("test").build();
+        assertEquals(f1.hashCode(), f2.hashCode());
+
+        // the name doesn't change under it when it's persisted, so it's still found in the set it was added to
+        Set<Form> forms = new HashSet<>(Set.of(f2));
+        f2.uppercaseName();
+        assertTrue(forms.contains(f1));
+        assertTrue(forms.remove(f2));
+
+        Role r = Role.builder().name("admin").build();
+        r.setName("user");
+        assertEquals(Role.builder().name("USER").build().hashCode(), r.hashCode());
+    }
+
+    @Test
+    public void testChildrenByName() {
+        Program p = Program.builder().id(1L).name("test").build();
+        Form home = Form.builder().name("home").owner(p).build();
+        SecurityFunction read = SecurityFunction.builder().name("read").programId(1L).build();
+        p.addForm(home);
+        p.addSecurityFunction(read);
+
+        assertSame(home, p.getFormNamed("Home").orElseThrow());
+        assertSame(home, p.getFormNamed(NormalizedName.of("HOME")).orElseThrow());
+        assertTrue(p.getFormNamed("search").isEmpty());
+        assertSame(read, p.getSecurityFunctionNamed(NormalizedName.of("read")).orElseThrow());
+    }
+
+    @Test
+    public void testNormalizedName() {
+        assertEquals(NormalizedName.of("Form1"), NormalizedName.of("FORM1"));
+        assertEquals("FORM1", NormalizedName.of("form1").value());
+
+        // already normalized - nothing to copy
+        String name = "FORM1";
+        assertSame(name, NormalizedName.normalize(name));
+        assertEquals(null, NormalizedName.normalize(null));
+    }
 }
@@ -0,0 +1,40 @@
+package com.example.mapp.querybudget;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatementCounterTests {
+
+    final StatementCounter inspector = new StatementCounter();
+
+    @Test
+    void testNestedScopes() {
+        inspector.inspect("select 1");
+
+        try (StatementCounter.Scope request = StatementCounter.start()) {
+            inspector.inspect("select p1_0.id from programs p1_0");
+            try (StatementCounter.Scope call = StatementCounter.start()) {
+                inspector.inspect("insert into forms (name,owner_id,id) values (?,?,?)");
+                inspector.inspect("select f1_0.id from forms f1_0");
+                assertEquals(1, call.queries());
+                assertEquals(2, call.statements());
+            }
+            inspector.inspect("delete from forms where id=?");
+
+            assertEquals(2, request.queries());
+            assertEquals(4, request.statements());
+        }
+    }
+
+    @Test
+    void testIsQuery() {
+        assertTrue(StatementCounter.isQuery("  SELECT 1"));
+        assertTrue(StatementCounter.isQuery("/* load Program */ select p1_0.id from programs p1_0"));
+        assertTrue(StatementCounter.isQuery("with recursive t as (select 1) select * from t"));
+        assertFalse(StatementCounter.isQuery("update programs set name=? where id=?"));
+        assertFalse(StatementCounter.isQuery("/* select */ delete from forms where id=?"));
+    }
+}
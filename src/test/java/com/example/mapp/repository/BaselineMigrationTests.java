@@ -0,0 +1,130 @@
+package com.example.mapp.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Migrates a database as the old ddl-auto=update left it - the V1 tables without the unique program and role names,
+ * and the same names created twice - after baselining it at V1, as spring.flyway.baseline-on-migrate does.
+ */
+public class BaselineMigrationTests {
+
+    static final String URL = "jdbc:h2:mem:baseline_migration;DB_CLOSE_DELAY=-1";
+
+    static Connection connection;
+
+    @BeforeAll
+    static void migrate() throws SQLException, IOException {
+        connection = DriverManager.getConnection(URL, "sa", "");
+
+        String schema;
+        try (InputStream in = BaselineMigrationTests.class.getResourceAsStream("/db/migration/V1__create_schema.sql")) {
+            schema = new String(in.readAllBytes(), StandardCharsets.UTF_8)
+                    .replaceAll(",\\s*constraint uk_(programs|roles)_name unique \\(name\\)", "");
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : schema.split(";")) {
+                if (!sql.isBlank()) statement.execute(sql);
+            }
+
+            statement.execute("insert into programs (id, name) values (1, 'ABC'), (2, 'ABC'), (3, 'XYZ')");
+            statement.execute("insert into roles (id, name) values (10, 'ADMIN'), (11, 'ADMIN'), (12, 'USER')");
+            statement.execute("insert into security_functions (id, program_id, name) values"
+                    + " (100, 1, 'READ'), (101, 2, 'READ'), (102, 2, 'WRITE'), (103, 3, 'READ')");
+            statement.execute("insert into forms (id, owner_id, name) values (200, 1, 'HOME'), (201, 2, 'HOME'), (202, 2, 'EDIT')");
+            statement.execute("insert into role_function_mappings (program_id, role_id, security_function_id) values"
+                    + " (1, 10, 100), (2, 11, 101), (2, 11, 102), (2, 12, 101), (3, 11, 103)");
+            statement.execute("insert into role_function_form_mappings (form_id, program_id, role_id, security_function_id) values"
+                    + " (201, 2, 11, 101), (202, 2, 10, 102)");
+        }
+
+        Flyway.configure()
+                .dataSource(URL, "sa", "")
+                .baselineOnMigrate(true)
+                .load()
+                .migrate();
+    }
+
+    @AfterAll
+    static void close() throws SQLException {
+        if (connection == null) return;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop all objects");
+        } finally {
+            connection.close();
+        }
+    }
+
+    List<String> rows(String sql) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            int columns = result.getMetaData().getColumnCount();
+            while (result.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 1; i <= columns; i++) {
+                    if (i > 1) row.append(',');
+                    row.append(result.getString(i));
+                }
+                rows.add(row.toString());
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    void testDuplicatesMergedIntoTheFirst() throws SQLException {
+        assertEquals(List.of("1,ABC", "3,XYZ"), rows("select id, name from programs order by id"));
+        assertEquals(List.of("10,ADMIN", "12,USER"), rows("select id, name from roles order by id"));
+        assertEquals(List.of("100,1,READ", "102,1,WRITE", "103,3,READ"),
+                rows("select id, program_id, name from security_functions order by id"));
+        assertEquals(List.of("200,1,HOME", "202,1,EDIT"), rows("select id, owner_id, name from forms order by id"));
+    }
+
+    @Test
+    void testGrantsOfAllDuplicatesKept() throws SQLException {
+        assertEquals(List.of("1,10,100", "1,10,102", "1,12,100", "3,10,103"),
+                rows("select program_id, role_id, security_function_id from role_function_mappings"
+                        + " order by program_id, role_id, security_function_id"));
+        assertEquals(List.of("200,1,10,100", "202,1,10,102"),
+                rows("select form_id, program_id, role_id, security_function_id from role_function_form_mappings"
+                        + " order by form_id"));
+    }
+
+    @Test
+    void testMergedProgramCountsAsChanged() throws SQLException {
+        assertEquals(List.of("1"), rows("select revision from mapping_revision"));
+        assertEquals(List.of("1,1", "3,0"), rows("select id, revision from programs order by id"));
+    }
+
+    @Test
+    void testNamesUniqueAfterwards() {
+        assertThrows(SQLException.class, () -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("insert into programs (id, name) values (4, 'XYZ')");
+            }
+        });
+        assertThrows(SQLException.class, () -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("insert into roles (id, name) values (13, 'USER')");
+            }
+        });
+    }
+}
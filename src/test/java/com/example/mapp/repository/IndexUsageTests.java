@@ -0,0 +1,125 @@
+package com.example.mapp.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the lookups the repositories make are planned on the indexes from the migrations.  Needs a Postgres, so
+ * only runs when MAPP_TEST_PG_URL is set (e.g. jdbc:postgresql://localhost:5432/postgres, with MAPP_TEST_PG_USER and
+ * MAPP_TEST_PG_PASSWORD) - the migrations are applied to a throwaway schema which is dropped afterwards.
+ * <p>
+ * The tables are empty, so sequential scans are switched off - the planner then only falls back to one when no
+ * index can serve the lookup at all.
+ */
+@EnabledIfEnvironmentVariable(named = "MAPP_TEST_PG_URL", matches = ".+")
+public class IndexUsageTests {
+
+    static final String SCHEMA = "mapp_index_usage";
+
+    static Connection connection;
+
+    @BeforeAll
+    static void migrate() throws SQLException {
+        String url = System.getenv("MAPP_TEST_PG_URL");
+        String user = Objects.requireNonNullElse(System.getenv("MAPP_TEST_PG_USER"), "postgres");
+        String password = Objects.requireNonNullElse(System.getenv("MAPP_TEST_PG_PASSWORD"), "postgres");
+
+        Flyway.configure()
+                .dataSource(url, user, password)
+                .schemas(SCHEMA)
+                .load()
+                .migrate();
+
+        connection = DriverManager.getConnection(url, user, password);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("set search_path to " + SCHEMA);
+            statement.execute("set enable_seqscan to off");
+        }
+    }
+
+    @AfterAll
+    static void dropSchema() throws SQLException {
+        if (connection == null) return;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop schema " + SCHEMA + " cascade");
+        } finally {
+            connection.close();
+        }
+    }
+
+    String plan(String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("explain " + sql)) {
+            while (rows.next()) {
+                plan.append(rows.getString(1)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    void assertUsesIndex(String index, String sql) throws SQLException {
+        String plan = plan(sql);
+        assertTrue(plan.contains(index) && !plan.contains("Seq Scan"), () -> "expected " + index + " for " + sql + "\n" + plan);
+    }
+
+    @Test
+    void testNameLookups() throws SQLException {
+        assertUsesIndex("uk_programs_name", "select * from programs where name = 'ABC'");
+        assertUsesIndex("uk_roles_name", "select * from roles where name = 'ADMIN'");
+        assertUsesIndex("uk_security_functions_name_program",
+                "select * from security_functions where name = 'READ' and program_id = 1");
+    }
+
+    @Test
+    void testGrantsByRole() throws SQLException {
+        assertUsesIndex("ix_role_function_mappings_role",
+                "select * from role_function_mappings where role_id = 1");
+        assertUsesIndex("ix_role_function_mappings_role",
+                "select * from role_function_mappings where role_id in (1, 2) and program_id in (3, 4)");
+        assertUsesIndex("ix_role_function_form_mappings_role",
+                "select * from role_function_form_mappings where role_id = 1");
+    }
+
+    @Test
+    void testFormGrantsByProgram() throws SQLException {
+        assertUsesIndex("ix_role_function_form_mappings_program",
+                "select * from role_function_form_mappings where program_id in (1, 2)");
+    }
+
+    @Test
+    void testGrantsBySecurityFunction() throws SQLException {
+        assertUsesIndex("ix_role_function_mappings_function",
+                "select * from role_function_mappings where security_function_id = 1");
+        assertUsesIndex("ix_role_function_form_mappings_function",
+                "select * from role_function_form_mappings where security_function_id = 1");
+    }
+
+    @Test
+    void testChildrenByProgram() throws SQLException {
+        assertUsesIndex("uk_forms_owner_name", "select * from forms where owner_id in (1, 2)");
+        assertUsesIndex("uk_forms_owner_name", "select * from forms where owner_id = 1 and name = 'HOME'");
+        assertUsesIndex("ix_security_functions_program", "select * from security_functions where program_id in (1, 2)");
+    }
+
+    @Test
+    void testEffectivePermissions() throws SQLException {
+        assertUsesIndex("pk_effective_permissions",
+                "select function_ids from effective_permissions where program_id = 1 and form_id = 0 and role_id in (1, 2)");
+        assertUsesIndex("ix_effective_permissions_role", "select * from effective_permissions where role_id = 1");
+        assertUsesIndex("ix_effective_permissions_role",
+                "select * from effective_permissions where program_id = 1 and role_id = 2");
+    }
+}
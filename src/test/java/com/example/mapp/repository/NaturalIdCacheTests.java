@@ -0,0 +1,86 @@
+package com.example.mapp.repository;
+
+import com.example.mapp.exception.ConflictException;
+import com.example.mapp.querybudget.StatementCounter;
+import com.example.mapp.service.RoleMappingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Works on committed data (each step in its own transaction/session) so lookups can only be served by the second
+ * level cache - the context is thrown away afterwards
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class NaturalIdCacheTests {
+
+    @Autowired
+    RoleMappingService roleMappingService;
+
+    @Autowired
+    ProgramRepository programRepository;
+
+    @Autowired
+    RoleRepository roleRepository;
+
+    @Autowired
+    SecurityFunctionRepository securityFunctionRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    <T> T inTransaction(Supplier<T> action) {
+        return new TransactionTemplate(transactionManager).execute(s -> action.get());
+    }
+
+    int queries(Runnable action) {
+        return inTransaction(() -> {
+            try (StatementCounter.Scope scope = StatementCounter.start()) {
+                action.run();
+                return scope.queries();
+            }
+        });
+    }
+
+    @Test
+    void testNameLookupsResolveFromCache() {
+        Long programId = inTransaction(() -> {
+            roleMappingService.createRoleName("cacher");
+            roleMappingService.createProgram("cached");
+            return roleMappingService.addSecurityFunctionsToProgram("cached", List.of("read")).getId();
+        });
+
+        assertEquals(0, queries(() -> assertTrue(programRepository.findBySimpleNaturalId("CACHED").isPresent())));
+        assertEquals(0, queries(() -> assertTrue(roleRepository.findBySimpleNaturalId("CACHER").isPresent())));
+        assertEquals(0, queries(() -> assertTrue(securityFunctionRepository
+                .findByNaturalId(Map.of("name", "READ", "programId", programId))
+                .isPresent())));
+
+        assertThrows(ConflictException.class, () -> inTransaction(() -> roleMappingService.createRoleName("CACHER")));
+
+        // deletes are reflected straight away, and a program re-created with the same name resolves to the new one
+        inTransaction(() -> {
+            roleMappingService.deleteProgram("CACHED");
+            return null;
+        });
+        assertTrue(inTransaction(() -> programRepository.findBySimpleNaturalId("CACHED")).isEmpty());
+        assertTrue(inTransaction(() -> securityFunctionRepository
+                .findByNaturalId(Map.of("name", "READ", "programId", programId))).isEmpty());
+
+        Long recreatedId = inTransaction(() -> roleMappingService.createProgram("CACHED").getId());
+        assertNotEquals(programId, recreatedId);
+        assertEquals(recreatedId, inTransaction(() -> programRepository.findBySimpleNaturalId("CACHED").orElseThrow().getId()));
+    }
+}
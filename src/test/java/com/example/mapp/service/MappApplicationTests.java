@@ -1,19 +1,35 @@
 package com.example.mapp.service;
 
+import com.example.mapp.dto.EffectivePermissionsReportDto;
+import com.example.mapp.dto.PermissionTargetDto;
+import com.example.mapp.exception.NotFoundException;
 import com.example.mapp.model.Form;
+import com.example.mapp.model.Program;
 import com.example.mapp.model.Role;
+import com.example.mapp.model.SecurityFunction;
+import com.example.mapp.querybudget.StatementCounter;
+import com.example.mapp.repository.EffectivePermissionRepository;
 import com.example.mapp.repository.ProgramRepository;
 import com.example.mapp.repository.RoleRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
@@ -29,6 +45,12 @@ class MappApplicationTests {
     @Autowired
     RoleRepository roleRepository;
 
+    @Autowired
+    EffectivePermissionRepository effectivePermissionRepository;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
     @BeforeEach
     void setup() {
         roleRepository.save(Role.builder().name("ADMIN").build());
@@ -49,6 +71,11 @@ class MappApplicationTests {
         p1 = roleMappingService.removeFormFromProgram(p1.getName(), "form2");
         assertEquals(1, p1.getForms().size());
         assertEquals(2, p1.getSecurityFunctions().size());
+
+        // removing a form the program doesn't have changes nothing, so moves no revision
+        long revision = roleMappingService.getMappingRevision();
+        roleMappingService.removeFormFromProgram(p1.getName(), "form2");
+        assertEquals(revision, roleMappingService.getMappingRevision());
     }
 
     @Test
@@ -68,10 +95,7 @@ class MappApplicationTests {
 
         // test form2 only has UPDATE on it now
         assertEquals(1,
-                p1.getForms()
-                        .stream()
-                        .filter(p -> p.getName().equals("FORM2"))
-                        .findFirst()
+                p1.getFormNamed("form2")
                         .get()
                         .getRoleFunctionFormMappings()
                         .size());
@@ -146,4 +170,224 @@ class MappApplicationTests {
         assertTrue(f.getRoleFunctionFormMappings().stream().toList().get(0).getRole().getName().equals("ADMIN"));
     }
 
+    @Test
+    @Transactional
+    void testRoleDetails() {
+        roleMappingService.createProgram("AABC123");
+        roleMappingService.createProgram("AABC456");
+        roleMappingService.createProgram("AABC789");
+
+        roleMappingService.associateRoleToProgram("AABC123", "ADMIN", List.of("CREATE", "READ"));
+        roleMappingService.associateRoleToForm("AABC123", "Form1", "ADMIN", List.of("READ"));
+        roleMappingService.associateRoleToForm("AABC123", "Form2", "USER", List.of("READ"));
+        roleMappingService.associateRoleToForm("AABC456", "Form1", "ADMIN", List.of("UPDATE"));
+        roleMappingService.associateRoleToProgram("AABC789", "USER", List.of("READ"));
+
+        var details = roleMappingService.mapRoleAndProgramsToDto("admin");
+        assertEquals("ADMIN", details.getRoleName());
+
+        // only the programs (and forms) ADMIN is mapped on, with only ADMIN's mappings
+        assertEquals(List.of("AABC123", "AABC456"), details.getPrograms().stream().map(p -> p.getName()).toList());
+        var p1 = details.getPrograms().get(0);
+        assertEquals(List.of("ADMIN"), List.copyOf(p1.getRoleMappings().keySet()));
+        assertEquals(2, p1.getRoleMappings().get("ADMIN").size());
+        assertEquals(1, p1.getForms().size());
+        assertEquals(List.of("READ"), p1.getForms().get(0).getRoleMappings().get("ADMIN"));
+
+        var p2 = details.getPrograms().get(1);
+        assertTrue(p2.getRoleMappings().isEmpty());
+        assertEquals(List.of("UPDATE"), p2.getForms().get(0).getRoleMappings().get("ADMIN"));
+
+        // all roles a page at a time should give the same per-role details
+        roleMappingService.createRoleName("NOBODY");
+        var all = roleMappingService.mapRolesAndProgramsPageToDto(null, 100).getRoles();
+        assertEquals(3, all.size());
+        assertEquals(details, all.stream().filter(r -> r.getRoleName().equals("ADMIN")).findFirst().orElseThrow());
+        assertEquals(roleMappingService.mapRoleAndProgramsToDto("USER"),
+                all.stream().filter(r -> r.getRoleName().equals("USER")).findFirst().orElseThrow());
+        assertTrue(all.stream().filter(r -> r.getRoleName().equals("NOBODY")).findFirst().orElseThrow().getPrograms().isEmpty());
+    }
+
+    @Test
+    @Transactional
+    void testBatchCollation() {
+        roleMappingService.createProgram("AABC123");
+        roleMappingService.createProgram("AABC456");
+
+        roleMappingService.associateRoleToProgram("AABC123", "ADMIN", List.of("CREATE", "READ", "UPDATE"));
+        roleMappingService.associateRoleToForm("AABC123", "Form1", "ADMIN", List.of("READ"));
+        roleMappingService.associateRoleToForm("AABC123", "Form1", "USER", List.of("UPDATE"));
+        roleMappingService.addFormToProgram("AABC123", "Form2");
+        roleMappingService.associateRoleToProgram("AABC456", "USER", List.of("READ"));
+
+        var targets = List.of(PermissionTargetDto.builder().programName("AABC123").build(),
+                PermissionTargetDto.builder().programName("aabc123").formName("form1").build(),
+                PermissionTargetDto.builder().programName("AABC123").formName("Form2").build(),
+                PermissionTargetDto.builder().programName("AABC123").formName("NOPE").build(),
+                PermissionTargetDto.builder().programName("AABC456").build(),
+                PermissionTargetDto.builder().programName("NOPE").build());
+
+        var results = roleMappingService.collateRolesToTargets(List.of("ADMIN", "user"), targets);
+        assertEquals(6, results.size());
+
+        // every good target agrees with the single target collation
+        for (int i : List.of(0, 1, 2, 4)) {
+            assertEquals(Set.copyOf(roleMappingService.collateRolesToProgramAndForm(List.of("ADMIN", "USER"),
+                            targets.get(i).getProgramName(),
+                            targets.get(i).getFormName())),
+                    Set.copyOf(results.get(i).getSecurityFunctions()));
+        }
+        assertEquals(Set.of("READ", "UPDATE"), Set.copyOf(results.get(1).getSecurityFunctions()));
+
+        // bad targets are reported inline
+        assertEquals("Form not found", results.get(3).getError());
+        assertEquals("Pgm Name not found", results.get(5).getError());
+
+        assertThrows(NotFoundException.class,
+                () -> roleMappingService.collateRolesToTargets(List.of("NOBODY"), targets));
+    }
+
+    record WriteCost(int statements, long entitiesLoaded, long collectionsLoaded) {
+    }
+
+    /**
+     * What the write costs, starting from an empty persistence context so nothing's already loaded
+     */
+    WriteCost cost(Runnable write) {
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        try (StatementCounter.Scope scope = StatementCounter.start()) {
+            write.run();
+            return new WriteCost(scope.statements(), statistics.getEntityLoadCount(), statistics.getCollectionLoadCount());
+        }
+    }
+
+    @Test
+    @Transactional
+    void testMappingWritesScaleWithTheChange() {
+        for (String pgm : List.of("SMALL", "LARGE")) {
+            roleMappingService.createProgram(pgm);
+            roleMappingService.associateRoleToForm(pgm, "HOME", "ADMIN", List.of("READ"));
+        }
+
+        // the large program has plenty of other forms, functions and grants for other roles
+        List<String> functions = IntStream.range(0, 20).mapToObj(i -> "FUNC_" + i).toList();
+        for (int i = 0; i < 10; i++) {
+            roleMappingService.associateRoleToProgram("LARGE", "ROLE_" + i, functions);
+            roleMappingService.associateRoleToForm("LARGE", "FORM_" + i, "ROLE_" + i, functions);
+        }
+
+        // granting, changing and taking away a role's functions costs the same however big the program is
+        for (List<String> granted : List.of(List.of("READ", "UPDATE"), List.of("UPDATE"), List.<String>of())) {
+            assertEquals(cost(() -> roleMappingService.associateRoleToForm("SMALL", "HOME", "ADMIN", granted)),
+                    cost(() -> roleMappingService.associateRoleToForm("LARGE", "HOME", "ADMIN", granted)));
+        }
+        assertEquals(cost(() -> roleMappingService.associateRoleToProgram("SMALL", "ADMIN", List.of("READ"))),
+                cost(() -> roleMappingService.associateRoleToProgram("LARGE", "ADMIN", List.of("READ"))));
+        assertEquals(cost(() -> roleMappingService.removeRoleFromProgram("SMALL", "ADMIN")),
+                cost(() -> roleMappingService.removeRoleFromProgram("LARGE", "ADMIN")));
+
+        // and only the one role's grants changed
+        assertEquals(20, roleMappingService.collateRolesToProgramAndForm(List.of("ROLE_1"), "LARGE", "FORM_1").size());
+        assertTrue(roleMappingService.collateRolesToProgramAndForm(List.of("ADMIN"), "LARGE", "HOME").isEmpty());
+    }
+
+    void assertEffectivePermissionsInStep() {
+        EffectivePermissionsReportDto report = roleMappingService.verifyEffectivePermissions();
+        assertEquals(0, report.getMissing() + report.getExtra() + report.getStale(), report::toString);
+    }
+
+    @Test
+    @Transactional
+    void testEffectivePermissionsFollowTheMappings() {
+        roleMappingService.createProgram("AABC123");
+        roleMappingService.addFormToProgram("AABC123", "Form1");
+        roleMappingService.associateRoleToProgram("AABC123", "ADMIN", List.of("CREATE", "READ"));
+
+        // a form added later (and one made on the fly by a form grant) falls back to the program grants too
+        roleMappingService.addFormToProgram("AABC123", "Form2");
+        roleMappingService.associateRoleToForm("AABC123", "Form3", "USER", List.of("READ"));
+        assertEffectivePermissionsInStep();
+        assertEquals(Set.of("CREATE", "READ"),
+                Set.copyOf(roleMappingService.collateRolesToProgramAndForm(List.of("ADMIN"), "AABC123", "Form2")));
+        assertEquals(Set.of("CREATE", "READ"),
+                Set.copyOf(roleMappingService.collateRolesToProgramAndForm(List.of("ADMIN", "USER"), "AABC123", "Form3")));
+
+        // a form grant overrides the program grants on that form only, taking it away falls back again
+        roleMappingService.associateRoleToForm("AABC123", "Form1", "ADMIN", List.of("UPDATE"));
+        roleMappingService.associateRoleToProgram("AABC123", "ADMIN", List.of("READ"));
+        assertEffectivePermissionsInStep();
+        assertEquals(List.of("UPDATE"), roleMappingService.collateRolesToProgramAndForm(List.of("ADMIN"), "AABC123", "Form1"));
+        assertEquals(List.of("READ"), roleMappingService.collateRolesToProgramAndForm(List.of("ADMIN"), "AABC123", "Form2"));
+
+        roleMappingService.removeRoleFromProgramForm("AABC123", "Form1", "ADMIN");
+        assertEffectivePermissionsInStep();
+        assertEquals(List.of("READ"), roleMappingService.collateRolesToProgramAndForm(List.of("ADMIN"), "AABC123", "Form1"));
+
+        roleMappingService.removeSecurityFunctionFromProgram("AABC123", "READ");
+        assertEffectivePermissionsInStep();
+        assertTrue(roleMappingService.collateRolesToProgramAndForm(List.of("ADMIN", "USER"), "AABC123", "Form3").isEmpty());
+
+        roleMappingService.associateRoleToProgram("AABC123", "USER", List.of("UPDATE"));
+        roleMappingService.removeFormFromProgram("AABC123", "Form2");
+        roleMappingService.removeRoleFromProgram("AABC123", "ADMIN");
+        roleMappingService.removeRoleFromProgram("AABC123", "USER");
+        roleMappingService.removeRoleFromProgramForm("AABC123", "Form3", "USER");
+        assertEffectivePermissionsInStep();
+        assertEquals(0, effectivePermissionRepository.count());
+    }
+
+    @Test
+    @Transactional
+    void testOrdinalsSeeUncommittedChanges() {
+        roleMappingService.createProgram("AABC123");
+        roleMappingService.associateRoleToProgram("AABC123", "ADMIN", List.of("CREATE", "READ", "UPDATE"));
+        roleMappingService.removeSecurityFunctionFromProgram("AABC123", "CREATE");
+
+        // none of it is in the compiled snapshot yet, so it's answered from what this transaction sees - the table
+        // and the revision from the same program
+        Program p = programRepository.findByName("AABC123").orElseThrow();
+        List<String> table = p.getSecurityFunctions().values().stream()
+                .sorted(Comparator.comparing(SecurityFunction::getId))
+                .map(SecurityFunction::getName)
+                .toList();
+        var answer = roleMappingService.collateRoleOrdinalsToProgramAndForm(List.of("admin"), "aabc123", null);
+        assertEquals(p.getRevision(), answer.getProgramRevision());
+        assertEquals(Set.of("READ", "UPDATE"), answer.getSecurityFunctionOrdinals().stream().map(table::get).collect(Collectors.toSet()));
+
+        var results = roleMappingService.collateRoleOrdinalsToTargets(List.of("ADMIN"), List.of(
+                PermissionTargetDto.builder().programName("AABC123").formName("NOPE").build()));
+        assertEquals("Form not found", results.get(0).getError());
+    }
+
+    @Test
+    @Transactional
+    void testEffectivePermissionsRebuild() {
+        roleMappingService.createProgram("AABC123");
+        roleMappingService.associateRoleToProgram("AABC123", "ADMIN", List.of("CREATE", "READ"));
+        roleMappingService.associateRoleToForm("AABC123", "Form1", "ADMIN", List.of("READ"));
+        roleMappingService.associateRoleToForm("AABC123", "Form2", "USER", List.of("UPDATE"));
+        long rows = effectivePermissionRepository.count();
+        assertEquals(4, rows);
+
+        // lose a row and spoil another
+        var all = effectivePermissionRepository.findAll();
+        effectivePermissionRepository.delete(all.get(0));
+        all.get(1).setFunctionIds("0");
+        effectivePermissionRepository.flush();
+
+        EffectivePermissionsReportDto verified = roleMappingService.verifyEffectivePermissions();
+        assertEquals(rows, verified.getRows());
+        assertEquals(1, verified.getMissing());
+        assertEquals(1, verified.getStale());
+        assertEquals(rows - 1, effectivePermissionRepository.count());
+
+        EffectivePermissionsReportDto rebuilt = roleMappingService.rebuildEffectivePermissions();
+        assertTrue(rebuilt.isRepaired());
+        assertEquals(1, rebuilt.getMissing());
+        assertEffectivePermissionsInStep();
+        assertEquals(rows, effectivePermissionRepository.count());
+    }
 }
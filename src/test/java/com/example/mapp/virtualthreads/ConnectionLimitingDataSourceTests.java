@@ -0,0 +1,114 @@
+package com.example.mapp.virtualthreads;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConnectionLimitingDataSourceTests {
+
+    DataSource target = mock(DataSource.class);
+
+    ConnectionLimitingDataSource limited(int maxConnections, Duration acquireTimeout) throws SQLException {
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        return new ConnectionLimitingDataSource(target, maxConnections, acquireTimeout);
+    }
+
+    @Test
+    void testCallersPastTheLimitWaitForAClose() throws Exception {
+        ConnectionLimitingDataSource dataSource = limited(2, Duration.ofSeconds(10));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        dataSource.bindTo(registry);
+
+        Connection first = dataSource.getConnection();
+        dataSource.getConnection();
+        assertEquals(2, registry.get("mapp.datasource.connections.active").gauge().value());
+
+        CompletableFuture<Connection> third = CompletableFuture.supplyAsync(() -> {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        for (int attempt = 0; attempt < 100 && registry.get("mapp.datasource.connections.pending").gauge().value() == 0; attempt++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, registry.get("mapp.datasource.connections.pending").gauge().value());
+        assertFalse(third.isDone());
+
+        // closing twice gives back just the one permit
+        first.close();
+        first.close();
+        assertTrue(third.get(5, TimeUnit.SECONDS) != null);
+        assertEquals(2, registry.get("mapp.datasource.connections.active").gauge().value());
+        assertEquals(0, registry.get("mapp.datasource.connections.pending").gauge().value());
+    }
+
+    @Test
+    void testTimesOutWhenNoneIsClosed() throws Exception {
+        ConnectionLimitingDataSource dataSource = limited(1, Duration.ofMillis(50));
+        Connection connection = dataSource.getConnection();
+
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+        connection.close();
+        assertTrue(dataSource.getConnection() != null);
+    }
+
+    @Test
+    void testAbortGivesBackThePermitOnce() throws Exception {
+        ConnectionLimitingDataSource dataSource = limited(1, Duration.ofMillis(50));
+        Connection aborted = dataSource.getConnection();
+
+        aborted.abort(Runnable::run);
+        Connection next = dataSource.getConnection();
+
+        // closing what was aborted doesn't give back a second permit
+        aborted.close();
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        next.close();
+        assertTrue(dataSource.getConnection() != null);
+    }
+
+    @Test
+    void testFailedConnectGivesBackThePermit() throws Exception {
+        when(target.getConnection()).thenThrow(new SQLException("down"));
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(target, 1, Duration.ofMillis(50));
+
+        assertEquals("down", assertThrows(SQLException.class, dataSource::getConnection).getMessage());
+        assertEquals("down", assertThrows(SQLException.class, dataSource::getConnection).getMessage());
+    }
+
+    @Test
+    void testCallsReachTheConnection() throws Exception {
+        Connection connection = mock(Connection.class);
+        when(target.getConnection()).thenReturn(connection);
+        when(connection.getAutoCommit()).thenReturn(true);
+
+        Connection limited = new ConnectionLimitingDataSource(target, 1, Duration.ofMillis(50)).getConnection();
+        assertTrue(limited.getAutoCommit());
+        assertThrows(SQLException.class, () -> {
+            when(connection.isValid(1)).thenThrow(new SQLException("gone"));
+            limited.isValid(1);
+        });
+        limited.close();
+        verify(connection).close();
+        assertSame(target, new ConnectionLimitingDataSource(target, 1, Duration.ZERO).getTargetDataSource());
+    }
+}
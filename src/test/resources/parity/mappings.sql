@@ -0,0 +1,14 @@
+-- PRG1 with two forms - USER has READ on the program and CREATE on FORM1 (which overrides it there), ADMIN has
+-- READ and UPDATE on the program.  AUDITOR has nothing.  PRG2 has no mappings at all.
+insert into programs (id, name) values (1, 'PRG1'), (2, 'PRG2');
+insert into forms (id, owner_id, name) values (11, 1, 'FORM1'), (12, 1, 'FORM2');
+insert into roles (id, name) values (21, 'USER'), (22, 'ADMIN'), (23, 'AUDITOR');
+insert into security_functions (id, program_id, name) values (31, 1, 'READ'), (32, 1, 'UPDATE'), (33, 1, 'CREATE');
+
+insert into role_function_mappings (program_id, role_id, security_function_id) values (1, 21, 31), (1, 22, 31), (1, 22, 32);
+insert into role_function_form_mappings (form_id, program_id, role_id, security_function_id) values (11, 1, 21, 33);
+
+-- what mapp maintains from those - a row per role per program, and per form it ends up with anything on
+insert into effective_permissions (role_id, program_id, form_id, function_ids) values
+    (21, 1, 0, '31'), (21, 1, 11, '33'), (21, 1, 12, '31'),
+    (22, 1, 0, '31,32'), (22, 1, 11, '31,32'), (22, 1, 12, '31,32');